@@ -1,11 +1,18 @@
 package de.uni.leipzig.tebaqa.entitylinking;
 
+import de.uni.leipzig.tebaqa.tebaqacommons.util.DeadlineFilter;
+import de.uni.leipzig.tebaqa.tebaqacommons.util.GzipRequestFilter;
+import de.uni.leipzig.tebaqa.tebaqacommons.util.PayloadCodecs;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 import javax.annotation.PostConstruct;
+import java.util.List;
 
 @SpringBootApplication
 public class EntityLinkingApplication {
@@ -22,4 +29,27 @@ public class EntityLinkingApplication {
     public void init() {
         LOGGER.info("Entity linking server started");
     }
+
+    // Honours the request deadline passed by the controller
+    @Bean
+    public DeadlineFilter deadlineFilter() {
+        return new DeadlineFilter();
+    }
+
+    // Accepts gzipped JSON request bodies, see http.client.gzip-requests
+    @Bean
+    public GzipRequestFilter gzipRequestFilter() {
+        return new GzipRequestFilter();
+    }
+
+    // Smile (binary JSON) request and response bodies, JSON stays the default
+    @Bean
+    public WebMvcConfigurer smileMessageConverter() {
+        return new WebMvcConfigurer() {
+            @Override
+            public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+                converters.add(PayloadCodecs.smileConverter());
+            }
+        };
+    }
 }
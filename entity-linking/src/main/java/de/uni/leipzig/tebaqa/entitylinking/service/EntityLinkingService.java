@@ -2,10 +2,12 @@ package de.uni.leipzig.tebaqa.entitylinking.service;
 
 import de.uni.leipzig.tebaqa.tebaqacommons.model.EntityLinkingResponseBean;
 import de.uni.leipzig.tebaqa.tebaqacommons.nlp.Lang;
+import de.uni.leipzig.tebaqa.tebaqacommons.pipeline.EntityLinker;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 
-public class EntityLinkingService {
+public class EntityLinkingService implements EntityLinker {
 
     public EntityLinkingResponseBean findEntitiesFrom(String question, Lang lang) throws IOException {
         ResourceLinker resourceLinker = new ResourceLinker(question, lang);
@@ -14,4 +16,13 @@ public class EntityLinkingService {
                 resourceLinker.getPropertyCandidates(), resourceLinker.getEntityCandidates(), resourceLinker.getPropertyUris());
     }
 
+    @Override
+    public EntityLinkingResponseBean extractEntities(String question, Lang lang) {
+        try {
+            return findEntitiesFrom(question, lang);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
 }
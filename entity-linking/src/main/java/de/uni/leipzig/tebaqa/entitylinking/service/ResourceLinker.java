@@ -1,11 +1,13 @@
 package de.uni.leipzig.tebaqa.entitylinking.service;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import de.uni.leipzig.tebaqa.entitylinking.nlp.StopWordsUtil;
 import de.uni.leipzig.tebaqa.entitylinking.util.PropertyUtil;
 import de.uni.leipzig.tebaqa.tebaqacommons.elasticsearch.SearchService;
 import de.uni.leipzig.tebaqa.tebaqacommons.model.*;
 import de.uni.leipzig.tebaqa.tebaqacommons.nlp.Lang;
 import de.uni.leipzig.tebaqa.tebaqacommons.nlp.SemanticAnalysisHelper;
+import de.uni.leipzig.tebaqa.tebaqacommons.util.Deadline;
 import de.uni.leipzig.tebaqa.tebaqacommons.util.TextUtilities;
 import edu.stanford.nlp.semgraph.SemanticGraph;
 import org.apache.logging.log4j.LogManager;
@@ -13,11 +15,20 @@ import org.apache.logging.log4j.Logger;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class ResourceLinker {
 
     private static final Logger LOGGER = LogManager.getLogger(ResourceLinker.class);
+    // Shared by all questions, the lookups mostly wait for Elasticsearch
+    private static final ExecutorService LOOKUP_EXECUTOR = Executors.newFixedThreadPool(
+            PropertyUtil.getLinkingThreads(),
+            new ThreadFactoryBuilder().setNameFormat("entity-lookup-%d").setDaemon(true).build());
 
     private String question;
     private final Lang language;
@@ -116,40 +127,39 @@ public class ResourceLinker {
         coOccurrenceList = coOccurrenceList.stream().filter(s -> s.split("\\s+").length < 7).collect(Collectors.toList());
         this.coOccurrences.addAll(coOccurrenceList);
 
+        // All lookups run at once, their results are merged in the order of the co-occurrences. Equal candidates of
+        // different co-occurrences are kept as if the lookups had run one after another.
+        List<CoOccurrenceLookup> lookups = coOccurrenceList.stream().map(CoOccurrenceLookup::new).collect(Collectors.toList());
         HashMap<String, Set<EntityCandidate>> ambiguousEntityCandidates = new HashMap<>();
-        for (String coOccurrence : coOccurrenceList) {
-
-            // 1. Link entities
-            Set<EntityCandidate> matchedEntities = searchService.searchEntities(coOccurrence);
-            if (matchedEntities.size() > 0 && matchedEntities.size() <= 20) {
-                entityCandidates.addAll(matchedEntities);
-            } else if (matchedEntities.size() > 20) {
-                ambiguousEntityCandidates.put(coOccurrence, matchedEntities);
-            }
-            //search for Countries
-            Set<EntityCandidate> countryEntities = searchService.searchEntitiesOfType(coOccurrence, "http://dbpedia.org/ontology/Country");
-            if (countryEntities.size() < 100) {
-                entityCandidates.addAll(countryEntities);
-            }
-
-            // 2. Link classes
-            String searchTerm = coOccurrence;
-            if (!coOccurrence.contains(" ")) {
-                String stripped = coOccurrence.replace("'s", "");
-                Map<String, String> lemmas = semanticAnalysisHelper.getLemmas(stripped);
-                String lemma = lemmas.get(stripped);
-                if (lemma != null) {
-                    searchTerm = lemma;
+        try {
+            for (CoOccurrenceLookup lookup : lookups) {
+
+                // 1. Link entities
+                Set<EntityCandidate> matchedEntities = await(lookup.entities);
+                if (matchedEntities.size() > 0 && matchedEntities.size() <= 20) {
+                    entityCandidates.addAll(matchedEntities);
+                } else if (matchedEntities.size() > 20) {
+                    ambiguousEntityCandidates.put(lookup.coOccurrence, matchedEntities);
                 }
-            }
-            classCandidates.addAll(searchService.searchClasses(searchTerm));
+                //search for Countries
+                Set<EntityCandidate> countryEntities = await(lookup.countries);
+                if (countryEntities.size() < 100) {
+                    entityCandidates.addAll(countryEntities);
+                }
+
+                // 2. Link classes
+                classCandidates.addAll(await(lookup.classes));
 
-            // 3. Link properties
-            propertyCandidates.addAll(searchService.searchProperties(coOccurrence));
+                // 3. Link properties
+                propertyCandidates.addAll(await(lookup.properties));
 
-            // TODO ? 4. literal linking
-//            literalCandidates.addAll(index.searchLiteral(coOccurrence, 100));
-//            literalCandidates.forEach(lc -> propertyUris.addAll(((EntityCandidate) lc).getConnectedPropertiesObject()));
+                // TODO ? 4. literal linking
+//                literalCandidates.addAll(index.searchLiteral(coOccurrence, 100));
+//                literalCandidates.forEach(lc -> propertyUris.addAll(((EntityCandidate) lc).getConnectedPropertiesObject()));
+            }
+        } finally {
+            // Nothing left to do after a failure
+            lookups.forEach(CoOccurrenceLookup::cancel);
         }
 
         Set<EntityCandidate> disambiguatedEntities = this.disambiguationService.disambiguateEntities(ambiguousEntityCandidates, this.entityCandidates, this.propertyCandidates, Optional.empty());
@@ -160,6 +170,34 @@ public class ResourceLinker {
         LOGGER.info("EntityExtraction finished");
     }
 
+    private String classSearchTerm(String coOccurrence) {
+        String searchTerm = coOccurrence;
+        if (!coOccurrence.contains(" ")) {
+            String stripped = coOccurrence.replace("'s", "");
+            Map<String, String> lemmas = semanticAnalysisHelper.getLemmas(stripped);
+            String lemma = lemmas.get(stripped);
+            if (lemma != null) {
+                searchTerm = lemma;
+            }
+        }
+        return searchTerm;
+    }
+
+    private static <T> T await(Future<T> lookup) {
+        try {
+            return lookup.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Entity linking interrupted", e);
+        }
+    }
+
     private String cleanQuestion(String question) {
         question = semanticAnalysisHelper.removeQuestionWords(question);
         question = question.replace("(", "");
@@ -222,6 +260,39 @@ public class ResourceLinker {
     }
 
 
+    /**
+     * The index lookups of one co-occurrence, started on creation.
+     */
+    private class CoOccurrenceLookup {
+        private final String coOccurrence;
+        private final Future<Set<EntityCandidate>> entities;
+        private final Future<Set<EntityCandidate>> countries;
+        private final Future<Set<ClassCandidate>> classes;
+        private final Future<Set<PropertyCandidate>> properties;
+
+        CoOccurrenceLookup(String coOccurrence) {
+            // The lookups run on pool threads, which don't know the deadline of the request
+            Deadline deadline = Deadline.current();
+            this.coOccurrence = coOccurrence;
+            this.entities = submit(deadline, () -> searchService.searchEntities(coOccurrence));
+            this.countries = submit(deadline, () -> searchService.searchEntitiesOfType(coOccurrence, "http://dbpedia.org/ontology/Country"));
+            this.classes = submit(deadline, () -> searchService.searchClasses(classSearchTerm(coOccurrence)));
+            this.properties = submit(deadline, () -> searchService.searchProperties(coOccurrence));
+        }
+
+        private <T> Future<T> submit(Deadline deadline, Supplier<T> lookup) {
+            Supplier<T> withDeadline = Deadline.wrap(deadline, lookup);
+            return LOOKUP_EXECUTOR.submit(withDeadline::get);
+        }
+
+        void cancel() {
+            entities.cancel(true);
+            countries.cancel(true);
+            classes.cancel(true);
+            properties.cancel(true);
+        }
+    }
+
     public static void main(String[] args) throws IOException {
         ResourceLinker linker = new ResourceLinker("What is the height of the Eiffel Tower?", Lang.EN);
         linker.linkEntities();
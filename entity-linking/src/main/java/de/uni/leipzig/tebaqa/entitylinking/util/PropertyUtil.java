@@ -2,10 +2,14 @@ package de.uni.leipzig.tebaqa.entitylinking.util;
 
 import de.uni.leipzig.tebaqa.tebaqacommons.model.ESConnectionProperties;
 import de.uni.leipzig.tebaqa.tebaqacommons.model.RestServiceConfiguration;
+import de.uni.leipzig.tebaqa.tebaqacommons.nlp.SemanticAnalysisHelper;
+import de.uni.leipzig.tebaqa.tebaqacommons.pipeline.EmbeddedStages;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Properties;
@@ -23,7 +27,7 @@ public class PropertyUtil {
             Properties prop = new Properties();
             InputStream input;
             try {
-                input = new FileInputStream("src/main/resources/entityLinking.properties");
+                input = openProperties("entityLinking.properties");
                 prop.load(input);
                 String hostname = prop.getProperty("el_hostname");
                 String port = prop.getProperty("el_port");
@@ -48,8 +52,11 @@ public class PropertyUtil {
             Properties prop = new Properties();
             InputStream input;
             try {
-                input = new FileInputStream("src/main/resources/nlp.properties");
+                input = openProperties("nlp.properties");
                 prop.load(input);
+                // The helper of the language runs the analyzers in-process then
+                if (EmbeddedStages.isEmbedded(System.getProperty(SemanticAnalysisHelper.MODE_PROPERTY, prop.getProperty(SemanticAnalysisHelper.MODE_PROPERTY))))
+                    return null;
                 String hostname = prop.getProperty("service.nlp.host");
                 String port = prop.getProperty("service.nlp.port");
                 String scheme = prop.getProperty("service.nlp.scheme");
@@ -62,4 +69,28 @@ public class PropertyUtil {
         }
         return NLP_CONNECTION_PROPERTIES;
     }
+
+    /**
+     * @return The number of threads which look up the co-occurrences of all questions in the index (linking.threads).
+     */
+    public static int getLinkingThreads() {
+        Properties prop = new Properties();
+        try (InputStream input = openProperties("entityLinking.properties")) {
+            prop.load(input);
+        } catch (IOException e) {
+            LOGGER.error("Cannot read entity linking properties file: " + e.getMessage());
+        }
+        return Integer.parseInt(prop.getProperty("linking.threads", "32").trim());
+    }
+
+    // The resources directory if started from the module, the class path if embedded in another service
+    private static InputStream openProperties(String fileName) throws IOException {
+        File file = new File("src/main/resources/" + fileName);
+        if (file.exists())
+            return new FileInputStream(file);
+        InputStream input = PropertyUtil.class.getClassLoader().getResourceAsStream(fileName);
+        if (input == null)
+            throw new FileNotFoundException(fileName);
+        return input;
+    }
 }
@@ -2,10 +2,13 @@ package de.uni.leipzig.tebaqa.nlp;
 
 import de.uni.leipzig.tebaqa.nlp.core.NLPLang;
 import de.uni.leipzig.tebaqa.nlp.core.StanfordPipelineProvider;
+import de.uni.leipzig.tebaqa.tebaqacommons.util.DeadlineFilter;
+import de.uni.leipzig.tebaqa.tebaqacommons.util.GzipRequestFilter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
 
 @SpringBootApplication
 public class NlpApplication {
@@ -20,4 +23,15 @@ public class NlpApplication {
 		SpringApplication.run(NlpApplication.class, args);
 	}
 
+	// Honours the request deadline passed by the controller
+	@Bean
+	public DeadlineFilter deadlineFilter() {
+		return new DeadlineFilter();
+	}
+
+	// Accepts gzipped JSON request bodies, see http.client.gzip-requests
+	@Bean
+	public GzipRequestFilter gzipRequestFilter() {
+		return new GzipRequestFilter();
+	}
 }
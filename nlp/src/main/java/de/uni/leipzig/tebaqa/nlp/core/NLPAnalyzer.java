@@ -2,13 +2,14 @@ package de.uni.leipzig.tebaqa.nlp.core;
 
 import de.uni.leipzig.tebaqa.tebaqacommons.model.QueryType;
 import de.uni.leipzig.tebaqa.tebaqacommons.model.QuestionAnswerType;
+import de.uni.leipzig.tebaqa.tebaqacommons.nlp.SemanticAnalyzer;
 import edu.stanford.nlp.pipeline.Annotation;
 import edu.stanford.nlp.semgraph.SemanticGraph;
 
 import java.util.HashMap;
 import java.util.Map;
 
-public interface NLPAnalyzer {
+public interface NLPAnalyzer extends SemanticAnalyzer {
     Annotation annotate(String text);
 
     HashMap<String, String> getPosTags(String text);
@@ -0,0 +1,29 @@
+package de.uni.leipzig.tebaqa.nlp.core;
+
+import de.uni.leipzig.tebaqa.tebaqacommons.nlp.Lang;
+import de.uni.leipzig.tebaqa.tebaqacommons.nlp.SemanticAnalyzer;
+import de.uni.leipzig.tebaqa.tebaqacommons.nlp.SemanticAnalyzerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates one {@link NLPAnalyzer} per language, which loads the Stanford pipeline of that language. Used by the
+ * {@link de.uni.leipzig.tebaqa.nlp.spring.NLPController} and by services which run the NLP stage in-process.
+ */
+public class NLPAnalyzerProvider implements SemanticAnalyzerFactory {
+
+    private static final Map<NLPLang, NLPAnalyzer> INSTANCES = new ConcurrentHashMap<>();
+
+    public static NLPAnalyzer getFor(NLPLang lang) {
+        return INSTANCES.computeIfAbsent(lang, NLPLang::getSemanticAnalysisHelper);
+    }
+
+    @Override
+    public SemanticAnalyzer getAnalyzer(Lang lang) {
+        NLPLang nlpLang = NLPLang.getForCode(lang.getLanguageCode());
+        if (nlpLang == null)
+            throw new IllegalArgumentException("No NLP analyzer for language " + lang);
+        return getFor(nlpLang);
+    }
+}
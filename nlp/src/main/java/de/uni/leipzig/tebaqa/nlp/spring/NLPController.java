@@ -1,6 +1,7 @@
 package de.uni.leipzig.tebaqa.nlp.spring;
 
 import de.uni.leipzig.tebaqa.nlp.core.NLPAnalyzer;
+import de.uni.leipzig.tebaqa.nlp.core.NLPAnalyzerProvider;
 import de.uni.leipzig.tebaqa.nlp.core.NLPLang;
 import de.uni.leipzig.tebaqa.nlp.model.NLPRequestBody;
 import edu.stanford.nlp.pipeline.Annotation;
@@ -16,14 +17,12 @@ import org.springframework.web.server.ResponseStatusException;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Map;
 
 @RestController
 public class NLPController {
 
     private static final Logger LOGGER = LogManager.getLogger(NLPController.class.getName());
-    private static final Map<NLPLang, NLPAnalyzer> instances = new HashMap<>();
     private static final JSONOutputter JSON_OUTPUTTER = new JSONOutputter();
     ProtobufAnnotationSerializer serializer = new ProtobufAnnotationSerializer();
 
@@ -150,11 +149,6 @@ public class NLPController {
     }
 
     private NLPAnalyzer getFor(NLPLang lang) {
-        NLPAnalyzer analysisHelper = instances.get(lang);
-        if (analysisHelper == null) {
-            analysisHelper = lang.getSemanticAnalysisHelper();
-            instances.put(lang, analysisHelper);
-        }
-        return analysisHelper;
+        return NLPAnalyzerProvider.getFor(lang);
     }
 }
@@ -3,7 +3,9 @@ package de.uni.leipzig.tebaqa.queryranking.elasticsearch;
 import de.uni.leipzig.tebaqa.tebaqacommons.elasticsearch.SearchService;
 import de.uni.leipzig.tebaqa.tebaqacommons.model.ESConnectionProperties;
 
+import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Properties;
@@ -20,7 +22,7 @@ public class SearchProvider {
             InputStream input;
             try {
 
-                input = new FileInputStream("src/main/resources/elasticsearch.properties");
+                input = openProperties("elasticsearch.properties");
                 prop.load(input);
 
                 String hostname = prop.getProperty("el_hostname");
@@ -41,4 +43,14 @@ public class SearchProvider {
         return searchService;
     }
 
+    // The resources directory if started from the module, the class path if embedded in another service
+    private static InputStream openProperties(String fileName) throws IOException {
+        File file = new File("src/main/resources/" + fileName);
+        if (file.exists())
+            return new FileInputStream(file);
+        InputStream input = SearchProvider.class.getClassLoader().getResourceAsStream(fileName);
+        if (input == null)
+            throw new FileNotFoundException(fileName);
+        return input;
+    }
 }
@@ -0,0 +1,42 @@
+package de.uni.leipzig.tebaqa.queryranking.service;
+
+import de.uni.leipzig.tebaqa.queryranking.core.QueryGenerator;
+import de.uni.leipzig.tebaqa.queryranking.model.EntityLinkingResult;
+import de.uni.leipzig.tebaqa.queryranking.util.QueryCanonicalizer;
+import de.uni.leipzig.tebaqa.tebaqacommons.model.EntityLinkingResponseBean;
+import de.uni.leipzig.tebaqa.tebaqacommons.model.QueryRankingResponseBean;
+import de.uni.leipzig.tebaqa.tebaqacommons.model.QueryTemplateResponseBean;
+import de.uni.leipzig.tebaqa.tebaqacommons.nlp.Lang;
+import de.uni.leipzig.tebaqa.tebaqacommons.pipeline.QueryRanker;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.HashSet;
+import java.util.Set;
+
+public class QueryRankingService implements QueryRanker {
+
+    private static final Logger LOGGER = LogManager.getLogger(QueryRankingService.class.getName());
+
+    public QueryRankingResponseBean generateQueries(Set<String> queryTemplates, EntityLinkingResponseBean linkedResourcesBean) {
+        EntityLinkingResult linkedEntities = new EntityLinkingResult(linkedResourcesBean);
+        QueryGenerator queryGenerator = new QueryGenerator(linkedEntities, queryTemplates);
+        QueryRankingResponseBean generatedQueries = queryGenerator.generateQueries();
+        int generated = generatedQueries.getGeneratedQueries().size();
+        generatedQueries.setGeneratedQueries(QueryCanonicalizer.deduplicate(generatedQueries.getGeneratedQueries()));
+        LOGGER.info(String.format("Removed %s duplicates of %s generated queries", generated - generatedQueries.getGeneratedQueries().size(), generated));
+        printInfos(generatedQueries);
+        return generatedQueries;
+    }
+
+    @Override
+    public QueryRankingResponseBean generateQueries(String question, Lang lang, QueryTemplateResponseBean queryTemplates,
+                                                    EntityLinkingResponseBean linkedResources) {
+        return generateQueries(new HashSet<>(queryTemplates.getTemplates()), linkedResources);
+    }
+
+    private static void printInfos(QueryRankingResponseBean generatedQueries) {
+        LOGGER.info("Query generation finished");
+        generatedQueries.getGeneratedQueries().forEach(LOGGER::info);
+    }
+}
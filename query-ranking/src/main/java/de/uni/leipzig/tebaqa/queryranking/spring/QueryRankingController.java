@@ -1,11 +1,11 @@
 package de.uni.leipzig.tebaqa.queryranking.spring;
 
-import de.uni.leipzig.tebaqa.queryranking.core.QueryGenerator;
-import de.uni.leipzig.tebaqa.queryranking.model.EntityLinkingResult;
+import de.uni.leipzig.tebaqa.queryranking.service.QueryRankingService;
 import de.uni.leipzig.tebaqa.tebaqacommons.model.EntityLinkingResponseBean;
 import de.uni.leipzig.tebaqa.tebaqacommons.model.QueryRankingRequestBody;
 import de.uni.leipzig.tebaqa.tebaqacommons.model.QueryRankingResponseBean;
 import de.uni.leipzig.tebaqa.tebaqacommons.nlp.Lang;
+import de.uni.leipzig.tebaqa.tebaqacommons.util.PayloadCodecs;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.http.HttpStatus;
@@ -21,10 +21,11 @@ import java.util.Set;
 public class QueryRankingController {
 
     private static final Logger LOGGER = LogManager.getLogger(QueryRankingController.class.getName());
+    private static final QueryRankingService rankingService = new QueryRankingService();
 
     @PostMapping(
             value = "/generate-queries",
-            produces = {"application/hal+json", "application/json"}
+            produces = {"application/hal+json", "application/json", PayloadCodecs.SMILE_VALUE}
     )
     public QueryRankingResponseBean generateQueries(@RequestBody QueryRankingRequestBody body) throws IOException {
         String question = body.getQuestion();
@@ -41,15 +42,6 @@ public class QueryRankingController {
         }
 
 //        EntityLinkingResponseBean linkedResourcesBean = JSONUtils.JSONStringToObject(linkedResourcesJson, EntityLinkingResponseBean.class);
-        EntityLinkingResult linkedEntities = new EntityLinkingResult(linkedResourcesBean);
-        QueryGenerator queryGenerator = new QueryGenerator(linkedEntities, queryTemplates);
-        QueryRankingResponseBean generatedQueries = queryGenerator.generateQueries();
-        printInfos(generatedQueries);
-        return generatedQueries;
-    }
-
-    private static void printInfos(QueryRankingResponseBean generatedQueries) {
-        LOGGER.info("Query generation finished");
-        generatedQueries.getGeneratedQueries().forEach(LOGGER::info);
+        return rankingService.generateQueries(queryTemplates, linkedResourcesBean);
     }
 }
@@ -0,0 +1,100 @@
+package de.uni.leipzig.tebaqa.queryranking.util;
+
+import de.uni.leipzig.tebaqa.tebaqacommons.model.RatedQuery;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.sparql.algebra.Algebra;
+import org.apache.jena.sparql.algebra.Op;
+import org.apache.jena.sparql.algebra.OpVars;
+import org.apache.jena.sparql.algebra.TransformCopy;
+import org.apache.jena.sparql.algebra.Transformer;
+import org.apache.jena.sparql.algebra.op.OpBGP;
+import org.apache.jena.sparql.core.BasicPattern;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.graph.NodeTransformLib;
+import org.apache.jena.sparql.util.FmtUtils;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Detects generated queries which only differ in variable names, the order of their triple patterns or the form of
+ * their IRIs (prefixed or not). Such queries have the same canonical form: the query type and its algebra with
+ * expanded IRIs, sorted basic graph patterns and variables renamed in order of occurrence.
+ */
+public class QueryCanonicalizer {
+
+    private static final String CANONICAL_VAR_PREFIX = "_c";
+
+    /**
+     * Two queries with the same canonical form return the same results, except for the names of the result variables.
+     * Symmetric patterns may keep equivalent queries apart, but never make different ones equal.
+     *
+     * @return The canonical form or the query itself if it can't be parsed.
+     */
+    public static String canonicalize(String queryString) {
+        Query query;
+        try {
+            query = QueryFactory.create(queryString);
+        } catch (RuntimeException e) {
+            return queryString;
+        }
+
+        // Variable names depend on the order of the patterns and the other way round, so patterns are ordered by
+        // their IRIs and literals first, the ties are ordered after renaming
+        Op op = sortPatterns(Algebra.compile(query), QueryCanonicalizer::patternKey);
+
+        Set<Var> vars = new LinkedHashSet<>();
+        OpVars.mentionedVars(op, vars);
+        Map<Node, Node> renaming = new HashMap<>();
+        for (Var var : vars) {
+            renaming.put(var, Var.alloc(CANONICAL_VAR_PREFIX + renaming.size()));
+        }
+        op = NodeTransformLib.transform(node -> renaming.getOrDefault(node, node), op);
+
+        op = sortPatterns(op, FmtUtils::stringForTriple);
+        return query.queryType() + " " + op;
+    }
+
+    /**
+     * Collapses queries with the same canonical form, keeping the one with the highest rating. Ties are broken by the
+     * query string so the result doesn't depend on the input order.
+     *
+     * @return The remaining queries.
+     */
+    public static List<RatedQuery> deduplicate(Collection<RatedQuery> queries) {
+        Map<String, RatedQuery> best = new LinkedHashMap<>();
+        for (RatedQuery query : queries) {
+            best.merge(canonicalize(query.getQuery()), query, QueryCanonicalizer::better);
+        }
+        return new ArrayList<>(best.values());
+    }
+
+    private static RatedQuery better(RatedQuery q1, RatedQuery q2) {
+        int byRating = Double.compare(q1.getRating(), q2.getRating());
+        if (byRating != 0)
+            return byRating > 0 ? q1 : q2;
+        return q1.getQuery().compareTo(q2.getQuery()) <= 0 ? q1 : q2;
+    }
+
+    private static Op sortPatterns(Op op, Function<Triple, String> key) {
+        return Transformer.transform(new TransformCopy() {
+            @Override
+            public Op transform(OpBGP opBGP) {
+                List<Triple> triples = new ArrayList<>(opBGP.getPattern().getList());
+                triples.sort(Comparator.comparing(key));
+                return new OpBGP(BasicPattern.wrap(triples));
+            }
+        }, op);
+    }
+
+    private static String patternKey(Triple triple) {
+        return nodeKey(triple.getSubject()) + " " + nodeKey(triple.getPredicate()) + " " + nodeKey(triple.getObject());
+    }
+
+    private static String nodeKey(Node node) {
+        return node.isVariable() ? "?" : FmtUtils.stringForNode(node);
+    }
+}
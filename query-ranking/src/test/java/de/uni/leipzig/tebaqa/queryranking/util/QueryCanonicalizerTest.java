@@ -0,0 +1,73 @@
+package de.uni.leipzig.tebaqa.queryranking.util;
+
+import de.uni.leipzig.tebaqa.tebaqacommons.model.RatedQuery;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryCanonicalizerTest {
+
+    private static final String LEADER = "SELECT DISTINCT ?uri WHERE { <http://dbpedia.org/resource/Berlin> <http://dbpedia.org/ontology/leader> ?uri . "
+            + "?uri <http://dbpedia.org/ontology/party> ?p }";
+
+    @Test
+    void variableNamesDontMatter() {
+        assertEquals(QueryCanonicalizer.canonicalize(LEADER), QueryCanonicalizer.canonicalize(
+                "SELECT DISTINCT ?x WHERE { <http://dbpedia.org/resource/Berlin> <http://dbpedia.org/ontology/leader> ?x . "
+                        + "?x <http://dbpedia.org/ontology/party> ?party }"));
+    }
+
+    @Test
+    void tripleOrderDoesntMatter() {
+        assertEquals(QueryCanonicalizer.canonicalize(LEADER), QueryCanonicalizer.canonicalize(
+                "SELECT DISTINCT ?uri WHERE { ?uri <http://dbpedia.org/ontology/party> ?p . "
+                        + "<http://dbpedia.org/resource/Berlin> <http://dbpedia.org/ontology/leader> ?uri }"));
+    }
+
+    @Test
+    void prefixedIrisDontMatter() {
+        assertEquals(QueryCanonicalizer.canonicalize(LEADER), QueryCanonicalizer.canonicalize(
+                "PREFIX dbo: <http://dbpedia.org/ontology/> PREFIX res: <http://dbpedia.org/resource/> "
+                        + "SELECT DISTINCT ?uri WHERE { res:Berlin dbo:leader ?uri . ?uri dbo:party ?p }"));
+    }
+
+    @Test
+    void differentConstantsStayApart() {
+        String canonical = QueryCanonicalizer.canonicalize(LEADER);
+        assertNotEquals(canonical, QueryCanonicalizer.canonicalize(
+                "SELECT DISTINCT ?uri WHERE { <http://dbpedia.org/resource/Leipzig> <http://dbpedia.org/ontology/leader> ?uri . "
+                        + "?uri <http://dbpedia.org/ontology/party> ?p }"));
+        assertNotEquals(canonical, QueryCanonicalizer.canonicalize(
+                "SELECT DISTINCT ?uri WHERE { <http://dbpedia.org/resource/Berlin> <http://dbpedia.org/ontology/mayor> ?uri . "
+                        + "?uri <http://dbpedia.org/ontology/party> ?p }"));
+        // Same constants, but the variable is joined differently
+        assertNotEquals(canonical, QueryCanonicalizer.canonicalize(
+                "SELECT DISTINCT ?uri WHERE { <http://dbpedia.org/resource/Berlin> <http://dbpedia.org/ontology/leader> ?uri . "
+                        + "?p <http://dbpedia.org/ontology/party> ?uri }"));
+        assertNotEquals(canonical, QueryCanonicalizer.canonicalize(LEADER.replace("SELECT DISTINCT ?uri", "ASK")));
+    }
+
+    @Test
+    void unparsableQueriesStayAsTheyAre() {
+        assertEquals("SELECT ?uri WHERE {", QueryCanonicalizer.canonicalize("SELECT ?uri WHERE {"));
+    }
+
+    @Test
+    void deduplicateKeepsTheBestRatedQuery() {
+        RatedQuery low = query(LEADER, 0.2);
+        RatedQuery high = query(LEADER.replace("?uri", "?x"), 0.8);
+        RatedQuery other = query(LEADER.replace("Berlin", "Leipzig"), 0.1);
+
+        List<RatedQuery> remaining = QueryCanonicalizer.deduplicate(Arrays.asList(low, other, high));
+        assertEquals(Arrays.asList(high, other), remaining);
+        assertEquals(remaining, QueryCanonicalizer.deduplicate(Arrays.asList(high, other, low)));
+    }
+
+    private static RatedQuery query(String query, double rating) {
+        return new RatedQuery(query, Collections.emptySet(), Collections.emptySet(), Collections.emptySet(), rating);
+    }
+}
@@ -3,6 +3,7 @@ package de.uni.leipzig.tebaqa.tebaqacommons.nlp;
 import de.uni.leipzig.tebaqa.tebaqacommons.model.QueryType;
 import de.uni.leipzig.tebaqa.tebaqacommons.model.QuestionAnswerType;
 import de.uni.leipzig.tebaqa.tebaqacommons.model.RestServiceConfiguration;
+import de.uni.leipzig.tebaqa.tebaqacommons.pipeline.EmbeddedStages;
 import de.uni.leipzig.tebaqa.tebaqacommons.util.RestConstants;
 import de.uni.leipzig.tebaqa.tebaqacommons.util.RestServiceConnector;
 import edu.stanford.nlp.pipeline.Annotation;
@@ -19,11 +20,18 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Properties;
 
+/**
+ * Calls the NLP service, or the analyzers of the nlp module in-process if service.nlp.mode is "embedded". The mode is
+ * read from a system property of that name or else from nlp.properties.
+ */
 @SuppressWarnings({"unchecked", "rawtypes"})
-public class SemanticAnalysisHelper {
+public class SemanticAnalysisHelper implements SemanticAnalyzer {
+
+    public static final String MODE_PROPERTY = "service.nlp.mode";
 
     private final String serviceBaseUrl;
     private final Lang lang;
+    private final SemanticAnalyzer embedded;
 
     public SemanticAnalysisHelper(Lang lang) throws IOException {
         this.lang = lang;
@@ -31,6 +39,13 @@ public class SemanticAnalysisHelper {
         InputStream inputStream = this.getClass().getClassLoader().getResourceAsStream("nlp.properties");
         props.load(inputStream);
 
+        if (EmbeddedStages.isEmbedded(System.getProperty(MODE_PROPERTY, props.getProperty(MODE_PROPERTY)))) {
+            this.embedded = EmbeddedStages.get(SemanticAnalyzerFactory.class, EmbeddedStages.SEMANTIC_ANALYZER_FACTORY).getAnalyzer(lang);
+            this.serviceBaseUrl = null;
+            return;
+        }
+        this.embedded = null;
+
         String scheme = props.getProperty("service.nlp.scheme");
         String host = props.getProperty("service.nlp.host");
         String port = props.getProperty("service.nlp.port");
@@ -44,6 +59,7 @@ public class SemanticAnalysisHelper {
     public SemanticAnalysisHelper(RestServiceConfiguration serviceConfiguration, Lang lang) {
         this.serviceBaseUrl = serviceConfiguration.getUrl();
         this.lang = lang;
+        this.embedded = null;
     }
 
     private JSONObject prepareRequest(String text) {
@@ -54,7 +70,10 @@ public class SemanticAnalysisHelper {
     }
 
     // TODO
+    @Override
     public Annotation annotate(String text) {
+        if (embedded != null)
+            return embedded.annotate(text);
         String requestBody = prepareRequest(text).toString();
         ResponseEntity<String> responseEntity = RestServiceConnector.postJson(this.serviceBaseUrl + RestConstants.NLP_ANNOTATIONS, requestBody, String.class);
         String response = responseEntity.getBody();
@@ -72,37 +91,55 @@ public class SemanticAnalysisHelper {
         return annotation;
     }
 
+    @Override
     public Map<String, String> getPosTags(String text) {
+        if (embedded != null)
+            return embedded.getPosTags(text);
         String requestBody = prepareRequest(text).toString();
         ResponseEntity<Map> posMapping = RestServiceConnector.postJson(this.serviceBaseUrl + RestConstants.NLP_POS_TAGS, requestBody, Map.class);
         return (Map<String, String>) posMapping.getBody();
     }
 
+    @Override
     public String removeQuestionWords(String question) {
+        if (embedded != null)
+            return embedded.removeQuestionWords(question);
         String requestBody = prepareRequest(question).toString();
         ResponseEntity<String> posMapping = RestServiceConnector.postJson(this.serviceBaseUrl + RestConstants.NLP_CLEAN_QUESTION_WORDS, requestBody, String.class);
         return posMapping.getBody();
     }
 
+    @Override
     public SemanticGraph extractDependencyGraph(String text) {
+        if (embedded != null)
+            return embedded.extractDependencyGraph(text);
         String requestBody = prepareRequest(text).toString();
         ResponseEntity<String> posMapping = RestServiceConnector.postJson(this.serviceBaseUrl + RestConstants.NLP_DEPENDENCY_GRAPH, requestBody, String.class);
         return SemanticGraph.valueOf(posMapping.getBody());
     }
 
+    @Override
     public Map<String, String> getLemmas(String text) {
+        if (embedded != null)
+            return embedded.getLemmas(text);
         String requestBody = prepareRequest(text).toString();
         ResponseEntity<LinkedHashMap> posMapping = RestServiceConnector.postJson(this.serviceBaseUrl + RestConstants.NLP_LEMMAS, requestBody, LinkedHashMap.class);
         return (Map<String, String>) posMapping.getBody();
     }
 
+    @Override
     public QueryType mapQuestionToQueryType(String question) {
+        if (embedded != null)
+            return embedded.mapQuestionToQueryType(question);
         String requestBody = prepareRequest(question).toString();
         ResponseEntity<String> posMapping = RestServiceConnector.postJson(this.serviceBaseUrl + RestConstants.NLP_QUERY_TYPE, requestBody, String.class);
         return QueryType.forCode(posMapping.getBody());
     }
 
+    @Override
     public QuestionAnswerType detectQuestionAnswerType(String question) {
+        if (embedded != null)
+            return embedded.detectQuestionAnswerType(question);
         String requestBody = prepareRequest(question).toString();
         ResponseEntity<String> posMapping = RestServiceConnector.postJson(this.serviceBaseUrl + RestConstants.NLP_QUESTION_ANSWER_TYPE, requestBody, String.class);
         return QuestionAnswerType.forCode(posMapping.getBody());
@@ -0,0 +1,28 @@
+package de.uni.leipzig.tebaqa.tebaqacommons.nlp;
+
+import de.uni.leipzig.tebaqa.tebaqacommons.model.QueryType;
+import de.uni.leipzig.tebaqa.tebaqacommons.model.QuestionAnswerType;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.semgraph.SemanticGraph;
+
+import java.util.Map;
+
+/**
+ * The analyses of the NLP service, implemented by {@link SemanticAnalysisHelper} over REST and by the analyzers of
+ * the nlp module in-process.
+ */
+public interface SemanticAnalyzer {
+    Annotation annotate(String text);
+
+    Map<String, String> getPosTags(String text);
+
+    String removeQuestionWords(String question);
+
+    SemanticGraph extractDependencyGraph(String text);
+
+    Map<String, String> getLemmas(String text);
+
+    QueryType mapQuestionToQueryType(String question);
+
+    QuestionAnswerType detectQuestionAnswerType(String question);
+}
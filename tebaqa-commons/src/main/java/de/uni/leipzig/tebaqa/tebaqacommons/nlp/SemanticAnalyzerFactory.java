@@ -0,0 +1,9 @@
+package de.uni.leipzig.tebaqa.tebaqacommons.nlp;
+
+/**
+ * Provides the in-process {@link SemanticAnalyzer} of a language, see
+ * {@link de.uni.leipzig.tebaqa.tebaqacommons.pipeline.EmbeddedStages#SEMANTIC_ANALYZER_FACTORY}.
+ */
+public interface SemanticAnalyzerFactory {
+    SemanticAnalyzer getAnalyzer(Lang lang);
+}
@@ -0,0 +1,71 @@
+package de.uni.leipzig.tebaqa.tebaqacommons.pipeline;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Creates the in-process implementations of the pipeline stages. The classes live in the service modules, which the
+ * callers don't depend on at compile time, so they are loaded by name and have to be on the class path, e.g. by
+ * building the controller with the embedded profile. Every stage is created once per JVM, so all callers share its
+ * models and caches.
+ */
+public class EmbeddedStages {
+
+    private static final Logger LOGGER = LogManager.getLogger(EmbeddedStages.class);
+
+    public static final String REMOTE = "remote";
+    public static final String EMBEDDED = "embedded";
+
+    public static final String TEMPLATE_CLASSIFIER = "de.uni.leipzig.tebaqa.template.service.TemplateClassificationService";
+    public static final String ENTITY_LINKER = "de.uni.leipzig.tebaqa.entitylinking.service.EntityLinkingService";
+    public static final String QUERY_RANKER = "de.uni.leipzig.tebaqa.queryranking.service.QueryRankingService";
+    public static final String SEMANTIC_ANALYZER_FACTORY = "de.uni.leipzig.tebaqa.nlp.core.NLPAnalyzerProvider";
+
+    // Not a ConcurrentHashMap, creating a stage may create another one, e.g. the NLP analyzers
+    private static final Map<String, Object> INSTANCES = new HashMap<>();
+
+    public static boolean isEmbedded(String mode) {
+        if (mode == null || mode.trim().isEmpty() || REMOTE.equalsIgnoreCase(mode.trim()))
+            return false;
+        if (EMBEDDED.equalsIgnoreCase(mode.trim()))
+            return true;
+        throw new IllegalArgumentException(String.format("Unknown stage mode '%s', use '%s' or '%s'", mode, REMOTE, EMBEDDED));
+    }
+
+    /**
+     * @param type      The stage interface.
+     * @param className The implementing class, which needs a public constructor without parameters.
+     * @return The shared instance of the class.
+     * @throws IllegalStateException If the class isn't on the class path or can't be created.
+     */
+    public static synchronized <T> T get(Class<T> type, String className) {
+        Object instance = INSTANCES.get(className);
+        if (instance == null) {
+            instance = create(className);
+            INSTANCES.put(className, instance);
+        }
+        return type.cast(instance);
+    }
+
+    private static Object create(String className) {
+        long start = System.currentTimeMillis();
+        Class<?> stageClass;
+        try {
+            stageClass = Class.forName(className);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(String.format("Embedded stage %s is not on the class path, build with -Pembedded " +
+                    "or set the stage to %s", className, REMOTE), e);
+        }
+        try {
+            Object instance = stageClass.getConstructor().newInstance();
+            LOGGER.info(String.format("Created embedded stage %s in %s ms", stageClass.getSimpleName(), System.currentTimeMillis() - start));
+            return instance;
+        } catch (ReflectiveOperationException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new IllegalStateException("Unable to create embedded stage " + className, cause);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package de.uni.leipzig.tebaqa.tebaqacommons.pipeline;
+
+import de.uni.leipzig.tebaqa.tebaqacommons.model.EntityLinkingResponseBean;
+import de.uni.leipzig.tebaqa.tebaqacommons.nlp.Lang;
+
+/**
+ * The entity linking stage, implemented by the REST connector of the controller and by the embedded linker of the
+ * entity-linking module.
+ */
+public interface EntityLinker {
+
+    /**
+     * @return The entity, property and class candidates found in the question.
+     */
+    EntityLinkingResponseBean extractEntities(String question, Lang lang);
+}
@@ -0,0 +1,19 @@
+package de.uni.leipzig.tebaqa.tebaqacommons.pipeline;
+
+import de.uni.leipzig.tebaqa.tebaqacommons.model.EntityLinkingResponseBean;
+import de.uni.leipzig.tebaqa.tebaqacommons.model.QueryRankingResponseBean;
+import de.uni.leipzig.tebaqa.tebaqacommons.model.QueryTemplateResponseBean;
+import de.uni.leipzig.tebaqa.tebaqacommons.nlp.Lang;
+
+/**
+ * The query generation and ranking stage, implemented by the REST connector of the controller and by the embedded
+ * generator of the query-ranking module.
+ */
+public interface QueryRanker {
+
+    /**
+     * @return The queries generated by filling the templates with the linked resources, with their ratings.
+     */
+    QueryRankingResponseBean generateQueries(String question, Lang lang, QueryTemplateResponseBean queryTemplates,
+                                             EntityLinkingResponseBean linkedResources);
+}
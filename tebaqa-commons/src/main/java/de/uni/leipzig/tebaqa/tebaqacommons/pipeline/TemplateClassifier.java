@@ -0,0 +1,21 @@
+package de.uni.leipzig.tebaqa.tebaqacommons.pipeline;
+
+import de.uni.leipzig.tebaqa.tebaqacommons.model.QueryTemplateResponseBean;
+import de.uni.leipzig.tebaqa.tebaqacommons.nlp.Lang;
+
+/**
+ * The template classification stage, implemented by the REST connector of the controller and by the embedded
+ * classifier of the template-classification module.
+ */
+public interface TemplateClassifier {
+
+    /**
+     * @return The query templates of the graph the question is classified as.
+     */
+    QueryTemplateResponseBean getMatchingQueryTemplates(String question, Lang lang);
+
+    /**
+     * @return The query templates of all graphs which fit the query type of the question.
+     */
+    QueryTemplateResponseBean getAllQueryTemplates(String question, Lang lang);
+}
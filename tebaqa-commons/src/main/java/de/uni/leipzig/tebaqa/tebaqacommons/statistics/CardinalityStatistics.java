@@ -0,0 +1,180 @@
+package de.uni.leipzig.tebaqa.tebaqacommons.statistics;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Triple counts of a knowledge base, used to estimate the cardinality of triple patterns without querying it: the
+ * number of triples, the triples, distinct subjects and distinct objects of every predicate and the degree of entities
+ * with many triples. The degree of all other entities is only known on average. Created offline by
+ * {@link CardinalityStatisticsGenerator} and stored as tab separated lines, gzip compressed if the file name ends
+ * with .gz:
+ * <pre>
+ * T  triples
+ * D  minEntityDegree  averageOutDegree  averageInDegree
+ * P  predicate  triples  subjects  objects
+ * E  entity  outDegree  inDegree
+ * </pre>
+ */
+public class CardinalityStatistics {
+
+    private long triples;
+    private long minEntityDegree;
+    private double averageOutDegree;
+    private double averageInDegree;
+    // triples, subjects, objects
+    private final Map<String, long[]> predicates = new HashMap<>();
+    // out degree, in degree
+    private final Map<String, long[]> entities = new HashMap<>();
+
+    public static CardinalityStatistics read(File file) throws IOException {
+        CardinalityStatistics statistics = new CardinalityStatistics();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(open(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t");
+                try {
+                    switch (fields[0]) {
+                        case "T":
+                            statistics.triples = Long.parseLong(fields[1]);
+                            break;
+                        case "D":
+                            statistics.minEntityDegree = Long.parseLong(fields[1]);
+                            statistics.averageOutDegree = Double.parseDouble(fields[2]);
+                            statistics.averageInDegree = Double.parseDouble(fields[3]);
+                            break;
+                        case "P":
+                            statistics.setPredicate(fields[1], Long.parseLong(fields[2]), Long.parseLong(fields[3]), Long.parseLong(fields[4]));
+                            break;
+                        case "E":
+                            statistics.setEntity(fields[1], Long.parseLong(fields[2]), Long.parseLong(fields[3]));
+                            break;
+                        default:
+                            // Empty lines and comments
+                    }
+                } catch (RuntimeException e) {
+                    throw new IOException("Invalid line in " + file + ": " + line, e);
+                }
+            }
+        }
+        return statistics;
+    }
+
+    public void write(File file) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        if (file.getName().endsWith(".gz"))
+            out = new GZIPOutputStream(out);
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)))) {
+            writer.println("T\t" + triples);
+            writer.println("D\t" + minEntityDegree + "\t" + averageOutDegree + "\t" + averageInDegree);
+            predicates.forEach((predicate, counts) -> writer.println("P\t" + predicate + "\t" + counts[0] + "\t" + counts[1] + "\t" + counts[2]));
+            entities.forEach((entity, degrees) -> writer.println("E\t" + entity + "\t" + degrees[0] + "\t" + degrees[1]));
+            if (writer.checkError())
+                throw new IOException("Unable to write " + file);
+        }
+    }
+
+    private static InputStream open(File file) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        return file.getName().endsWith(".gz") ? new GZIPInputStream(in) : in;
+    }
+
+    public void setTripleCount(long triples) {
+        this.triples = triples;
+    }
+
+    public void setEntityDefaults(long minEntityDegree, double averageOutDegree, double averageInDegree) {
+        this.minEntityDegree = minEntityDegree;
+        this.averageOutDegree = averageOutDegree;
+        this.averageInDegree = averageInDegree;
+    }
+
+    public void setPredicate(String predicate, long triples, long subjects, long objects) {
+        predicates.put(predicate, new long[]{triples, Math.max(1, subjects), Math.max(1, objects)});
+    }
+
+    public void setEntity(String entity, long outDegree, long inDegree) {
+        entities.put(entity, new long[]{outDegree, inDegree});
+    }
+
+    public long getTripleCount() {
+        return triples;
+    }
+
+    /**
+     * Entities with at least this degree have their own statistics.
+     */
+    public long getMinEntityDegree() {
+        return minEntityDegree;
+    }
+
+    /**
+     * @return The average number of triples of an entity without own statistics as subject.
+     */
+    public double getAverageOutDegree() {
+        return averageOutDegree;
+    }
+
+    /**
+     * @return The average number of triples of an entity without own statistics as object.
+     */
+    public double getAverageInDegree() {
+        return averageInDegree;
+    }
+
+    public boolean hasPredicate(String predicate) {
+        return predicates.containsKey(predicate);
+    }
+
+    /**
+     * @return The number of triples with the predicate, 0 if it's unknown.
+     */
+    public long getPredicateTriples(String predicate) {
+        long[] counts = predicates.get(predicate);
+        return counts == null ? 0 : counts[0];
+    }
+
+    /**
+     * @return The number of distinct subjects of the predicate, at least 1.
+     */
+    public long getPredicateSubjects(String predicate) {
+        long[] counts = predicates.get(predicate);
+        return counts == null ? 1 : counts[1];
+    }
+
+    /**
+     * @return The number of distinct objects of the predicate, at least 1.
+     */
+    public long getPredicateObjects(String predicate) {
+        long[] counts = predicates.get(predicate);
+        return counts == null ? 1 : counts[2];
+    }
+
+    /**
+     * @return The number of triples with the entity as subject or the average of entities without own statistics.
+     */
+    public double getOutDegree(String entity) {
+        long[] degrees = entities.get(entity);
+        return degrees == null ? averageOutDegree : degrees[0];
+    }
+
+    /**
+     * @return The number of triples with the entity as object or the average of entities without own statistics.
+     */
+    public double getInDegree(String entity) {
+        long[] degrees = entities.get(entity);
+        return degrees == null ? averageInDegree : degrees[1];
+    }
+
+    public int predicateCount() {
+        return predicates.size();
+    }
+
+    public int entityCount() {
+        return entities.size();
+    }
+}
@@ -0,0 +1,173 @@
+package de.uni.leipzig.tebaqa.tebaqacommons.statistics;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Counts the triples of the ontology and data files indexed by TeBaQAIndexer and writes them as
+ * {@link CardinalityStatistics} to target.statistics.file, which the controller uses to estimate the cost of generated
+ * queries (sparql.cost.statistics-file). It reads the same properties file as the indexer. Entities with at least
+ * target.statistics.entity.min-degree triples get their own statistics. The degrees of all entities are kept in
+ * memory while counting.
+ */
+public class CardinalityStatisticsGenerator {
+
+    private static final Logger LOGGER = LogManager.getLogger(CardinalityStatisticsGenerator.class);
+    private static final String DEFAULT_PROPERTIES = "src/main/resources/indexing.properties";
+
+    private final long minEntityDegree;
+    private long triples;
+    private final Map<String, PredicateCounter> predicates = new HashMap<>();
+    // out degree, in degree
+    private final Map<String, int[]> entityDegrees = new HashMap<>();
+
+    public CardinalityStatisticsGenerator(long minEntityDegree) {
+        this.minEntityDegree = minEntityDegree;
+    }
+
+    public static void main(String[] args) {
+        String indexingProperties = DEFAULT_PROPERTIES;
+        if (args.length > 0) {
+            LOGGER.info("Property file specified as argument: " + args[0]);
+            if (Files.notExists(Paths.get(args[0]))) {
+                LOGGER.error("Specified property file does not exist or cannot be opened.. exiting!");
+                return;
+            }
+            indexingProperties = args[0];
+        }
+        try (InputStream input = new FileInputStream(indexingProperties)) {
+            Properties prop = new Properties();
+            prop.load(input);
+
+            String target = prop.getProperty("target.statistics.file");
+            if (target == null || target.trim().isEmpty()) {
+                LOGGER.error("target.statistics.file is not set.. exiting!");
+                return;
+            }
+
+            List<File> files = DumpFiles.list(prop);
+            LOGGER.info(String.format("Counting triples of %s files", files.size()));
+
+            CardinalityStatisticsGenerator generator = new CardinalityStatisticsGenerator(
+                    Long.parseLong(prop.getProperty("target.statistics.entity.min-degree", "1000").trim()));
+            files.forEach(generator::count);
+            generator.getStatistics().write(new File(target.trim()));
+            LOGGER.info("Statistics written to " + target.trim());
+        } catch (IOException e) {
+            LOGGER.error("Error while generating the statistics.", e);
+        }
+    }
+
+    /**
+     * Counts the triples of a file, see {@link DumpFiles#parse(File, org.apache.jena.riot.system.StreamRDF)}.
+     */
+    public void count(File file) {
+        DumpFiles.parse(file, new StreamRDFBase() {
+            @Override
+            public void triple(Triple triple) {
+                count(triple);
+            }
+        });
+        LOGGER.info(String.format("%s triples so far", triples));
+    }
+
+    public void count(Triple triple) {
+        triples++;
+        String subject = key(triple.getSubject());
+        String object = key(triple.getObject());
+        predicates.computeIfAbsent(key(triple.getPredicate()), p -> new PredicateCounter()).add(subject, object);
+        if (triple.getSubject().isURI())
+            entityDegrees.computeIfAbsent(subject, e -> new int[2])[0]++;
+        if (triple.getObject().isURI())
+            entityDegrees.computeIfAbsent(object, e -> new int[2])[1]++;
+    }
+
+    public CardinalityStatistics getStatistics() {
+        CardinalityStatistics statistics = new CardinalityStatistics();
+        statistics.setTripleCount(triples);
+        predicates.forEach((predicate, counter) -> statistics.setPredicate(predicate, counter.triples,
+                counter.subjects.estimate(), counter.objects.estimate()));
+
+        long otherEntities = 0;
+        long otherOutDegree = 0;
+        long otherInDegree = 0;
+        for (Map.Entry<String, int[]> entity : entityDegrees.entrySet()) {
+            int[] degrees = entity.getValue();
+            if ((long) degrees[0] + degrees[1] >= minEntityDegree) {
+                statistics.setEntity(entity.getKey(), degrees[0], degrees[1]);
+            } else {
+                otherEntities++;
+                otherOutDegree += degrees[0];
+                otherInDegree += degrees[1];
+            }
+        }
+        statistics.setEntityDefaults(minEntityDegree,
+                otherEntities == 0 ? 0 : (double) otherOutDegree / otherEntities,
+                otherEntities == 0 ? 0 : (double) otherInDegree / otherEntities);
+        return statistics;
+    }
+
+    // IRIs without brackets, other nodes as in N-Triples
+    private static String key(Node node) {
+        return node.isURI() ? node.getURI() : node.toString();
+    }
+
+    private static class PredicateCounter {
+        private long triples;
+        private final DistinctCounter subjects = new DistinctCounter();
+        private final DistinctCounter objects = new DistinctCounter();
+
+        void add(String subject, String object) {
+            triples++;
+            subjects.add(subject);
+            objects.add(object);
+        }
+    }
+
+    /**
+     * Estimates the number of distinct values with a HyperLogLog sketch of 1024 registers, which is exact enough for
+     * cardinality estimates (about 3% error) and small enough for every predicate.
+     */
+    private static class DistinctCounter {
+        private static final int INDEX_BITS = 10;
+        private static final int REGISTERS = 1 << INDEX_BITS;
+        private static final HashFunction HASH = Hashing.murmur3_128();
+
+        private final byte[] registers = new byte[REGISTERS];
+
+        void add(String value) {
+            long hash = HASH.hashString(value, StandardCharsets.UTF_8).asLong();
+            int index = (int) (hash >>> (Long.SIZE - INDEX_BITS));
+            int rank = Long.numberOfLeadingZeros((hash << INDEX_BITS) | (1L << (INDEX_BITS - 1))) + 1;
+            if (rank > registers[index])
+                registers[index] = (byte) rank;
+        }
+
+        long estimate() {
+            double sum = 0;
+            int zeros = 0;
+            for (byte register : registers) {
+                sum += Math.pow(2, -register);
+                if (register == 0)
+                    zeros++;
+            }
+            double alpha = 0.7213 / (1 + 1.079 / REGISTERS);
+            double estimate = alpha * REGISTERS * REGISTERS / sum;
+            // Linear counting is more exact for small sets
+            if (estimate <= 2.5 * REGISTERS && zeros > 0)
+                estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+            return Math.round(estimate);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package de.uni.leipzig.tebaqa.tebaqacommons.statistics;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.RiotException;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * The ontology and data files indexed by TeBaQAIndexer, read by the offline jobs which prepare data for the
+ * controller.
+ */
+public class DumpFiles {
+
+    private static final Logger LOGGER = LogManager.getLogger(DumpFiles.class);
+
+    /**
+     * @param prop The indexing properties with source.ontology.folder and source.data.folder.
+     * @return The ontology files followed by the data files.
+     */
+    public static List<File> list(Properties prop) {
+        List<File> files = new ArrayList<>();
+        files.addAll(listFiles(prop.getProperty("source.ontology.folder")));
+        files.addAll(listFiles(prop.getProperty("source.data.folder")));
+        return files;
+    }
+
+    /**
+     * Parses a file into the stream. A file which can't be parsed is skipped, but triples read before the error are
+     * kept.
+     *
+     * @param file A Turtle or N-Triples file, optionally bzip2 compressed.
+     * @return false if the file couldn't be parsed completely.
+     */
+    public static boolean parse(File file, StreamRDF stream) {
+        LOGGER.info("Start parsing: " + file);
+
+        // Same choice of syntax as TeBaQAIndexer
+        String fileName = file.getName().toLowerCase();
+        Lang lang = fileName.endsWith("ttl") || fileName.endsWith("ttl.bz2") ? Lang.TTL : Lang.NTRIPLES;
+        try (InputStream in = fileName.endsWith(".bz2")
+                ? new BZip2CompressorInputStream(new BufferedInputStream(new FileInputStream(file)))
+                : new BufferedInputStream(new FileInputStream(file))) {
+            RDFParser.create()
+                    .source(in)
+                    .lang(lang)
+                    .checking(false)
+                    .parse(stream);
+        } catch (IOException | RiotException e) {
+            LOGGER.error("Error while parsing " + file + ", skipping the rest of it", e);
+            return false;
+        }
+
+        LOGGER.info("Finished parsing: " + file);
+        return true;
+    }
+
+    private static List<File> listFiles(String folder) {
+        List<File> files = new ArrayList<>();
+        if (folder == null || folder.trim().isEmpty())
+            return files;
+        for (File file : Objects.requireNonNull(new File(folder.trim()).listFiles())) {
+            String name = file.getName();
+            if (name.endsWith("bz2") || name.endsWith("ttl") || name.endsWith("nt") || name.endsWith("owl")) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+}
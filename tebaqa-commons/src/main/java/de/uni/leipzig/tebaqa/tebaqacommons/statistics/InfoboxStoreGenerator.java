@@ -0,0 +1,114 @@
+package de.uni.leipzig.tebaqa.tebaqacommons.statistics;
+
+import de.uni.leipzig.tebaqa.tebaqacommons.util.MappedRecordStore;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Writes the infobox values of every resource (label, description, abstract, thumbnail and Wikipedia page) to a
+ * {@link MappedRecordStore}, which the controller reads instead of asking the endpoint (infobox.store-file). It reads
+ * the same properties file and files as TeBaQAIndexer. The fields are named like the variables of the infobox query
+ * of InfoboxService, literals are only taken in English like there.
+ */
+public class InfoboxStoreGenerator {
+
+    private static final Logger LOGGER = LogManager.getLogger(InfoboxStoreGenerator.class);
+    private static final String DEFAULT_PROPERTIES = "src/main/resources/indexing.properties";
+    private static final Map<String, String> LITERAL_FIELDS = new HashMap<>();
+    private static final Map<String, String> RESOURCE_FIELDS = new HashMap<>();
+
+    static {
+        LITERAL_FIELDS.put("http://www.w3.org/2000/01/rdf-schema#label", "label");
+        LITERAL_FIELDS.put("http://purl.org/dc/terms/description", "description");
+        LITERAL_FIELDS.put("http://dbpedia.org/ontology/abstract", "abstract");
+        RESOURCE_FIELDS.put("http://dbpedia.org/ontology/thumbnail", "thumbnail");
+        RESOURCE_FIELDS.put("http://xmlns.com/foaf/0.1/isPrimaryTopicOf", "primaryTopic");
+    }
+
+    private final MappedRecordStore.Builder store;
+    private long fields;
+
+    public InfoboxStoreGenerator(MappedRecordStore.Builder store) {
+        this.store = store;
+    }
+
+    public static void main(String[] args) {
+        String indexingProperties = DEFAULT_PROPERTIES;
+        if (args.length > 0) {
+            LOGGER.info("Property file specified as argument: " + args[0]);
+            if (Files.notExists(Paths.get(args[0]))) {
+                LOGGER.error("Specified property file does not exist or cannot be opened.. exiting!");
+                return;
+            }
+            indexingProperties = args[0];
+        }
+        try (InputStream input = new FileInputStream(indexingProperties)) {
+            Properties prop = new Properties();
+            prop.load(input);
+
+            String target = prop.getProperty("target.infobox.file", "").trim();
+            if (target.isEmpty()) {
+                LOGGER.error("target.infobox.file is not set.. exiting!");
+                return;
+            }
+            try (MappedRecordStore.Builder store = new MappedRecordStore.Builder(new File(target))) {
+                InfoboxStoreGenerator generator = new InfoboxStoreGenerator(store);
+                DumpFiles.list(prop).forEach(generator::read);
+                store.write();
+                LOGGER.info(String.format("Infoboxes of %s resources written to %s", store.size(), target));
+            }
+        } catch (IOException | UncheckedIOException e) {
+            LOGGER.error("Error while generating the infobox store.", e);
+        }
+    }
+
+    public void read(File file) {
+        DumpFiles.parse(file, new StreamRDFBase() {
+            @Override
+            public void triple(Triple triple) {
+                read(triple);
+            }
+        });
+        LOGGER.info(String.format("%s infobox values so far", fields));
+    }
+
+    public void read(Triple triple) {
+        Node subject = triple.getSubject();
+        Node object = triple.getObject();
+        if (!subject.isURI() || !triple.getPredicate().isURI())
+            return;
+        String predicate = triple.getPredicate().getURI();
+        String field = LITERAL_FIELDS.get(predicate);
+        if (field != null && object.isLiteral() && "en".equals(object.getLiteralLanguage())) {
+            add(subject.getURI(), field, object.getLiteralLexicalForm());
+            return;
+        }
+        field = RESOURCE_FIELDS.get(predicate);
+        if (field != null && object.isURI())
+            add(subject.getURI(), field, object.getURI());
+    }
+
+    private void add(String resource, String field, String value) {
+        try {
+            store.add(resource, field, value);
+            fields++;
+        } catch (IOException e) {
+            // Thrown from the parser callback, the whole run fails
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package de.uni.leipzig.tebaqa.tebaqacommons.statistics;
+
+import de.uni.leipzig.tebaqa.tebaqacommons.util.MappedLookupTable;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Writes the page rank of every entity and the number of instances of every class to
+ * {@link MappedLookupTable lookup tables}, which the controller reads instead of asking the endpoint once per
+ * resource (SPARQLUtilities.getPageRank and countOntologyUsage). It reads the same properties file and files as
+ * TeBaQAIndexer. With target.lookup.pagerank.source=vrank the page ranks are taken from the vRank triples in the
+ * files, the data the endpoint answers from. With links they are computed from the links between resources, in the
+ * same unnormalized form (1 - d + d * sum of the incoming ranks).
+ */
+public class RankTableGenerator {
+
+    private static final Logger LOGGER = LogManager.getLogger(RankTableGenerator.class);
+    private static final String DEFAULT_PROPERTIES = "src/main/resources/indexing.properties";
+    private static final String VRANK_HAS_RANK = "http://purl.org/voc/vrank#hasRank";
+    private static final String VRANK_RANK_VALUE = "http://purl.org/voc/vrank#rankValue";
+
+    private final boolean computePageRank;
+    private final Map<String, Long> instanceCounts = new HashMap<>();
+    private final Map<String, Double> pageRanks = new HashMap<>();
+    // vRank links resources to rank nodes, which have the value
+    private final Map<Node, String> rankNodes = new HashMap<>();
+    private final Map<Node, Double> rankValues = new HashMap<>();
+    // The link graph, if page ranks are computed
+    private final Map<String, Integer> resourceIds = new HashMap<>();
+    private int[] linkSources = new int[1024];
+    private int[] linkTargets = new int[1024];
+    private int links;
+
+    /**
+     * @param computePageRank true to compute the page ranks from the links, false to read the vRank triples.
+     */
+    public RankTableGenerator(boolean computePageRank) {
+        this.computePageRank = computePageRank;
+    }
+
+    public static void main(String[] args) {
+        String indexingProperties = DEFAULT_PROPERTIES;
+        if (args.length > 0) {
+            LOGGER.info("Property file specified as argument: " + args[0]);
+            if (Files.notExists(Paths.get(args[0]))) {
+                LOGGER.error("Specified property file does not exist or cannot be opened.. exiting!");
+                return;
+            }
+            indexingProperties = args[0];
+        }
+        try (InputStream input = new FileInputStream(indexingProperties)) {
+            Properties prop = new Properties();
+            prop.load(input);
+
+            String pageRankFile = prop.getProperty("target.lookup.pagerank.file", "").trim();
+            String ontologyUsageFile = prop.getProperty("target.lookup.ontology-usage.file", "").trim();
+            if (pageRankFile.isEmpty() && ontologyUsageFile.isEmpty()) {
+                LOGGER.error("Neither target.lookup.pagerank.file nor target.lookup.ontology-usage.file is set.. exiting!");
+                return;
+            }
+            boolean computePageRank = "links".equalsIgnoreCase(prop.getProperty("target.lookup.pagerank.source", "vrank").trim());
+
+            RankTableGenerator generator = new RankTableGenerator(computePageRank && !pageRankFile.isEmpty());
+            DumpFiles.list(prop).forEach(generator::read);
+            if (!pageRankFile.isEmpty()) {
+                if (computePageRank) {
+                    generator.computePageRanks(Integer.parseInt(prop.getProperty("target.lookup.pagerank.iterations", "30").trim()),
+                            Double.parseDouble(prop.getProperty("target.lookup.pagerank.damping", "0.85").trim()));
+                }
+                generator.writePageRanks(new File(pageRankFile));
+            }
+            if (!ontologyUsageFile.isEmpty())
+                generator.writeOntologyUsage(new File(ontologyUsageFile));
+        } catch (IOException e) {
+            LOGGER.error("Error while generating the lookup tables.", e);
+        }
+    }
+
+    public void read(File file) {
+        DumpFiles.parse(file, new StreamRDFBase() {
+            @Override
+            public void triple(Triple triple) {
+                read(triple);
+            }
+        });
+    }
+
+    public void read(Triple triple) {
+        Node subject = triple.getSubject();
+        Node object = triple.getObject();
+        String predicate = triple.getPredicate().getURI();
+        if (RDF.type.getURI().equals(predicate)) {
+            if (object.isURI())
+                instanceCounts.merge(object.getURI(), 1L, Long::sum);
+        } else if (VRANK_HAS_RANK.equals(predicate)) {
+            if (subject.isURI())
+                addRank(object, subject.getURI(), rankValues.remove(object));
+        } else if (VRANK_RANK_VALUE.equals(predicate)) {
+            if (object.isLiteral())
+                addRank(subject, rankNodes.remove(subject), parseDouble(object.getLiteralLexicalForm()));
+        } else if (computePageRank && subject.isURI() && object.isURI()) {
+            addLink(resourceId(subject.getURI()), resourceId(object.getURI()));
+        }
+    }
+
+    /**
+     * Iterates PR(v) = 1 - d + d * sum of PR(u) / outdegree(u) over the links u -> v, starting with 1 for every
+     * resource.
+     */
+    public void computePageRanks(int iterations, double damping) {
+        LOGGER.info(String.format("Computing page ranks of %s resources with %s links", resourceIds.size(), links));
+        int[] outDegrees = new int[resourceIds.size()];
+        for (int i = 0; i < links; i++) {
+            outDegrees[linkSources[i]]++;
+        }
+        double[] ranks = new double[resourceIds.size()];
+        Arrays.fill(ranks, 1);
+        double[] next = new double[ranks.length];
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            Arrays.fill(next, 0);
+            for (int i = 0; i < links; i++) {
+                next[linkTargets[i]] += ranks[linkSources[i]] / outDegrees[linkSources[i]];
+            }
+            double change = 0;
+            for (int v = 0; v < next.length; v++) {
+                next[v] = 1 - damping + damping * next[v];
+                change += Math.abs(next[v] - ranks[v]);
+            }
+            double[] swap = ranks;
+            ranks = next;
+            next = swap;
+            LOGGER.info(String.format("Iteration %s, total change %.4f", iteration + 1, change));
+        }
+        for (Map.Entry<String, Integer> resource : resourceIds.entrySet()) {
+            pageRanks.put(resource.getKey(), ranks[resource.getValue()]);
+        }
+    }
+
+    public Map<String, Double> getPageRanks() {
+        return pageRanks;
+    }
+
+    public Map<String, Long> getInstanceCounts() {
+        return instanceCounts;
+    }
+
+    public void writePageRanks(File file) throws IOException {
+        MappedLookupTable.Builder table = new MappedLookupTable.Builder();
+        pageRanks.forEach(table::put);
+        table.write(file);
+        LOGGER.info(String.format("Page ranks of %s resources written to %s", table.size(), file));
+    }
+
+    public void writeOntologyUsage(File file) throws IOException {
+        MappedLookupTable.Builder table = new MappedLookupTable.Builder();
+        instanceCounts.forEach((type, count) -> table.put(type, count));
+        table.write(file);
+        LOGGER.info(String.format("Instance counts of %s classes written to %s", table.size(), file));
+    }
+
+    // The rank node and the value can come in either order, each waits for the other
+    private void addRank(Node rankNode, String resource, Double value) {
+        if (resource != null && value != null) {
+            pageRanks.put(resource, value);
+        } else if (resource != null) {
+            rankNodes.put(rankNode, resource);
+        } else if (value != null) {
+            rankValues.put(rankNode, value);
+        }
+    }
+
+    private int resourceId(String resource) {
+        Integer id = resourceIds.get(resource);
+        if (id == null) {
+            id = resourceIds.size();
+            resourceIds.put(resource, id);
+        }
+        return id;
+    }
+
+    private void addLink(int source, int target) {
+        if (links == linkSources.length) {
+            linkSources = Arrays.copyOf(linkSources, links * 2);
+            linkTargets = Arrays.copyOf(linkTargets, links * 2);
+        }
+        linkSources[links] = source;
+        linkTargets[links] = target;
+        links++;
+    }
+
+    private static Double parseDouble(String value) {
+        try {
+            return Double.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package de.uni.leipzig.tebaqa.tebaqacommons.tdb;
+
+import de.uni.leipzig.tebaqa.tebaqacommons.statistics.DumpFiles;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.tdb2.DatabaseMgr;
+import org.apache.jena.tdb2.loader.DataLoader;
+import org.apache.jena.tdb2.loader.LoaderFactory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Loads the ontology and data files which are indexed by TeBaQAIndexer into a TDB2 dataset, which the controller
+ * can query in-process instead of a remote endpoint (sparql.backend=tdb2). It reads the same properties file as the
+ * indexer, the dataset is created in target.tdb.location. Loading into an existing dataset adds the triples.
+ */
+public class TDBLoader {
+
+    private static final Logger LOGGER = LogManager.getLogger(TDBLoader.class);
+    private static final String DEFAULT_PROPERTIES = "src/main/resources/indexing.properties";
+
+    public static void main(String[] args) {
+        String indexingProperties = DEFAULT_PROPERTIES;
+        if (args.length > 0) {
+            LOGGER.info("Property file specified as argument: " + args[0]);
+            if (Files.notExists(Paths.get(args[0]))) {
+                LOGGER.error("Specified property file does not exist or cannot be opened.. exiting!");
+                return;
+            }
+            indexingProperties = args[0];
+        }
+        try (InputStream input = new FileInputStream(indexingProperties)) {
+            Properties prop = new Properties();
+            prop.load(input);
+
+            String location = prop.getProperty("target.tdb.location");
+            if (location == null || location.trim().isEmpty()) {
+                LOGGER.error("target.tdb.location is not set.. exiting!");
+                return;
+            }
+
+            List<File> files = DumpFiles.list(prop);
+            LOGGER.info(String.format("Loading %s files into %s", files.size(), location));
+
+            new TDBLoader().load(location.trim(), files);
+        } catch (IOException e) {
+            LOGGER.error("Error while loading the TDB2 dataset.", e);
+        }
+    }
+
+    /**
+     * Loads the files into the dataset in one write transaction. Files which can't be parsed are skipped, but
+     * triples read before the error are kept.
+     *
+     * @param location The directory of the dataset, created if it doesn't exist.
+     * @param files    Turtle or N-Triples files, optionally bzip2 compressed.
+     */
+    public void load(String location, List<File> files) {
+        DatasetGraph dataset = DatabaseMgr.connectDatasetGraph(location);
+        DataLoader loader = LoaderFactory.createLoader(dataset, (format, args) -> LOGGER.info(String.format(format, args)));
+        loader.startBulk();
+        try {
+            for (File file : files) {
+                loadFile(loader, file);
+            }
+            loader.finishBulk();
+        } catch (RuntimeException e) {
+            loader.finishException(e);
+            throw e;
+        }
+        LOGGER.info(String.format("Loaded %s triples into %s", loader.countTriples(), location));
+    }
+
+    private void loadFile(DataLoader loader, File file) {
+        DumpFiles.parse(file, loader.stream());
+    }
+}
@@ -0,0 +1,132 @@
+package de.uni.leipzig.tebaqa.tebaqacommons.util;
+
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
+
+/**
+ * The point in time by which a request has to be answered. Deadlines are passed between the services as the remaining
+ * time in ms in the {@link #HEADER} header, so the clocks of the hosts don't have to be in sync.
+ * <p>
+ * The deadline of the request handled by the current thread is available via {@link #current()}, the service
+ * connectors use it to shorten their timeouts and to pass it on.
+ */
+public class Deadline {
+
+    public static final String HEADER = "X-Request-Timeout";
+    public static final Deadline NONE = new Deadline(Long.MAX_VALUE);
+
+    private static final ThreadLocal<Deadline> CURRENT = ThreadLocal.withInitial(() -> NONE);
+
+    private final long expiresAt;
+
+    private Deadline(long expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public static Deadline after(long millis) {
+        long now = System.currentTimeMillis();
+        return new Deadline(millis >= Long.MAX_VALUE - now ? Long.MAX_VALUE : now + Math.max(0, millis));
+    }
+
+    /**
+     * @param headerValue The remaining time in ms as sent in the {@link #HEADER} header, may be null.
+     * @return The deadline, {@link #NONE} if the header is missing or invalid.
+     */
+    public static Deadline fromHeader(String headerValue) {
+        if (headerValue == null || headerValue.trim().isEmpty())
+            return NONE;
+        try {
+            return after(Long.parseLong(headerValue.trim()));
+        } catch (NumberFormatException e) {
+            return NONE;
+        }
+    }
+
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Sets the deadline of the current thread.
+     *
+     * @return The previous deadline, to be restored once the work is done.
+     */
+    public static Deadline setCurrent(Deadline deadline) {
+        Deadline previous = CURRENT.get();
+        CURRENT.set(deadline == null ? NONE : deadline);
+        return previous;
+    }
+
+    /**
+     * Runs the callable with the given deadline as the current one, e.g. on a worker thread.
+     */
+    public static <T> T callWith(Deadline deadline, Callable<T> callable) throws Exception {
+        Deadline previous = setCurrent(deadline);
+        try {
+            return callable.call();
+        } finally {
+            setCurrent(previous);
+        }
+    }
+
+    /**
+     * Wraps the supplier so it runs with the given deadline as the current one, e.g. for
+     * {@link java.util.concurrent.CompletableFuture#supplyAsync(Supplier)}.
+     */
+    public static <T> Supplier<T> wrap(Deadline deadline, Supplier<T> supplier) {
+        return () -> {
+            Deadline previous = setCurrent(deadline);
+            try {
+                return supplier.get();
+            } finally {
+                setCurrent(previous);
+            }
+        };
+    }
+
+    public boolean isSet() {
+        return expiresAt != Long.MAX_VALUE;
+    }
+
+    public boolean isExpired() {
+        return isSet() && System.currentTimeMillis() >= expiresAt;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * @return The remaining time in ms, 0 if expired and Long.MAX_VALUE if no deadline is set.
+     */
+    public long remainingMillis() {
+        if (!isSet())
+            return Long.MAX_VALUE;
+        return Math.max(0, expiresAt - System.currentTimeMillis());
+    }
+
+    /**
+     * @return The earlier of this deadline and the given timeout from now.
+     */
+    public Deadline shorten(long timeoutMillis) {
+        Deadline other = after(timeoutMillis);
+        return other.expiresAt < expiresAt ? other : this;
+    }
+
+    /**
+     * @throws DeadlineExceededException If the deadline has passed.
+     */
+    public void check(String work) {
+        if (isExpired())
+            throw new DeadlineExceededException(work + " not started, request deadline has passed");
+    }
+
+    public String toHeaderValue() {
+        return String.valueOf(remainingMillis());
+    }
+
+    @Override
+    public String toString() {
+        return isSet() ? "Deadline{remaining=" + remainingMillis() + "ms}" : "Deadline{none}";
+    }
+}
@@ -0,0 +1,13 @@
+package de.uni.leipzig.tebaqa.tebaqacommons.util;
+
+/**
+ * Thrown instead of starting work whose request deadline has already passed, see {@link Deadline}.
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,37 @@
+package de.uni.leipzig.tebaqa.tebaqacommons.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Makes the deadline sent in the {@link Deadline#HEADER} header the current deadline while a request is handled.
+ * Requests whose deadline has already passed are answered with 504 without doing any work.
+ */
+public class DeadlineFilter extends OncePerRequestFilter {
+
+    private static final Logger LOGGER = LogManager.getLogger(DeadlineFilter.class);
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        Deadline deadline = Deadline.fromHeader(request.getHeader(Deadline.HEADER));
+        if (deadline.isExpired()) {
+            LOGGER.warn("Rejecting request to " + request.getRequestURI() + ", its deadline has passed");
+            response.sendError(HttpStatus.GATEWAY_TIMEOUT.value(), "Request deadline has passed");
+            return;
+        }
+        Deadline previous = Deadline.setCurrent(deadline);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            Deadline.setCurrent(previous);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package de.uni.leipzig.tebaqa.tebaqacommons.util;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The open addressing hash table of 64 bit key fingerprints and 64 bit values in memory, from which the builders of
+ * {@link MappedLookupTable} and {@link MappedRecordStore} write their slots. The slot of a fingerprint is its lower
+ * bits, collisions go to the next free slot. The same probing finds the fingerprint in the mapped file.
+ */
+final class FingerprintHashTable {
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private final int maxSlots;
+    private long[] fingerprints = new long[1024];
+    private long[] values = new long[1024];
+    private int size;
+
+    /**
+     * @param maxSlots The number of slots the file format can hold, a power of two.
+     */
+    FingerprintHashTable(int maxSlots) {
+        this.maxSlots = maxSlots;
+    }
+
+    // 0 marks an empty slot
+    static long fingerprint(String key) {
+        long fingerprint = HASH.hashString(key, StandardCharsets.UTF_8).asLong();
+        return fingerprint == 0 ? 1 : fingerprint;
+    }
+
+    /**
+     * Sets the value of the fingerprint.
+     *
+     * @return The value it replaces or absent if the fingerprint is new.
+     */
+    long put(long fingerprint, long value, long absent) {
+        // At most half of the slots are used, which keeps probe sequences short
+        if (2 * (size + 1) > fingerprints.length)
+            resize();
+        int slot = insert(fingerprints, fingerprint);
+        long previous = absent;
+        if (fingerprints[slot] == 0) {
+            size++;
+            fingerprints[slot] = fingerprint;
+        } else {
+            previous = values[slot];
+        }
+        values[slot] = value;
+        return previous;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int slots() {
+        return fingerprints.length;
+    }
+
+    /**
+     * @return The fingerprint in the slot, 0 if it's empty.
+     */
+    long fingerprintAt(int slot) {
+        return fingerprints[slot];
+    }
+
+    long valueAt(int slot) {
+        return values[slot];
+    }
+
+    private void resize() {
+        if (fingerprints.length > maxSlots / 2)
+            throw new IllegalStateException("Too many keys for " + maxSlots + " slots: " + size);
+        long[] oldFingerprints = fingerprints;
+        long[] oldValues = values;
+        fingerprints = new long[oldFingerprints.length * 2];
+        values = new long[oldValues.length * 2];
+        for (int slot = 0; slot < oldFingerprints.length; slot++) {
+            if (oldFingerprints[slot] != 0) {
+                int newSlot = insert(fingerprints, oldFingerprints[slot]);
+                fingerprints[newSlot] = oldFingerprints[slot];
+                values[newSlot] = oldValues[slot];
+            }
+        }
+    }
+
+    // The slot of the fingerprint or the empty slot where it belongs
+    private static int insert(long[] fingerprints, long fingerprint) {
+        int mask = fingerprints.length - 1;
+        int slot = (int) (fingerprint & mask);
+        while (fingerprints[slot] != 0 && fingerprints[slot] != fingerprint) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
@@ -0,0 +1,151 @@
+package de.uni.leipzig.tebaqa.tebaqacommons.util;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Decompresses request bodies sent with Content-Encoding gzip, see http.client.gzip-requests in
+ * {@link HttpClientProvider}. Only bodies read by the application, e.g. JSON, can be compressed.
+ */
+public class GzipRequestFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        if ("gzip".equalsIgnoreCase(request.getHeader(HttpHeaders.CONTENT_ENCODING))) {
+            filterChain.doFilter(new GzipRequestWrapper(request), response);
+        } else {
+            filterChain.doFilter(request, response);
+        }
+    }
+
+    private static class GzipRequestWrapper extends HttpServletRequestWrapper {
+
+        private ServletInputStream inputStream;
+
+        GzipRequestWrapper(HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (inputStream == null) {
+                inputStream = new GzipInputStream(super.getInputStream());
+            }
+            return inputStream;
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                    encoding == null ? StandardCharsets.UTF_8.name() : encoding));
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name) ? null : super.getHeader(name);
+        }
+
+        @Override
+        public int getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return -1;
+        }
+    }
+
+    private static class GzipInputStream extends ServletInputStream {
+
+        private final ServletInputStream compressed;
+        private InputStream decompressed;
+        private boolean nonBlocking = false;
+        private boolean finished = false;
+
+        GzipInputStream(ServletInputStream compressed) {
+            this.compressed = compressed;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = decompressed().read();
+            finished = b == -1;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = decompressed().read(buffer, offset, length);
+            finished = read == -1;
+            return read;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return finished;
+        }
+
+        @Override
+        public boolean isReady() {
+            return !nonBlocking || decompressed != null;
+        }
+
+        /**
+         * Inflating may need more compressed bytes than have arrived, which would block. So the compressed body is
+         * collected as it arrives and the listener is called once it can be inflated from memory.
+         */
+        @Override
+        public void setReadListener(ReadListener listener) {
+            nonBlocking = true;
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            compressed.setReadListener(new ReadListener() {
+                @Override
+                public void onDataAvailable() throws IOException {
+                    while (compressed.isReady() && !compressed.isFinished()) {
+                        int read = compressed.read(buffer);
+                        if (read == -1)
+                            return;
+                        body.write(buffer, 0, read);
+                    }
+                }
+
+                @Override
+                public void onAllDataRead() throws IOException {
+                    try {
+                        decompressed = new GZIPInputStream(new ByteArrayInputStream(body.toByteArray()));
+                    } catch (IOException e) {
+                        listener.onError(e);
+                        return;
+                    }
+                    listener.onDataAvailable();
+                    listener.onAllDataRead();
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    listener.onError(t);
+                }
+            });
+        }
+
+        private InputStream decompressed() throws IOException {
+            if (decompressed == null)
+                decompressed = new GZIPInputStream(compressed);
+            return decompressed;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package de.uni.leipzig.tebaqa.tebaqacommons.util;
+
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The HTTP client shared by all service connectors. Connections are pooled and kept alive per target service,
+ * response bodies are decompressed transparently and JSON request bodies can be gzipped.
+ * <p>
+ * Configured by http-client.properties, system properties with the same keys take precedence. The timeouts are
+ * shortened to the deadline of the current request, see {@link Deadline}.
+ */
+public class HttpClientProvider {
+
+    private static final Logger LOGGER = LogManager.getLogger(HttpClientProvider.class);
+    private static final Properties PROPERTIES = PropertyUtils.getAllProperties("http-client.properties");
+
+    private static final int CONNECT_TIMEOUT = getIntProperty("http.client.connect-timeout", 5000);
+    private static final int READ_TIMEOUT = getIntProperty("http.client.read-timeout", 120000);
+    private static final int CONNECTION_REQUEST_TIMEOUT = getIntProperty("http.client.connection-request-timeout", 10000);
+    private static final boolean GZIP_REQUESTS = Boolean.parseBoolean(getProperty("http.client.gzip-requests", "false"));
+    private static final int GZIP_MIN_SIZE = getIntProperty("http.client.gzip-requests.min-size", 2048);
+
+    private static final PoolingHttpClientConnectionManager CONNECTION_MANAGER = createConnectionManager();
+    private static final RequestConfig DEFAULT_REQUEST_CONFIG = RequestConfig.custom()
+            .setConnectTimeout(CONNECT_TIMEOUT)
+            .setSocketTimeout(READ_TIMEOUT)
+            .setConnectionRequestTimeout(CONNECTION_REQUEST_TIMEOUT)
+            .build();
+    private static final CloseableHttpClient HTTP_CLIENT = HttpClients.custom()
+            .setConnectionManager(CONNECTION_MANAGER)
+            .setDefaultRequestConfig(DEFAULT_REQUEST_CONFIG)
+            .evictExpiredConnections()
+            .evictIdleConnections(getIntProperty("http.client.idle-timeout", 30000), TimeUnit.MILLISECONDS)
+            .build();
+    private static final RestTemplate REST_TEMPLATE = createRestTemplate();
+
+    /**
+     * @return The shared RestTemplate, it is thread-safe.
+     */
+    public static RestTemplate getRestTemplate() {
+        return REST_TEMPLATE;
+    }
+
+    /**
+     * @return Leased, pending and available connections and the limit over all routes.
+     */
+    public static PoolStats getTotalStats() {
+        return CONNECTION_MANAGER.getTotalStats();
+    }
+
+    /**
+     * @return Leased, pending and available connections and the limit per target service.
+     */
+    public static Map<String, PoolStats> getRouteStats() {
+        Map<String, PoolStats> stats = new LinkedHashMap<>();
+        for (HttpRoute route : CONNECTION_MANAGER.getRoutes()) {
+            stats.put(route.getTargetHost().toURI(), CONNECTION_MANAGER.getStats(route));
+        }
+        return Collections.unmodifiableMap(stats);
+    }
+
+    private static PoolingHttpClientConnectionManager createConnectionManager() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(getIntProperty("http.client.max-total", 200));
+        connectionManager.setDefaultMaxPerRoute(getIntProperty("http.client.max-per-route", 20));
+        connectionManager.setValidateAfterInactivity(getIntProperty("http.client.validate-after-inactivity", 2000));
+
+        // Comma separated list of host:port=max, e.g. localhost:8082=50
+        for (String route : getProperty("http.client.max-per-route.routes", "").split(",")) {
+            if (route.trim().isEmpty())
+                continue;
+            int separator = route.lastIndexOf('=');
+            try {
+                HttpHost host = HttpHost.create(route.substring(0, separator).trim());
+                connectionManager.setMaxPerRoute(new HttpRoute(host), Integer.parseInt(route.substring(separator + 1).trim()));
+            } catch (RuntimeException e) {
+                LOGGER.error("Invalid route pool size: " + route);
+            }
+        }
+        return connectionManager;
+    }
+
+    private static RestTemplate createRestTemplate() {
+        RestTemplate restTemplate = new RestTemplate(new DeadlineAwareRequestFactory());
+        // After the JSON converter, Smile is only used if requested explicitly
+        restTemplate.getMessageConverters().add(PayloadCodecs.smileConverter());
+        if (GZIP_REQUESTS) {
+            restTemplate.getInterceptors().add(gzipJsonRequests());
+        }
+        return restTemplate;
+    }
+
+    /**
+     * Only JSON bodies are compressed, form parameters are parsed by the servlet container which can't read gzip.
+     */
+    private static ClientHttpRequestInterceptor gzipJsonRequests() {
+        return (request, body, execution) -> {
+            HttpHeaders headers = request.getHeaders();
+            MediaType contentType = headers.getContentType();
+            if (body.length >= GZIP_MIN_SIZE && contentType != null && contentType.includes(MediaType.APPLICATION_JSON)
+                    && !headers.containsKey(HttpHeaders.CONTENT_ENCODING)) {
+                headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+                return execution.execute(request, gzip(body));
+            }
+            return execution.execute(request, body);
+        };
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(body);
+        }
+        return compressed.toByteArray();
+    }
+
+    private static String getProperty(String key, String defaultValue) {
+        return System.getProperty(key, PROPERTIES.getProperty(key, defaultValue)).trim();
+    }
+
+    private static int getIntProperty(String key, int defaultValue) {
+        String value = getProperty(key, String.valueOf(defaultValue));
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            LOGGER.error(String.format("Invalid value '%s' for %s, using %s", value, key, defaultValue));
+            return defaultValue;
+        }
+    }
+
+    private static class DeadlineAwareRequestFactory extends HttpComponentsClientHttpRequestFactory {
+
+        DeadlineAwareRequestFactory() {
+            super(HTTP_CLIENT);
+        }
+
+        @Override
+        protected HttpContext createHttpContext(HttpMethod httpMethod, URI uri) {
+            Deadline deadline = Deadline.current();
+            if (!deadline.isSet())
+                return null;
+            int remaining = (int) Math.max(1, Math.min(Integer.MAX_VALUE, deadline.remainingMillis()));
+            HttpClientContext context = HttpClientContext.create();
+            context.setRequestConfig(RequestConfig.copy(DEFAULT_REQUEST_CONFIG)
+                    .setConnectTimeout(Math.min(CONNECT_TIMEOUT, remaining))
+                    .setSocketTimeout(Math.min(READ_TIMEOUT, remaining))
+                    .setConnectionRequestTimeout(Math.min(CONNECTION_REQUEST_TIMEOUT, remaining))
+                    .build());
+            return context;
+        }
+    }
+}
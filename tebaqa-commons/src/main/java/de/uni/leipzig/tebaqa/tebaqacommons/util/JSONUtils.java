@@ -1,22 +1,17 @@
 package de.uni.leipzig.tebaqa.tebaqacommons.util;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.IOException;
 
 public class JSONUtils {
 
     public static String convertToJSONString(Object object) throws JsonProcessingException {
-        ObjectMapper objectMapper = new ObjectMapper();
-        return objectMapper.writeValueAsString(object);
+        return PayloadCodecs.JSON_MAPPER.writeValueAsString(object);
     }
 
     public static <T> T JSONStringToObject(String JSONString, Class<T> clazz) throws IOException {
-        ObjectMapper objectMapper = new ObjectMapper();
-        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-        return objectMapper.readValue(JSONString, clazz);
+        return PayloadCodecs.JSON_MAPPER.readValue(JSONString, clazz);
     }
 
     // Fails silently
@@ -30,6 +25,7 @@ public class JSONUtils {
     }
 
     public static <T> T deepCopy(T object, Class<T> clazz) throws IOException {
-        return JSONStringToObject(convertToJSONString(object), clazz);
+        // Smile is cheaper to write and parse than a JSON string
+        return PayloadCodecs.SMILE_MAPPER.readValue(PayloadCodecs.SMILE_MAPPER.writeValueAsBytes(object), clazz);
     }
 }
@@ -0,0 +1,101 @@
+package de.uni.leipzig.tebaqa.tebaqacommons.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only table of numbers by string key in a memory-mapped file, e.g. the page ranks of all entities. The file
+ * is an open addressing hash table of 64 bit key fingerprints and values, so a lookup reads one or a few slots
+ * without loading the table into the heap. Keys themselves aren't stored: a key which isn't in the table is taken
+ * for one with the same fingerprint with a probability of about size / 2^64. Created with {@link Builder}.
+ * <pre>
+ * int magic, int version, long slots, long size, slots * (long fingerprint, double value)
+ * </pre>
+ */
+public class MappedLookupTable {
+
+    private static final int MAGIC = 0x54424c54;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+    private static final int SLOT_BYTES = 16;
+    // The largest power of two which fits into 2 GB
+    private static final int MAX_SLOTS = 1 << 26;
+
+    private final ByteBuffer buffer;
+    private final long mask;
+    private final long size;
+
+    private MappedLookupTable(ByteBuffer buffer, long slots, long size) {
+        this.buffer = buffer;
+        this.mask = slots - 1;
+        this.size = size;
+    }
+
+    /**
+     * @throws IOException If the file isn't a lookup table or larger than 2 GB.
+     */
+    public static MappedLookupTable open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Lookup table too large to map: " + file);
+            // The mapping stays valid after the channel is closed
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+                throw new IOException("Not a lookup table: " + file);
+            long slots = buffer.getLong(8);
+            if (Long.bitCount(slots) != 1 || HEADER_BYTES + slots * SLOT_BYTES != buffer.limit())
+                throw new IOException("Truncated lookup table: " + file);
+            return new MappedLookupTable(buffer, slots, buffer.getLong(16));
+        }
+    }
+
+    /**
+     * @return The value of the key or null if it isn't in the table.
+     */
+    public Double get(String key) {
+        long fingerprint = FingerprintHashTable.fingerprint(key);
+        for (long slot = fingerprint & mask; ; slot = (slot + 1) & mask) {
+            int offset = (int) (HEADER_BYTES + slot * SLOT_BYTES);
+            long stored = buffer.getLong(offset);
+            if (stored == 0)
+                return null;
+            if (stored == fingerprint)
+                return buffer.getDouble(offset + 8);
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Collects the entries in memory and writes them as table. A key which is put again replaces its value.
+     */
+    public static class Builder {
+        private final FingerprintHashTable slots = new FingerprintHashTable(MAX_SLOTS);
+
+        public Builder put(String key, double value) {
+            slots.put(FingerprintHashTable.fingerprint(key), Double.doubleToRawLongBits(value), 0);
+            return this;
+        }
+
+        public int size() {
+            return slots.size();
+        }
+
+        public void write(File file) throws IOException {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(slots.slots());
+                out.writeLong(slots.size());
+                for (int slot = 0; slot < slots.slots(); slot++) {
+                    out.writeLong(slots.fingerprintAt(slot));
+                    out.writeLong(slots.valueAt(slot));
+                }
+            }
+        }
+    }
+}
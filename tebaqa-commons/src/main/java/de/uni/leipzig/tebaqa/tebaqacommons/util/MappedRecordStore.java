@@ -0,0 +1,210 @@
+package de.uni.leipzig.tebaqa.tebaqacommons.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A read-only store of named string fields by string key in a memory-mapped file, e.g. the labels and abstracts of
+ * all entities. Like {@link MappedLookupTable} it is an open addressing hash table of 64 bit key fingerprints, but
+ * each slot points to the newest field of its key in the data section, and each field to the one added before it.
+ * The file may be larger than 2 GB, it is mapped in segments. Created with {@link Builder}.
+ * <pre>
+ * int magic, int version, long slots, long size, long data bytes, slots * (long fingerprint, long field offset),
+ * fields: (long previous field offset or -1, int name bytes, name, int value bytes, value)
+ * </pre>
+ */
+public class MappedRecordStore {
+
+    private static final int MAGIC = 0x54425253;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int SLOT_BYTES = 16;
+    private static final int SEGMENT_BITS = 30;
+    // The largest slot array
+    private static final int MAX_SLOTS = 1 << 30;
+
+    private final ByteBuffer[] segments;
+    private final int segmentBits;
+    private final long segmentMask;
+    private final long mask;
+    private final long size;
+    private final long dataStart;
+
+    private MappedRecordStore(ByteBuffer[] segments, int segmentBits, long slots, long size) {
+        this.segments = segments;
+        this.segmentBits = segmentBits;
+        this.segmentMask = (1L << segmentBits) - 1;
+        this.mask = slots - 1;
+        this.size = size;
+        this.dataStart = HEADER_BYTES + slots * SLOT_BYTES;
+    }
+
+    /**
+     * @throws IOException If the file isn't a record store.
+     */
+    public static MappedRecordStore open(File file) throws IOException {
+        return open(file, SEGMENT_BITS);
+    }
+
+    /**
+     * @param segmentBits The file is mapped in segments of 2^segmentBits bytes, at least 5 to have the header in the first.
+     */
+    static MappedRecordStore open(File file, int segmentBits) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            long segmentBytes = 1L << segmentBits;
+            // The mappings stay valid after the channel is closed
+            ByteBuffer[] segments = new ByteBuffer[(int) ((length + segmentBytes - 1) >>> segmentBits)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = (long) i << segmentBits;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segmentBytes, length - start));
+            }
+            if (length < HEADER_BYTES || segments[0].getInt(0) != MAGIC || segments[0].getInt(4) != VERSION)
+                throw new IOException("Not a record store: " + file);
+            long slots = segments[0].getLong(8);
+            if (Long.bitCount(slots) != 1 || HEADER_BYTES + slots * SLOT_BYTES + segments[0].getLong(24) != length)
+                throw new IOException("Truncated record store: " + file);
+            return new MappedRecordStore(segments, segmentBits, slots, segments[0].getLong(16));
+        }
+    }
+
+    /**
+     * @return The fields of the key by name or null if the key isn't in the store.
+     */
+    public Map<String, String> get(String key) {
+        long fingerprint = FingerprintHashTable.fingerprint(key);
+        for (long slot = fingerprint & mask; ; slot = (slot + 1) & mask) {
+            long offset = HEADER_BYTES + slot * SLOT_BYTES;
+            long stored = getLong(offset);
+            if (stored == 0)
+                return null;
+            if (stored == fingerprint)
+                return readFields(getLong(offset + 8));
+        }
+    }
+
+    /**
+     * @return The number of keys.
+     */
+    public long size() {
+        return size;
+    }
+
+    // The newest field comes first, so it replaces older ones of the same name
+    private Map<String, String> readFields(long field) {
+        Map<String, String> fields = new HashMap<>();
+        while (field >= 0) {
+            long position = dataStart + field;
+            long previous = getLong(position);
+            byte[] name = new byte[getInt(position + 8)];
+            read(position + 12, name);
+            byte[] value = new byte[getInt(position + 12 + name.length)];
+            read(position + 16 + name.length, value);
+            fields.putIfAbsent(new String(name, StandardCharsets.UTF_8), new String(value, StandardCharsets.UTF_8));
+            field = previous;
+        }
+        return fields;
+    }
+
+    long getLong(long position) {
+        ByteBuffer segment = segments[(int) (position >>> segmentBits)];
+        int offset = (int) (position & segmentMask);
+        if (offset + Long.BYTES <= segment.limit())
+            return segment.getLong(offset);
+        byte[] bytes = new byte[Long.BYTES];
+        read(position, bytes);
+        return ByteBuffer.wrap(bytes).getLong();
+    }
+
+    int getInt(long position) {
+        ByteBuffer segment = segments[(int) (position >>> segmentBits)];
+        int offset = (int) (position & segmentMask);
+        if (offset + Integer.BYTES <= segment.limit())
+            return segment.getInt(offset);
+        byte[] bytes = new byte[Integer.BYTES];
+        read(position, bytes);
+        return ByteBuffer.wrap(bytes).getInt();
+    }
+
+    // Reads across segment borders, on duplicates as the segments are shared by all threads
+    void read(long position, byte[] bytes) {
+        int read = 0;
+        while (read < bytes.length) {
+            ByteBuffer segment = segments[(int) (position >>> segmentBits)].duplicate();
+            segment.position((int) (position & segmentMask));
+            int length = Math.min(bytes.length - read, segment.remaining());
+            segment.get(bytes, read, length);
+            read += length;
+            position += length;
+        }
+    }
+
+    /**
+     * Appends the fields to a temporary file next to the store while only the slots are kept in memory, so the
+     * fields of a key may be added in any order, e.g. while streaming several dumps. A field which is added again
+     * for a key replaces the earlier value. {@link #write()} writes the store and removes the temporary file.
+     */
+    public static class Builder implements Closeable {
+        private final File file;
+        private final File dataFile;
+        private final DataOutputStream data;
+        private final FingerprintHashTable slots = new FingerprintHashTable(MAX_SLOTS);
+        private long dataBytes;
+
+        public Builder(File file) throws IOException {
+            this.file = file;
+            this.dataFile = new File(file.getPath() + ".tmp");
+            this.data = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(dataFile), 1 << 16));
+        }
+
+        public Builder add(String key, String name, String value) throws IOException {
+            long previous = slots.put(FingerprintHashTable.fingerprint(key), dataBytes, -1);
+
+            byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+            data.writeLong(previous);
+            data.writeInt(nameBytes.length);
+            data.write(nameBytes);
+            data.writeInt(valueBytes.length);
+            data.write(valueBytes);
+            dataBytes += 16 + nameBytes.length + valueBytes.length;
+            return this;
+        }
+
+        public int size() {
+            return slots.size();
+        }
+
+        public void write() throws IOException {
+            data.close();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(slots.slots());
+                out.writeLong(slots.size());
+                out.writeLong(dataBytes);
+                for (int slot = 0; slot < slots.slots(); slot++) {
+                    out.writeLong(slots.fingerprintAt(slot));
+                    out.writeLong(slots.valueAt(slot));
+                }
+                Files.copy(dataFile.toPath(), out);
+            }
+            Files.delete(dataFile.toPath());
+        }
+
+        /**
+         * Removes the temporary file, if the store hasn't been written.
+         */
+        @Override
+        public void close() throws IOException {
+            data.close();
+            Files.deleteIfExists(dataFile.toPath());
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package de.uni.leipzig.tebaqa.tebaqacommons.util;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Shared codecs for the beans passed between the services. Besides JSON the services understand Smile, a binary
+ * encoding of the JSON data model, which is selected by content negotiation. The mappers are thread-safe and meant
+ * to be reused.
+ */
+public class PayloadCodecs {
+
+    public static final MediaType SMILE = new MediaType("application", "x-jackson-smile");
+    public static final String SMILE_VALUE = "application/x-jackson-smile";
+
+    public static final ObjectMapper JSON_MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    public static final ObjectMapper SMILE_MAPPER = new ObjectMapper(new SmileFactory())
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private static final MappingJackson2SmileHttpMessageConverter SMILE_CONVERTER = new MappingJackson2SmileHttpMessageConverter(SMILE_MAPPER);
+
+    /**
+     * The converter for Smile request and response bodies. It has to be registered after the JSON converter, so JSON
+     * stays the default for clients which accept any media type.
+     */
+    public static HttpMessageConverter<Object> smileConverter() {
+        return SMILE_CONVERTER;
+    }
+}
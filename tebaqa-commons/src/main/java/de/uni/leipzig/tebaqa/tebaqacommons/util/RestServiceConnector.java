@@ -15,9 +15,11 @@ public class RestServiceConnector {
     private static final Logger LOGGER = LogManager.getLogger(RestServiceConnector.class);
 
     public static <T> ResponseEntity<T> postParam(String serviceUrl, MultiValueMap<String, String> params, Class<T> clazz) {
-        RestTemplate restTemplate = new RestTemplate();
+        Deadline deadline = Deadline.current();
+        deadline.check("Request to " + serviceUrl);
+        RestTemplate restTemplate = HttpClientProvider.getRestTemplate();
 
-        HttpHeaders headers = new HttpHeaders();
+        HttpHeaders headers = createHeaders(deadline);
         headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
 
         HttpEntity<MultiValueMap<String, String>> request = new HttpEntity<>(params, headers);
@@ -31,9 +33,11 @@ public class RestServiceConnector {
     }
 
     public static <T> ResponseEntity<T> postJson(String serviceUrl, Object requestBody, Class<T> clazz) {
-        RestTemplate restTemplate = new RestTemplate();
+        Deadline deadline = Deadline.current();
+        deadline.check("Request to " + serviceUrl);
+        RestTemplate restTemplate = HttpClientProvider.getRestTemplate();
 
-        HttpHeaders headers = new HttpHeaders();
+        HttpHeaders headers = createHeaders(deadline);
         headers.setContentType(MediaType.APPLICATION_JSON);
         HttpEntity<Object> request = new HttpEntity<>(requestBody, headers);
 
@@ -44,4 +48,14 @@ public class RestServiceConnector {
             throw e;
         }
     }
+
+    /**
+     * Creates request headers which pass the deadline on to the called service.
+     */
+    public static HttpHeaders createHeaders(Deadline deadline) {
+        HttpHeaders headers = new HttpHeaders();
+        if (deadline.isSet())
+            headers.set(Deadline.HEADER, deadline.toHeaderValue());
+        return headers;
+    }
 }
@@ -0,0 +1,105 @@
+package de.uni.leipzig.tebaqa.tebaqacommons.statistics;
+
+import de.uni.leipzig.tebaqa.tebaqacommons.util.MappedLookupTable;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.vocabulary.RDF;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RankTableGeneratorTest {
+
+    private static final String DBR = "http://dbpedia.org/resource/";
+    private static final String DBO = "http://dbpedia.org/ontology/";
+    private static final Node LINK = NodeFactory.createURI(DBO + "wikiPageWikiLink");
+
+    @TempDir
+    Path directory;
+
+    // A -> B, A -> C, B -> C, C -> A
+    private static RankTableGenerator linkedGenerator() {
+        RankTableGenerator generator = new RankTableGenerator(true);
+        generator.read(link("A", "B"));
+        generator.read(link("A", "C"));
+        generator.read(link("B", "C"));
+        generator.read(link("C", "A"));
+        // Neither literals nor types are links
+        generator.read(Triple.create(resource("A"), NodeFactory.createURI(DBO + "name"), NodeFactory.createLiteral("A")));
+        generator.read(Triple.create(resource("B"), RDF.type.asNode(), NodeFactory.createURI(DBO + "Place")));
+        return generator;
+    }
+
+    @Test
+    void pageRanksOfTheFirstIterations() {
+        // With d = 0.5: A = 0.5 + 0.5 * C, B = 0.5 + 0.5 * A / 2, C = 0.5 + 0.5 * (A / 2 + B)
+        RankTableGenerator generator = linkedGenerator();
+        generator.computePageRanks(1, 0.5);
+        assertEquals(1, generator.getPageRanks().get(DBR + "A"), 1e-9);
+        assertEquals(0.75, generator.getPageRanks().get(DBR + "B"), 1e-9);
+        assertEquals(1.25, generator.getPageRanks().get(DBR + "C"), 1e-9);
+
+        generator = linkedGenerator();
+        generator.computePageRanks(2, 0.5);
+        assertEquals(1.125, generator.getPageRanks().get(DBR + "A"), 1e-9);
+        assertEquals(0.75, generator.getPageRanks().get(DBR + "B"), 1e-9);
+        assertEquals(1.125, generator.getPageRanks().get(DBR + "C"), 1e-9);
+    }
+
+    @Test
+    void pageRanksConvergeToTheFixedPoint() {
+        RankTableGenerator generator = linkedGenerator();
+        generator.computePageRanks(100, 0.5);
+        assertEquals(3, generator.getPageRanks().size());
+        assertEquals(14.0 / 13, generator.getPageRanks().get(DBR + "A"), 1e-9);
+        assertEquals(10.0 / 13, generator.getPageRanks().get(DBR + "B"), 1e-9);
+        assertEquals(15.0 / 13, generator.getPageRanks().get(DBR + "C"), 1e-9);
+    }
+
+    @Test
+    void vRankValuesAreReadInEitherOrder() {
+        RankTableGenerator generator = new RankTableGenerator(false);
+        Node hasRank = NodeFactory.createURI("http://purl.org/voc/vrank#hasRank");
+        Node rankValue = NodeFactory.createURI("http://purl.org/voc/vrank#rankValue");
+        Node berlinRank = NodeFactory.createBlankNode();
+        Node leipzigRank = NodeFactory.createBlankNode();
+        generator.read(Triple.create(resource("Berlin"), hasRank, berlinRank));
+        generator.read(Triple.create(berlinRank, rankValue, NodeFactory.createLiteral("21.5")));
+        generator.read(Triple.create(leipzigRank, rankValue, NodeFactory.createLiteral("3.25")));
+        generator.read(Triple.create(resource("Leipzig"), hasRank, leipzigRank));
+        generator.read(link("Berlin", "Leipzig"));
+
+        assertEquals(2, generator.getPageRanks().size());
+        assertEquals(21.5, generator.getPageRanks().get(DBR + "Berlin"));
+        assertEquals(3.25, generator.getPageRanks().get(DBR + "Leipzig"));
+    }
+
+    @Test
+    void tablesCanBeLookedUp() throws IOException {
+        RankTableGenerator generator = linkedGenerator();
+        generator.read(Triple.create(resource("C"), RDF.type.asNode(), NodeFactory.createURI(DBO + "Place")));
+        generator.computePageRanks(1, 0.5);
+        File pageRanks = directory.resolve("pagerank").toFile();
+        File ontologyUsage = directory.resolve("ontology-usage").toFile();
+        generator.writePageRanks(pageRanks);
+        generator.writeOntologyUsage(ontologyUsage);
+
+        assertEquals(1.25, MappedLookupTable.open(pageRanks).get(DBR + "C"));
+        assertNull(MappedLookupTable.open(pageRanks).get(DBR + "D"));
+        assertEquals(2, MappedLookupTable.open(ontologyUsage).get(DBO + "Place"));
+    }
+
+    private static Triple link(String source, String target) {
+        return Triple.create(resource(source), LINK, resource(target));
+    }
+
+    private static Node resource(String name) {
+        return NodeFactory.createURI(DBR + name);
+    }
+}
@@ -0,0 +1,71 @@
+package de.uni.leipzig.tebaqa.tebaqacommons.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedLookupTableTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void writtenEntriesCanBeLookedUp() throws IOException {
+        File file = directory.resolve("table").toFile();
+        new MappedLookupTable.Builder()
+                .put("http://dbpedia.org/resource/Berlin", 21.5)
+                .put("http://dbpedia.org/resource/Leipzig", 3.25)
+                .put("http://dbpedia.org/resource/Leipzig", 4.75)
+                .write(file);
+
+        MappedLookupTable table = MappedLookupTable.open(file);
+        assertEquals(2, table.size());
+        assertEquals(21.5, table.get("http://dbpedia.org/resource/Berlin"));
+        assertEquals(4.75, table.get("http://dbpedia.org/resource/Leipzig"));
+        assertNull(table.get("http://dbpedia.org/resource/Dresden"));
+        assertNull(table.get(""));
+    }
+
+    @Test
+    void resizingKeepsAllEntries() throws IOException {
+        // The builder starts with 1024 slots and keeps at most half of them used
+        MappedLookupTable.Builder builder = new MappedLookupTable.Builder();
+        for (int i = 0; i < 3000; i++) {
+            builder.put("key" + i, i);
+        }
+        assertEquals(3000, builder.size());
+        File file = directory.resolve("table").toFile();
+        builder.write(file);
+        assertEquals(24 + 8192 * 16, file.length());
+
+        MappedLookupTable table = MappedLookupTable.open(file);
+        assertEquals(3000, table.size());
+        for (int i = 0; i < 3000; i++) {
+            assertEquals(i, table.get("key" + i));
+        }
+        for (int i = 3000; i < 6000; i++) {
+            assertNull(table.get("key" + i));
+        }
+    }
+
+    @Test
+    void otherFilesAreRejected() throws IOException {
+        File other = directory.resolve("other").toFile();
+        Files.write(other.toPath(), "http://dbpedia.org/resource/Berlin\t21.5\n".getBytes());
+        assertThrows(IOException.class, () -> MappedLookupTable.open(other));
+
+        File table = directory.resolve("table").toFile();
+        new MappedLookupTable.Builder().put("key", 1).write(table);
+        byte[] bytes = Files.readAllBytes(table.toPath());
+        File truncated = directory.resolve("truncated").toFile();
+        Files.write(truncated.toPath(), Arrays.copyOf(bytes, bytes.length - 16));
+        assertThrows(IOException.class, () -> MappedLookupTable.open(truncated));
+    }
+}
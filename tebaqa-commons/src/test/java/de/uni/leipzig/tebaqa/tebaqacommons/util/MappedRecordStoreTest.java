@@ -0,0 +1,104 @@
+package de.uni.leipzig.tebaqa.tebaqacommons.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedRecordStoreTest {
+
+    private static final String BERLIN = "http://dbpedia.org/resource/Berlin";
+    private static final String LEIPZIG = "http://dbpedia.org/resource/Leipzig";
+    private static final String MUNICH = "http://dbpedia.org/resource/Munich";
+
+    @TempDir
+    Path directory;
+
+    private File writeStore() throws IOException {
+        File file = directory.resolve("store").toFile();
+        try (MappedRecordStore.Builder builder = new MappedRecordStore.Builder(file)) {
+            builder.add(BERLIN, "label", "Berlin")
+                    .add(LEIPZIG, "label", "Leipzig")
+                    .add(BERLIN, "abstract", "Berlin is the capital and largest city of Germany by both area and population.")
+                    .add(MUNICH, "label", "München")
+                    .add(LEIPZIG, "label", "Leipzig, Saxony")
+                    .add(LEIPZIG, "thumbnail", "http://commons.wikimedia.org/wiki/Special:FilePath/Leipzig.jpg");
+            assertEquals(3, builder.size());
+            builder.write();
+        }
+        return file;
+    }
+
+    @Test
+    void fieldsAreReadWithTheNewestValue() throws IOException {
+        MappedRecordStore store = MappedRecordStore.open(writeStore());
+        assertEquals(3, store.size());
+        assertEquals(expectedLeipzig(), store.get(LEIPZIG));
+        assertEquals("München", store.get(MUNICH).get("label"));
+        assertEquals(2, store.get(BERLIN).size());
+        assertNull(store.get("http://dbpedia.org/resource/Dresden"));
+        assertFalse(new File(directory.toFile(), "store.tmp").exists());
+    }
+
+    @Test
+    void fieldsAreReadAcrossSegmentBorders() throws IOException {
+        File file = writeStore();
+        Map<String, String> berlin = MappedRecordStore.open(file).get(BERLIN);
+        // The header fills the first 32 byte segment, then the slots and fields cross the borders
+        for (int segmentBits = 5; segmentBits <= 9; segmentBits++) {
+            MappedRecordStore store = MappedRecordStore.open(file, segmentBits);
+            assertEquals(3, store.size());
+            assertEquals(berlin, store.get(BERLIN));
+            assertEquals(expectedLeipzig(), store.get(LEIPZIG));
+            assertEquals("München", store.get(MUNICH).get("label"));
+            assertNull(store.get("http://dbpedia.org/resource/Dresden"));
+        }
+    }
+
+    @Test
+    void numbersAndBytesAreReadAtEveryPosition() throws IOException {
+        File file = writeStore();
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        ByteBuffer expected = ByteBuffer.wrap(bytes);
+        MappedRecordStore store = MappedRecordStore.open(file, 5);
+        for (int position = 0; position + Long.BYTES <= bytes.length; position++) {
+            assertEquals(expected.getLong(position), store.getLong(position), "long at " + position);
+        }
+        for (int position = 0; position + Integer.BYTES <= bytes.length; position++) {
+            assertEquals(expected.getInt(position), store.getInt(position), "int at " + position);
+        }
+        for (int position = 0; position + 70 <= bytes.length; position += 7) {
+            byte[] read = new byte[70];
+            store.read(position, read);
+            assertArrayEquals(Arrays.copyOfRange(bytes, position, position + 70), read, "bytes at " + position);
+        }
+    }
+
+    @Test
+    void otherFilesAreRejected() throws IOException {
+        File table = directory.resolve("table").toFile();
+        new MappedLookupTable.Builder().put(BERLIN, 1).write(table);
+        assertThrows(IOException.class, () -> MappedRecordStore.open(table));
+
+        byte[] bytes = Files.readAllBytes(writeStore().toPath());
+        File truncated = directory.resolve("truncated").toFile();
+        Files.write(truncated.toPath(), Arrays.copyOf(bytes, bytes.length - 1));
+        assertThrows(IOException.class, () -> MappedRecordStore.open(truncated));
+    }
+
+    private static Map<String, String> expectedLeipzig() {
+        Map<String, String> fields = new HashMap<>();
+        fields.put("label", "Leipzig, Saxony");
+        fields.put("thumbnail", "http://commons.wikimedia.org/wiki/Special:FilePath/Leipzig.jpg");
+        return fields;
+    }
+}
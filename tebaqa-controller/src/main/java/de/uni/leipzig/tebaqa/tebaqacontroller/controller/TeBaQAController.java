@@ -1,123 +1,344 @@
 package de.uni.leipzig.tebaqa.tebaqacontroller.controller;
 
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import de.uni.leipzig.tebaqa.tebaqacommons.nlp.Lang;
+import de.uni.leipzig.tebaqa.tebaqacommons.util.Deadline;
+import de.uni.leipzig.tebaqa.tebaqacommons.util.DeadlineExceededException;
+import de.uni.leipzig.tebaqa.tebaqacommons.util.HttpClientProvider;
 import de.uni.leipzig.tebaqa.tebaqacontroller.model.AnswerToQuestion;
+import de.uni.leipzig.tebaqa.tebaqacontroller.model.BatchQuestion;
 import de.uni.leipzig.tebaqa.tebaqacontroller.model.ExtendedQALDAnswer;
 import de.uni.leipzig.tebaqa.tebaqacontroller.model.ResultsetBinding;
+import de.uni.leipzig.tebaqa.tebaqacontroller.service.AnswerCache;
+import de.uni.leipzig.tebaqa.tebaqacontroller.service.BatchAnswerService;
+import de.uni.leipzig.tebaqa.tebaqacontroller.service.InfoboxService;
 import de.uni.leipzig.tebaqa.tebaqacontroller.service.OrchestrationService;
+import de.uni.leipzig.tebaqa.tebaqacontroller.service.QueryResultCache;
+import de.uni.leipzig.tebaqa.tebaqacontroller.service.SimilarQuestionIndex;
+import de.uni.leipzig.tebaqa.tebaqacontroller.utils.ControllerPropertyUtils;
+import de.uni.leipzig.tebaqa.tebaqacontroller.utils.EndpointHealth;
+import de.uni.leipzig.tebaqa.tebaqacontroller.utils.RedirectResolver;
+import de.uni.leipzig.tebaqa.tebaqacontroller.utils.SparqlClient;
+import de.uni.leipzig.tebaqa.tebaqacontroller.utils.SparqlRouter;
+import org.apache.http.pool.PoolStats;
 import org.apache.log4j.Logger;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RequestMethod;
-import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.annotation.PreDestroy;
 import javax.json.Json;
 import javax.json.JsonArrayBuilder;
+import javax.json.JsonObjectBuilder;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.BiFunction;
 
 @RestController
 public class TeBaQAController {
 
     private static final Logger LOGGER = Logger.getLogger(TeBaQAController.class.getName());
     private static OrchestrationService qaService;
+    private static AnswerCache answerCache;
+    private static BatchAnswerService batchService;
+
+    // Answers requests while the servlet threads are released, see answerAsync. Requests which don't fit into the
+    // queue are rejected instead of waiting until their deadline has passed.
+    private static final int REQUEST_THREADS = ControllerPropertyUtils.getIntProperty("qa.request.threads", 200);
+    private static final ExecutorService REQUEST_EXECUTOR = new ThreadPoolExecutor(REQUEST_THREADS, REQUEST_THREADS, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, ControllerPropertyUtils.getIntProperty("qa.request.queue", 100))),
+            new ThreadFactoryBuilder().setNameFormat("qa-request-%d").setDaemon(true).build());
+    private static final ScheduledExecutorService TIMEOUT_SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("qa-request-timeout").setDaemon(true).build());
+    private static final long REQUEST_TIMEOUT = ControllerPropertyUtils.getLongProperty("qa.request.timeout", 300000);
 
     public TeBaQAController() throws IOException {
         qaService = new OrchestrationService();
+        answerCache = new AnswerCache();
+        batchService = new BatchAnswerService(qaService, answerCache);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        answerCache.saveSnapshot();
+    }
+
+    @RequestMapping(method = RequestMethod.GET, path = "/stats")
+    public String statistics() {
+        CacheStats answerCacheStats = answerCache.getStats();
+        CacheStats redirectStats = RedirectResolver.getStats();
+        CacheStats infoboxStats = InfoboxService.getInstance().getStats();
+        SimilarQuestionIndex similarQuestions = qaService.getSimilarQuestionIndex();
+        return Json.createObjectBuilder()
+                .add("answerCache", Json.createObjectBuilder()
+                        .add("enabled", answerCache.isEnabled())
+                        .add("size", answerCache.size())
+                        .add("hits", answerCacheStats.hitCount())
+                        .add("misses", answerCacheStats.missCount())
+                        .add("evictions", answerCacheStats.evictionCount())
+                        .add("hitRate", answerCacheStats.hitRate()))
+                .add("similarQuestions", Json.createObjectBuilder()
+                        .add("enabled", similarQuestions.isEnabled())
+                        .add("size", similarQuestions.size())
+                        .add("lookups", similarQuestions.getLookupCount())
+                        .add("hits", similarQuestions.getHitCount())
+                        .add("evictions", similarQuestions.getEvictionCount()))
+                .add("sparqlCache", sparqlCacheStatistics())
+                .add("redirectCache", Json.createObjectBuilder()
+                        .add("size", RedirectResolver.size())
+                        .add("hits", redirectStats.hitCount())
+                        .add("misses", redirectStats.missCount())
+                        .add("hitRate", redirectStats.hitRate()))
+                .add("infoboxCache", Json.createObjectBuilder()
+                        .add("size", InfoboxService.getInstance().size())
+                        .add("hits", infoboxStats.hitCount())
+                        .add("misses", infoboxStats.missCount())
+                        .add("hitRate", infoboxStats.hitRate())
+                        .add("storeHits", InfoboxService.getInstance().getStoreHits())
+                        .add("storeMisses", InfoboxService.getInstance().getStoreMisses()))
+                .add("httpClient", httpClientStatistics())
+                .add("sparqlClient", poolStatistics(SparqlClient.getStats()).add("backend", SparqlClient.getBackend()))
+                .add("sparqlEndpoints", sparqlEndpointStatistics())
+                .build().toString();
+    }
+
+    private static JsonObjectBuilder sparqlCacheStatistics() {
+        QueryResultCache sparqlCache = QueryResultCache.getInstance();
+        return Json.createObjectBuilder()
+                .add("enabled", sparqlCache.isEnabled())
+                .add("size", sparqlCache.size())
+                .add("hits", sparqlCache.getHitCount())
+                .add("misses", sparqlCache.getMissCount())
+                .add("coalesced", sparqlCache.getCoalescedCount())
+                .add("hitRate", sparqlCache.getHitRate())
+                .add("savedMillis", sparqlCache.getSavedMillis());
+    }
+
+    private static JsonObjectBuilder sparqlEndpointStatistics() {
+        JsonObjectBuilder routers = Json.createObjectBuilder();
+        for (SparqlRouter router : SparqlRouter.getRouters()) {
+            JsonObjectBuilder endpoints = Json.createObjectBuilder();
+            for (EndpointHealth endpoint : router.getEndpoints()) {
+                endpoints.add(endpoint.getEndpoint(), Json.createObjectBuilder()
+                        .add("state", endpoint.getState().name())
+                        .add("requests", endpoint.getRequestCount())
+                        .add("failures", endpoint.getFailureCount())
+                        .add("consecutiveFailures", endpoint.getConsecutiveFailures())
+                        .add("p50Millis", endpoint.getLatencyPercentile(50, 1))
+                        .add("p95Millis", endpoint.getLatencyPercentile(95, 1))
+                        .add("hedgeDelayMillis", router.getHedgeDelay(endpoint)));
+            }
+            routers.add(router.getEndpoints().get(0).getEndpoint(), Json.createObjectBuilder()
+                    .add("hedged", router.getHedgedQueries())
+                    .add("hedgeWins", router.getHedgeWins())
+                    .add("failovers", router.getFailovers())
+                    .add("endpoints", endpoints));
+        }
+        return routers;
+    }
+
+    private static JsonObjectBuilder httpClientStatistics() {
+        JsonObjectBuilder routes = Json.createObjectBuilder();
+        HttpClientProvider.getRouteStats().forEach((route, stats) -> routes.add(route, poolStatistics(stats)));
+        return poolStatistics(HttpClientProvider.getTotalStats()).add("routes", routes);
+    }
+
+    private static JsonObjectBuilder poolStatistics(PoolStats stats) {
+        return Json.createObjectBuilder()
+                .add("leased", stats.getLeased())
+                .add("pending", stats.getPending())
+                .add("idle", stats.getAvailable())
+                .add("max", stats.getMax());
     }
 
     @RequestMapping(method = RequestMethod.POST, path = "/qa-simple")
-    public String answerQuestionSimple(@RequestParam String query,
-                                       @RequestParam(required = false, defaultValue = "en") String lang,
-                                       HttpServletResponse response) {
+    public DeferredResult<ResponseEntity<String>> answerQuestionSimple(@RequestParam String query,
+                                                                       @RequestParam(required = false, defaultValue = "en") String lang,
+                                                                       @RequestHeader(value = Deadline.HEADER, required = false) String timeout,
+                                                                       HttpServletResponse response) {
         LOGGER.info(String.format("/qa-simple received POST request with: question='%s' and lang='%s'", query, lang));
 
         Lang language = Lang.getForCode(lang);
         if (!query.isEmpty() && isValidQuestion(query) && language != null) {
-            String result;
-            try {
-                long start_time = System.currentTimeMillis();
-                AnswerToQuestion answer = qaService.answerQuestion(query, language);
-                double elaps = System.currentTimeMillis() - start_time;
+            String failure = Json.createObjectBuilder().add("answers", Json.createArrayBuilder()).build().toString();
+            return answerAsync(query, language, timeout, failure, (answer, elaps) -> {
                 JsonArrayBuilder resultArray = Json.createArrayBuilder();
                 answer.getAnswer().forEach(a -> resultArray.add(ExtendedQALDAnswer.extractAnswerString(a)));
-                result = Json.createObjectBuilder()
+                return Json.createObjectBuilder()
                         .add("answers", resultArray)
                         .add("sparql", answer.getSparqlQuery())
-                        .add("elaps", elaps / 1000.)
+                        .add("elaps", elaps)
                         .build().toString();
-
-            } catch (Exception e) {
-                result = Json.createObjectBuilder().add("answers", Json.createArrayBuilder()).build().toString();
-                LOGGER.error(String.format("Got Exception while answering='%s' with lang='%s'", query, lang), e);
-            }
-            LOGGER.info("Answer: " + result);
-            return result;
+            });
 
         } else {
             LOGGER.error("Received request with empty question parameter!");
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Parameter question cannot be empty!").toString();
+            return completed(ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Parameter question cannot be empty!").toString());
         }
     }
 
     @RequestMapping(method = RequestMethod.POST, path = "/qa")
-    public String answerQuestion(@RequestParam String query,
-                                 @RequestParam(required = false, defaultValue = "en") String lang,
-                                 HttpServletResponse response) {
+    public DeferredResult<ResponseEntity<String>> answerQuestion(@RequestParam String query,
+                                                                 @RequestParam(required = false, defaultValue = "en") String lang,
+                                                                 @RequestHeader(value = Deadline.HEADER, required = false) String timeout,
+                                                                 HttpServletResponse response) {
 
         LOGGER.info(String.format("/qa received POST request with: question='%s' and lang='%s'", query, lang));
 
         Lang language = Lang.getForCode(lang);
         if (!query.isEmpty() && isValidQuestion(query) && language != null) {
-            String result;
-            try {
-                long start_time = System.currentTimeMillis();
-                AnswerToQuestion answer = qaService.answerQuestion(query, language);
-                double elaps = System.currentTimeMillis() - start_time;
-                result = new ExtendedQALDAnswer(answer, true, elaps / 1000.).getResult();
-            } catch (Exception e) {
-                result = new ExtendedQALDAnswer(new AnswerToQuestion(new ResultsetBinding(), new HashMap<>()), false, 0).getResult();
-                LOGGER.error(String.format("Got Exception while answering='%s' with lang='%s'", query, lang), e);
-            }
-            LOGGER.info("Answer: " + result);
-            return result;
+            String failure = new ExtendedQALDAnswer(new AnswerToQuestion(new ResultsetBinding(), new HashMap<>()), false, 0).getResult();
+            return answerAsync(query, language, timeout, failure,
+                    (answer, elaps) -> new ExtendedQALDAnswer(answer, true, elaps).getResult());
 
         } else {
             LOGGER.error("Received request with empty question parameter!");
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Parameter question cannot be empty!").toString();
+            return completed(ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Parameter question cannot be empty!").toString());
         }
 
     }
 
     @RequestMapping(method = RequestMethod.POST, path = "/qa-porque")
-    public String answerQuestionPORQUE(@RequestParam String query,
-                                 @RequestParam(required = false, defaultValue = "en") String lang,
-                                 HttpServletResponse response) {
+    public DeferredResult<ResponseEntity<String>> answerQuestionPORQUE(@RequestParam String query,
+                                                                       @RequestParam(required = false, defaultValue = "en") String lang,
+                                                                       @RequestHeader(value = Deadline.HEADER, required = false) String timeout,
+                                                                       HttpServletResponse response) {
         LOGGER.info(String.format("/qa-porque received POST request with: question='%s' and lang='%s'", query, lang));
 
         Lang language = Lang.getForCode(lang);
         if (!query.isEmpty() && isValidQuestion(query) && language != null) {
-            String result;
-            try {
-                long start_time = System.currentTimeMillis();
-                AnswerToQuestion answer = qaService.answerQuestion(query, language);
-                double elaps = System.currentTimeMillis() - start_time;
-                result = new ExtendedQALDAnswer(answer, true, elaps / 1000.).getResult();
-            } catch (Exception e) {
-                result = new ExtendedQALDAnswer(new AnswerToQuestion(new ResultsetBinding(), new HashMap<>()), false, 0).getResult();
-                LOGGER.error(String.format("Got Exception while answering='%s' with lang='%s'", query, lang), e);
-            }
-            LOGGER.info("Answer: " + result);
-            return result;
+            String failure = new ExtendedQALDAnswer(new AnswerToQuestion(new ResultsetBinding(), new HashMap<>()), false, 0).getResult();
+            return answerAsync(query, language, timeout, failure,
+                    (answer, elaps) -> new ExtendedQALDAnswer(answer, true, elaps).getResult());
 
         } else {
             LOGGER.error("Received request with empty question parameter!");
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Parameter question cannot be empty!").toString();
+            return completed(ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Parameter question cannot be empty!").toString());
+        }
+
+    }
+
+    /**
+     * Answers the question on the request pool, so the servlet thread is released while the pipeline runs. A deadline
+     * sent in the {@link Deadline#HEADER} header counts from the arrival of the request, qa.request.timeout counts from
+     * the start of the work, so time spent in the queue doesn't use it up. Once the deadline passes, or the client
+     * goes away, the work is cancelled and a 504 with the failure body is returned. If the queue is full, a 503 with
+     * the failure body is returned right away.
+     *
+     * @param failure   The response body if answering fails.
+     * @param formatter Creates the response body from the answer and the elapsed seconds.
+     */
+    private static DeferredResult<ResponseEntity<String>> answerAsync(String query, Lang language, String timeoutHeader, String failure,
+                                                                      BiFunction<AnswerToQuestion, Double, String> formatter) {
+        Deadline requestDeadline = Deadline.fromHeader(timeoutHeader);
+        // Without a deadline of the client, the timeout of the work below ends the request
+        DeferredResult<ResponseEntity<String>> deferredResult = new DeferredResult<>(
+                requestDeadline.isSet() ? Math.max(1, requestDeadline.remainingMillis()) : null,
+                ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(failure));
+
+        Future<?> work;
+        try {
+            work = REQUEST_EXECUTOR.submit(() -> {
+                Deadline deadline = requestDeadline.shorten(REQUEST_TIMEOUT);
+                Thread worker = Thread.currentThread();
+                ScheduledFuture<?> timeout = TIMEOUT_SCHEDULER.schedule(() -> {
+                    if (deferredResult.setResult(ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(failure))) {
+                        LOGGER.warn(String.format("Request deadline passed while answering='%s', cancelling", query));
+                        worker.interrupt();
+                    }
+                }, deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+                try {
+                    deferredResult.setResult(answer(query, language, deadline, failure, formatter));
+                } finally {
+                    timeout.cancel(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn(String.format("Request queue is full, rejecting question='%s'", query));
+            deferredResult.setResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(failure));
+            return deferredResult;
+        }
+        deferredResult.onTimeout(() -> {
+            LOGGER.warn(String.format("Request deadline passed while answering='%s', cancelling", query));
+            work.cancel(true);
+        });
+        deferredResult.onError(e -> {
+            LOGGER.warn(String.format("Request failed while answering='%s', cancelling: %s", query, e.getMessage()));
+            work.cancel(true);
+        });
+        return deferredResult;
+    }
+
+    private static ResponseEntity<String> answer(String query, Lang language, Deadline deadline, String failure,
+                                                 BiFunction<AnswerToQuestion, Double, String> formatter) {
+        String result;
+        HttpStatus status = HttpStatus.OK;
+        try {
+            // Waited in the queue for longer than the client wanted to wait
+            deadline.check("Answering question");
+            long start_time = System.currentTimeMillis();
+            AnswerToQuestion answer = answerCache.get(query, language, deadline, () -> qaService.answerQuestion(query, language, deadline));
+            double elaps = System.currentTimeMillis() - start_time;
+            result = formatter.apply(answer, elaps / 1000.);
+        } catch (DeadlineExceededException | CancellationException | InterruptedException e) {
+            // The pipeline noticed the deadline or the cancellation before the timeout of the deferred result
+            result = failure;
+            status = HttpStatus.GATEWAY_TIMEOUT;
+            LOGGER.warn(String.format("Stopped answering='%s' with lang='%s': %s", query, language.getLanguageCode(), e.getMessage()));
+        } catch (Exception e) {
+            result = failure;
+            LOGGER.error(String.format("Got Exception while answering='%s' with lang='%s'", query, language.getLanguageCode()), e);
+        }
+        LOGGER.info("Answer: " + result);
+        return ResponseEntity.status(status).body(result);
+    }
+
+    private static DeferredResult<ResponseEntity<String>> completed(String body) {
+        DeferredResult<ResponseEntity<String>> deferredResult = new DeferredResult<>();
+        deferredResult.setResult(ResponseEntity.ok(body));
+        return deferredResult;
+    }
+
+    /**
+     * Answers a list of questions given as QALD-JSON or as NDJSON (one object with id, question and lang per line).
+     * One NDJSON line per question is streamed back as soon as it is ready, either in input order or in completion
+     * order.
+     */
+    @RequestMapping(method = RequestMethod.POST, path = "/qa-batch")
+    public ResponseEntity<StreamingResponseBody> answerQuestionBatch(@RequestBody String body,
+                                                                     @RequestParam(required = false, defaultValue = "en") String lang,
+                                                                     @RequestParam(required = false, defaultValue = "input") String order,
+                                                                     @RequestParam(required = false) Integer concurrency,
+                                                                     @RequestParam(required = false) Long timeout) {
+        BatchAnswerService.Order resultOrder = BatchAnswerService.Order.forCode(order);
+        if (resultOrder == null) {
+            LOGGER.error("Received batch request with invalid order: " + order);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        List<BatchQuestion> questions;
+        try {
+            questions = BatchQuestion.parse(body, lang);
+        } catch (IllegalArgumentException e) {
+            LOGGER.error("Received invalid batch request: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
         }
+        int threads = concurrency == null ? BatchAnswerService.DEFAULT_CONCURRENCY
+                : Math.max(1, Math.min(concurrency, BatchAnswerService.MAX_CONCURRENCY));
+        long itemTimeout = timeout == null || timeout <= 0 ? BatchAnswerService.DEFAULT_ITEM_TIMEOUT : timeout;
+        LOGGER.info(String.format("/qa-batch received POST request with %s questions, order=%s, concurrency=%s, timeout=%s",
+                questions.size(), resultOrder, threads, itemTimeout));
 
+        StreamingResponseBody stream = out -> batchService.answerAll(questions, resultOrder, threads, itemTimeout, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(stream);
     }
 //
 //    @RequestMapping(method = RequestMethod.GET, path = "/qa")
@@ -66,6 +66,13 @@ public class AnswerToQuestion {
         }
     }
 
+    public AnswerToQuestion(Set<String> answer, String answerType, String sparqlQuery) {
+        this.answer = answer;
+        this.answerType = answerType;
+        this.sparqlQuery = sparqlQuery;
+        this.rdfEntities = null;
+    }
+
     public Set<String> getAnswer() {
         return answer;
     }
@@ -0,0 +1,114 @@
+package de.uni.leipzig.tebaqa.tebaqacontroller.model;
+
+import javax.json.*;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A question of a batch request, read from QALD-JSON or from NDJSON with one question object per line.
+ */
+public class BatchQuestion {
+
+    private final String id;
+    private final String question;
+    private final String lang;
+
+    public BatchQuestion(String id, String question, String lang) {
+        this.id = id;
+        this.question = question;
+        this.lang = lang;
+    }
+
+    /**
+     * Reads the questions of a batch request. The input is either a QALD-JSON document, i.e.
+     * <code>{"questions": [{"id": "1", "question": [{"language": "en", "string": "..."}]}]}</code>, or NDJSON with
+     * one object like <code>{"id": "1", "question": "...", "lang": "en"}</code> per line.
+     *
+     * @param input       The request body.
+     * @param defaultLang The language of questions which don't specify one.
+     * @return The questions in input order.
+     * @throws IllegalArgumentException If the input is neither valid QALD-JSON nor valid NDJSON.
+     */
+    public static List<BatchQuestion> parse(String input, String defaultLang) {
+        JsonObject document = readObject(input);
+        if (document != null && document.containsKey("questions")) {
+            return parseQALD(document, defaultLang);
+        }
+
+        List<BatchQuestion> questions = new ArrayList<>();
+        String[] lines = input.split("\\r?\\n");
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i].trim().isEmpty())
+                continue;
+            JsonObject line = readObject(lines[i]);
+            if (line == null)
+                throw new IllegalArgumentException(String.format("Line %s is not a JSON object", i + 1));
+            questions.add(fromJson(line, String.valueOf(questions.size()), defaultLang));
+        }
+        return questions;
+    }
+
+    private static List<BatchQuestion> parseQALD(JsonObject document, String defaultLang) {
+        JsonValue questionsValue = document.get("questions");
+        if (questionsValue.getValueType() != JsonValue.ValueType.ARRAY)
+            throw new IllegalArgumentException("'questions' has to be an array");
+
+        List<BatchQuestion> questions = new ArrayList<>();
+        for (JsonValue value : (JsonArray) questionsValue) {
+            if (value.getValueType() != JsonValue.ValueType.OBJECT)
+                throw new IllegalArgumentException("Every entry of 'questions' has to be an object");
+            questions.add(fromJson((JsonObject) value, String.valueOf(questions.size()), defaultLang));
+        }
+        return questions;
+    }
+
+    private static BatchQuestion fromJson(JsonObject object, String defaultId, String defaultLang) {
+        String id = object.containsKey("id") ? asString(object.get("id")) : defaultId;
+        String lang = object.containsKey("lang") ? asString(object.get("lang")) : defaultLang;
+        JsonValue question = object.get("question");
+        if (question == null || question.getValueType() == JsonValue.ValueType.NULL)
+            return new BatchQuestion(id, "", lang);
+        if (question.getValueType() != JsonValue.ValueType.ARRAY)
+            return new BatchQuestion(id, asString(question), lang);
+
+        // QALD: one entry per language, use the requested language if present and the first entry otherwise
+        JsonObject chosen = null;
+        for (JsonValue entry : (JsonArray) question) {
+            if (entry.getValueType() != JsonValue.ValueType.OBJECT)
+                continue;
+            JsonObject translation = (JsonObject) entry;
+            if (chosen == null || lang.equals(translation.getString("language", ""))) {
+                chosen = translation;
+            }
+        }
+        if (chosen == null)
+            return new BatchQuestion(id, "", lang);
+        return new BatchQuestion(id, chosen.getString("string", ""), chosen.getString("language", lang));
+    }
+
+    private static JsonObject readObject(String json) {
+        try (JsonReader reader = Json.createReader(new StringReader(json))) {
+            JsonStructure structure = reader.read();
+            return structure.getValueType() == JsonValue.ValueType.OBJECT ? (JsonObject) structure : null;
+        } catch (JsonException e) {
+            return null;
+        }
+    }
+
+    private static String asString(JsonValue value) {
+        return value.getValueType() == JsonValue.ValueType.STRING ? ((JsonString) value).getString() : value.toString();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getQuestion() {
+        return question;
+    }
+
+    public String getLang() {
+        return lang;
+    }
+}
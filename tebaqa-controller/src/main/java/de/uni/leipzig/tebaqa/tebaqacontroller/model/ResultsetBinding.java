@@ -2,18 +2,28 @@ package de.uni.leipzig.tebaqa.tebaqacontroller.model;
 
 import de.uni.leipzig.tebaqa.tebaqacommons.model.QuestionAnswerType;
 import de.uni.leipzig.tebaqa.tebaqacommons.model.RatedQuery;
+import de.uni.leipzig.tebaqa.tebaqacontroller.utils.RedirectResolver;
 import de.uni.leipzig.tebaqa.tebaqacontroller.utils.SPARQLUtilities;
 
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.RDFNode;
+
+import java.text.ParsePosition;
 import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
 import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.time.temporal.TemporalAccessor;
+import java.util.*;
 import java.util.stream.Collectors;
 
+import static java.time.temporal.ChronoField.*;
+
 public class ResultsetBinding {
+    // Only this many results of a query are kept
+    public static final int MAX_RESULTS = 50;
+
     private Map<String, String> bindings;
     private Set<String> result;
     private String query;
@@ -21,13 +31,25 @@ public class ResultsetBinding {
     private QuestionAnswerType answerType;
     private RatedQuery ratedQuery;
 
-    private static DateTimeFormatter dateTimeFormatterLong = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-    private static DateTimeFormatter dateTimeFormatterShortMonth = DateTimeFormatter.ofPattern("yyyy-M-dd");
-    private static DateTimeFormatter dateTimeFormatterShortDay = DateTimeFormatter.ofPattern("yyyy-MM-d");
+    private static final String DBPEDIA_RESOURCE_PREFIX = "http://dbpedia.org/resource/";
+    // Tried in this order
+    private static final DateTimeFormatter[] DATE_FORMATTERS = {
+            DateTimeFormatter.ofPattern("yyyy-MM-dd"),
+            DateTimeFormatter.ofPattern("yyyy-MM-d"),
+            DateTimeFormatter.ofPattern("yyyy-M-dd")};
+    // The lexical form of these literals is added as is
+    private static final Set<String> PLAIN_DATATYPES = new HashSet<>(Arrays.asList(
+            XSDDatatype.XSDboolean.getURI(), XSDDatatype.XSDinteger.getURI(), XSDDatatype.XSDdecimal.getURI(),
+            XSDDatatype.XSDdouble.getURI(), XSDDatatype.XSDfloat.getURI(), XSDDatatype.XSDlong.getURI(),
+            XSDDatatype.XSDint.getURI(), XSDDatatype.XSDshort.getURI(), XSDDatatype.XSDbyte.getURI(),
+            XSDDatatype.XSDnonNegativeInteger.getURI(), XSDDatatype.XSDpositiveInteger.getURI(),
+            XSDDatatype.XSDnonPositiveInteger.getURI(), XSDDatatype.XSDnegativeInteger.getURI(),
+            XSDDatatype.XSDunsignedLong.getURI(), XSDDatatype.XSDunsignedInt.getURI(),
+            XSDDatatype.XSDunsignedShort.getURI(), XSDDatatype.XSDunsignedByte.getURI()));
 
     public ResultsetBinding() {
         this.bindings = new HashMap<>();
-        this.result = new HashSet<>();
+        this.result = Collections.synchronizedSet(new HashSet<>());
         this.query = "";
         this.rating = 1.0;
         this.answerType = QuestionAnswerType.UNKNOWN_ANSWER_TYPE;
@@ -52,70 +74,66 @@ public class ResultsetBinding {
     }
 
     public void retrieveRedirects() {
-        this.result = this.result.parallelStream().map(resource -> {
-            if (resource.startsWith("http://dbpedia.org/resource/")) {
-                return SPARQLUtilities.getRedirect(resource);
-            } else {
-                return resource;
-            }
-        }).collect(Collectors.toSet());
+        List<String> resources = this.result.stream()
+                .filter(resource -> resource.startsWith("http://dbpedia.org/resource/"))
+                .collect(Collectors.toList());
+        if (resources.isEmpty())
+            return;
+        Map<String, String> redirects = RedirectResolver.getRedirects(resources);
+        this.result = this.result.stream()
+                .map(resource -> redirects.getOrDefault(resource, resource))
+                .collect(Collectors.toCollection(() -> Collections.synchronizedSet(new HashSet<>())));
     }
 
     public void setResult(Set<String> result) {
-        this.result = new HashSet<>();
-        result.parallelStream().forEach(this::addResult);
+        this.result = Collections.synchronizedSet(new HashSet<>());
+        result.forEach(this::addResult);
     }
 
     public void addBinding(String variable, String uri) {
         this.bindings.put(variable, uri);
     }
 
-    public void addResult(String s) {
-        if (this.result.size() < 50) {
-            if (s.toLowerCase().startsWith("http://dbpedia.org/resource/")) {
-                this.result.add(s);
-            } else if (SPARQLUtilities.isDateFromXMLScheme(s)) {
-                this.result.add(getDateFromXMLScheme(s));
-            } else if (SPARQLUtilities.isStringFromXMLScheme(s)) {
-                this.result.add(s.substring(0, s.indexOf("^^")));
-            } else if (SPARQLUtilities.isNumberFromXMLScheme(s)) {
-                this.result.add(s.substring(0, s.indexOf("^^")));
-            } else if (SPARQLUtilities.isDate(s)) {
-                this.result.add(getLongDate(s));
-            } else {
-                this.result.add(s);
-            }
+    /**
+     * Adds a value of a query result. URIs and well-formed literals whose datatype is a number or boolean are added as
+     * they are, for other literals the lexical form is added like {@link #addResult(String)} does.
+     */
+    public void addResult(RDFNode node) {
+        if (node.isURIResource()) {
+            add(node.toString());
+        } else if (node.isLiteral()) {
+            Literal literal = node.asLiteral();
+            if (PLAIN_DATATYPES.contains(literal.getDatatypeURI()) && literal.asNode().getLiteral().isWellFormed())
+                add(literal.getLexicalForm());
+            else addResult(literal.getLexicalForm());
+        } else {
+            addResult(node.toString());
         }
     }
 
-    String getLongDate(String s) {
-        if (s.length() >= 6 && s.length() <= 10) {
-            LocalDate date = null;
-
-            try {
-                date = LocalDate.parse(s, dateTimeFormatterLong);
-            } catch (DateTimeParseException ignored) {
-            }
-
-            try {
-                date = LocalDate.parse(s, dateTimeFormatterShortDay);
-            } catch (DateTimeParseException ignored) {
-            }
-
-            try {
-                date = LocalDate.parse(s, dateTimeFormatterShortMonth);
-            } catch (DateTimeParseException ignored) {
-            }
+    /**
+     * Adds a value, dates are normalized to yyyy-MM-dd and datatypes of typed literals are removed.
+     */
+    public void addResult(String s) {
+        if (this.result.size() >= MAX_RESULTS)
+            return;
+        if (s.regionMatches(true, 0, DBPEDIA_RESOURCE_PREFIX, 0, DBPEDIA_RESOURCE_PREFIX.length())) {
+            add(s);
+        } else if (SPARQLUtilities.isDateFromXMLScheme(s)) {
+            add(getDateFromXMLScheme(s));
+        } else if (SPARQLUtilities.isStringFromXMLScheme(s) || SPARQLUtilities.isNumberFromXMLScheme(s)) {
+            add(s.substring(0, s.indexOf("^^")));
+        } else {
+            add(s);
+        }
+    }
 
-            try {
-                date = LocalDate.parse(s, DateTimeFormatter.ofPattern("yyyy-M-d"));
-            } catch (DateTimeParseException ignored) {
-            }
-            if (date != null) {
-                return date.format(dateTimeFormatterLong);
-            }
+    private void add(String value) {
+        Set<String> values = this.result;
+        synchronized (values) {
+            if (values.size() < MAX_RESULTS)
+                values.add(value);
         }
-        return s;
     }
 
     public String getQuery() {
@@ -150,26 +168,35 @@ public class ResultsetBinding {
         this.ratedQuery = ratedQuery;
     }
 
-    private String getDateFromXMLScheme(String s) {
-        if (s.contains("-")) {
-            try {
-                return LocalDate.parse(s, dateTimeFormatterLong).toString();
-            } catch (DateTimeParseException ignored) {
-            }
-            try {
-                return LocalDate.parse(s, dateTimeFormatterShortDay).toString();
-            } catch (DateTimeParseException ignored) {
-            }
-            try {
-                return LocalDate.parse(s, dateTimeFormatterShortMonth).toString();
-            } catch (DateTimeParseException ignored) {
+    private static String getDateFromXMLScheme(String s) {
+        if (s.indexOf('-') >= 0) {
+            for (DateTimeFormatter formatter : DATE_FORMATTERS) {
+                LocalDate date = parseDate(s, formatter);
+                if (date != null)
+                    return date.toString();
             }
         }
-        if (s.contains("^^")) {
-            return s.substring(0, s.indexOf("^^"));
-        } else {
-            return s;
-        }
+        int datatypeIndex = s.indexOf("^^");
+        return datatypeIndex >= 0 ? s.substring(0, datatypeIndex) : s;
+    }
+
+    /**
+     * Parses like {@link LocalDate#parse(CharSequence, DateTimeFormatter)} with the default smart resolving, e.g. a day
+     * after the end of the month is moved to its last day, but returns null instead of throwing.
+     */
+    private static LocalDate parseDate(String s, DateTimeFormatter formatter) {
+        ParsePosition position = new ParsePosition(0);
+        TemporalAccessor parsed = formatter.parseUnresolved(s, position);
+        if (parsed == null || position.getErrorIndex() >= 0 || position.getIndex() != s.length())
+            return null;
+        long year = parsed.getLong(YEAR_OF_ERA);
+        long month = parsed.getLong(MONTH_OF_YEAR);
+        long day = parsed.getLong(DAY_OF_MONTH);
+        if (!YEAR_OF_ERA.range().isValidValue(year) || !YEAR.range().isValidValue(year)
+                || !MONTH_OF_YEAR.range().isValidValue(month) || !DAY_OF_MONTH.range().isValidValue(day))
+            return null;
+        int monthLength = Month.of((int) month).length(Year.isLeap(year));
+        return LocalDate.of((int) year, (int) month, (int) Math.min(day, monthLength));
     }
 
     public double getNumericalResultValue(){
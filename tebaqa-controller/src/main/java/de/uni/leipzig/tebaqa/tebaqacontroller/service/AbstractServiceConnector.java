@@ -1,22 +1,38 @@
 package de.uni.leipzig.tebaqa.tebaqacontroller.service;
 
+import de.uni.leipzig.tebaqa.tebaqacommons.util.Deadline;
+import de.uni.leipzig.tebaqa.tebaqacommons.util.HttpClientProvider;
+import de.uni.leipzig.tebaqa.tebaqacommons.util.PayloadCodecs;
+import de.uni.leipzig.tebaqa.tebaqacommons.util.RestServiceConnector;
 import org.apache.log4j.Logger;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Calls the other services over the shared, pooled HTTP client. The deadline of the current request
+ * ({@link Deadline#current()}) limits the timeouts and is passed on to the called service.
+ */
 public class AbstractServiceConnector {
 
     private static final Logger LOGGER = Logger.getLogger(AbstractServiceConnector.class);
+    // Smile preferred, JSON if the service can't produce it
+    private static final List<MediaType> BINARY_ACCEPT = Arrays.asList(PayloadCodecs.SMILE, MediaType.APPLICATION_JSON);
 
     public <T> ResponseEntity<T> connect(String serviceUrl, MultiValueMap<String, String> params, Class<T> clazz) {
-        RestTemplate restTemplate = new RestTemplate();
+        Deadline deadline = Deadline.current();
+        deadline.check("Request to " + serviceUrl);
+        RestTemplate restTemplate = HttpClientProvider.getRestTemplate();
 
-        HttpHeaders headers = new HttpHeaders();
+        HttpHeaders headers = RestServiceConnector.createHeaders(deadline);
         headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
 
         HttpEntity<MultiValueMap<String, String>> request = new HttpEntity<>(params, headers);
@@ -30,10 +46,53 @@ public class AbstractServiceConnector {
     }
 
     public <T> ResponseEntity<T> connectPostJson(String serviceUrl, Object requestBody, Class<T> clazz) {
-        RestTemplate restTemplate = new RestTemplate();
+        return connectPost(serviceUrl, requestBody, MediaType.APPLICATION_JSON, clazz);
+    }
+
+    /**
+     * Like {@link #connect}, but asks for a Smile encoded response. Services which don't support it answer in JSON.
+     */
+    public <T> ResponseEntity<T> connectBinary(String serviceUrl, MultiValueMap<String, String> params, Class<T> clazz) {
+        Deadline deadline = Deadline.current();
+        deadline.check("Request to " + serviceUrl);
+        RestTemplate restTemplate = HttpClientProvider.getRestTemplate();
+
+        HttpHeaders headers = RestServiceConnector.createHeaders(deadline);
+        headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
+        headers.setAccept(BINARY_ACCEPT);
+
+        HttpEntity<MultiValueMap<String, String>> request = new HttpEntity<>(params, headers);
+
+        try {
+            return restTemplate.postForEntity(serviceUrl, request, clazz);
+        } catch (RestClientException e) {
+            LOGGER.error(e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Like {@link #connectPostJson}, but sends the body and asks for the response Smile encoded. Falls back to JSON
+     * if the service doesn't accept Smile.
+     */
+    public <T> ResponseEntity<T> connectPostBinary(String serviceUrl, Object requestBody, Class<T> clazz) {
+        try {
+            return connectPost(serviceUrl, requestBody, PayloadCodecs.SMILE, clazz);
+        } catch (HttpClientErrorException.UnsupportedMediaType e) {
+            LOGGER.warn(serviceUrl + " doesn't accept Smile, falling back to JSON");
+            return connectPostJson(serviceUrl, requestBody, clazz);
+        }
+    }
+
+    private <T> ResponseEntity<T> connectPost(String serviceUrl, Object requestBody, MediaType contentType, Class<T> clazz) {
+        Deadline deadline = Deadline.current();
+        deadline.check("Request to " + serviceUrl);
+        RestTemplate restTemplate = HttpClientProvider.getRestTemplate();
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
+        HttpHeaders headers = RestServiceConnector.createHeaders(deadline);
+        headers.setContentType(contentType);
+        if (PayloadCodecs.SMILE.equals(contentType))
+            headers.setAccept(BINARY_ACCEPT);
         HttpEntity<Object> request = new HttpEntity<>(requestBody, headers);
 
         try {
@@ -0,0 +1,282 @@
+package de.uni.leipzig.tebaqa.tebaqacontroller.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import de.uni.leipzig.tebaqa.tebaqacommons.nlp.Lang;
+import de.uni.leipzig.tebaqa.tebaqacommons.util.Deadline;
+import de.uni.leipzig.tebaqa.tebaqacommons.util.DeadlineExceededException;
+import de.uni.leipzig.tebaqa.tebaqacontroller.model.AnswerToQuestion;
+import de.uni.leipzig.tebaqa.tebaqacontroller.utils.ControllerPropertyUtils;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Pattern;
+
+/**
+ * Bounded cache of answers, keyed by the normalized question and its language. Entries expire after a fixed time.
+ * Requests for a question which is already being answered wait for that answer. The cache can be written to a
+ * snapshot file on shutdown and restored on startup, restored entries keep the time they were answered and expire
+ * when they would have without the restart.
+ */
+public class AnswerCache {
+
+    private static final Logger LOGGER = Logger.getLogger(AnswerCache.class);
+    private static final Pattern PUNCTUATION = Pattern.compile("\\p{P}+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final String snapshotFile;
+    private final Cache<String, CachedAnswer> cache;
+    private final Map<String, CompletableFuture<CachedAnswer>> inFlight = new ConcurrentHashMap<>();
+
+    public AnswerCache() {
+        this(ControllerPropertyUtils.getBooleanProperty("answer.cache.enabled", true),
+                ControllerPropertyUtils.getLongProperty("answer.cache.max-size", 10000),
+                ControllerPropertyUtils.getLongProperty("answer.cache.ttl-minutes", 1440),
+                ControllerPropertyUtils.getProperty("answer.cache.snapshot.file", ""));
+    }
+
+    public AnswerCache(boolean enabled, long maxSize, long ttlMinutes, String snapshotFile) {
+        this.enabled = enabled;
+        this.ttlMillis = TimeUnit.MINUTES.toMillis(ttlMinutes);
+        this.snapshotFile = snapshotFile == null ? "" : snapshotFile.trim();
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlMinutes, TimeUnit.MINUTES)
+                .recordStats()
+                .build();
+        if (enabled && !this.snapshotFile.isEmpty())
+            loadSnapshot();
+    }
+
+    /**
+     * Returns the cached answer for the question or computes it. Empty answers are not cached, they are often caused
+     * by a failing service. If the same question is already being answered, waits for that answer until the given
+     * deadline passes. If that answering fails, e.g. because the deadline of its own request passed, the question is
+     * answered again under the given deadline.
+     *
+     * @param deadline The deadline of the calling request.
+     * @throws DeadlineExceededException If the deadline passes while waiting for the same question.
+     * @throws InterruptedException      If interrupted while waiting for the same question.
+     */
+    public AnswerToQuestion get(String question, Lang lang, Deadline deadline, Callable<AnswerToQuestion> answerer) throws Exception {
+        if (!enabled)
+            return answerer.call();
+
+        String key = createKey(question, lang);
+        CachedAnswer cached = lookup(key);
+        if (cached != null)
+            return cached.toAnswer();
+
+        CompletableFuture<CachedAnswer> flight = new CompletableFuture<>();
+        CompletableFuture<CachedAnswer> running = inFlight.putIfAbsent(key, flight);
+        if (running != null)
+            return await(running, question, deadline, answerer);
+
+        try {
+            // Answered between the cache lookup and registering this request
+            cached = lookup(key);
+            if (cached != null) {
+                flight.complete(cached);
+                return cached.toAnswer();
+            }
+
+            AnswerToQuestion computed = answerer.call();
+            CachedAnswer answer = new CachedAnswer(question, lang, computed);
+            if (!computed.getAnswer().isEmpty())
+                cache.put(key, answer);
+            // Waiting requests get empty answers as well, they would most likely fail the same way
+            flight.complete(answer);
+            return computed;
+        } finally {
+            if (!flight.isDone())
+                flight.completeExceptionally(new CancellationException("Answering failed"));
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * Guava expires entries after the time they were put into the cache, which is the startup for restored ones.
+     */
+    private CachedAnswer lookup(String key) {
+        CachedAnswer cached = cache.getIfPresent(key);
+        if (cached != null && isExpired(cached, System.currentTimeMillis())) {
+            cache.invalidate(key);
+            return null;
+        }
+        return cached;
+    }
+
+    private boolean isExpired(CachedAnswer entry, long now) {
+        return now - entry.getCreated() >= ttlMillis;
+    }
+
+    private static AnswerToQuestion await(CompletableFuture<CachedAnswer> running, String question, Deadline deadline,
+                                          Callable<AnswerToQuestion> answerer) throws Exception {
+        try {
+            return running.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS).toAnswer();
+        } catch (ExecutionException | CancellationException e) {
+            // CompletableFuture throws the CancellationException of a failed answering as it is
+            LOGGER.debug("Shared answering failed, answering again: " + question);
+            return answerer.call();
+        } catch (TimeoutException e) {
+            throw new DeadlineExceededException("Request deadline passed while waiting for the same question: " + question);
+        }
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    static String createKey(String question, Lang lang) {
+        return lang.getLanguageCode() + "|" + normalize(question);
+    }
+
+    /**
+     * Folds case, punctuation and whitespace, e.g. "Who is  the mayor of Berlin?" and "who is the mayor of berlin"
+     * are the same question.
+     */
+    static String normalize(String question) {
+        String normalized = PUNCTUATION.matcher(question.toLowerCase(Locale.ROOT)).replaceAll(" ");
+        return WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+    }
+
+    public synchronized void saveSnapshot() {
+        if (!enabled || snapshotFile.isEmpty())
+            return;
+        long now = System.currentTimeMillis();
+        List<CachedAnswer> entries = new ArrayList<>();
+        for (CachedAnswer entry : cache.asMap().values()) {
+            if (!isExpired(entry, now))
+                entries.add(entry);
+        }
+        try {
+            File file = new File(snapshotFile);
+            File tmpFile = new File(snapshotFile + ".tmp");
+            new ObjectMapper().writeValue(tmpFile, entries);
+            if (!tmpFile.renameTo(file) && !(file.delete() && tmpFile.renameTo(file)))
+                throw new IOException("Unable to replace " + file);
+            LOGGER.info(String.format("Wrote %s cached answers to %s", entries.size(), snapshotFile));
+        } catch (IOException e) {
+            LOGGER.error("Unable to write answer cache snapshot to " + snapshotFile, e);
+        }
+    }
+
+    private void loadSnapshot() {
+        File file = new File(snapshotFile);
+        if (!file.exists())
+            return;
+        try {
+            ObjectMapper mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+            List<CachedAnswer> entries = mapper.readValue(file, new TypeReference<List<CachedAnswer>>() {});
+            long now = System.currentTimeMillis();
+            int loaded = 0;
+            for (CachedAnswer entry : entries) {
+                Lang lang = Lang.getForCode(entry.getLang());
+                if (lang != null && entry.getQuestion() != null && !isExpired(entry, now)) {
+                    cache.put(createKey(entry.getQuestion(), lang), entry);
+                    loaded++;
+                }
+            }
+            LOGGER.info(String.format("Restored %s of %s cached answers from %s", loaded, entries.size(), snapshotFile));
+        } catch (IOException e) {
+            LOGGER.error("Unable to read answer cache snapshot from " + snapshotFile, e);
+        }
+    }
+
+    /**
+     * Everything needed to recreate an {@link AnswerToQuestion}, i.e. the answers, their type and the SPARQL query.
+     */
+    public static class CachedAnswer {
+        private String question;
+        private String lang;
+        private Set<String> answer;
+        private String answerType;
+        private String sparqlQuery;
+        private long created;
+
+        public CachedAnswer() {
+        }
+
+        CachedAnswer(String question, Lang lang, AnswerToQuestion answer) {
+            this.question = question;
+            this.lang = lang.getLanguageCode();
+            this.answer = new HashSet<>(answer.getAnswer());
+            this.answerType = answer.getAnswerType();
+            this.sparqlQuery = answer.getSparqlQuery();
+            this.created = System.currentTimeMillis();
+        }
+
+        AnswerToQuestion toAnswer() {
+            return new AnswerToQuestion(new HashSet<>(answer), answerType, sparqlQuery);
+        }
+
+        public String getQuestion() {
+            return question;
+        }
+
+        public void setQuestion(String question) {
+            this.question = question;
+        }
+
+        public String getLang() {
+            return lang;
+        }
+
+        public void setLang(String lang) {
+            this.lang = lang;
+        }
+
+        public Set<String> getAnswer() {
+            return answer;
+        }
+
+        public void setAnswer(Set<String> answer) {
+            this.answer = answer;
+        }
+
+        public String getAnswerType() {
+            return answerType;
+        }
+
+        public void setAnswerType(String answerType) {
+            this.answerType = answerType;
+        }
+
+        public String getSparqlQuery() {
+            return sparqlQuery;
+        }
+
+        public void setSparqlQuery(String sparqlQuery) {
+            this.sparqlQuery = sparqlQuery;
+        }
+
+        public long getCreated() {
+            return created;
+        }
+
+        public void setCreated(long created) {
+            this.created = created;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package de.uni.leipzig.tebaqa.tebaqacontroller.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.uni.leipzig.tebaqa.tebaqacommons.nlp.Lang;
+import de.uni.leipzig.tebaqa.tebaqacommons.util.Deadline;
+import de.uni.leipzig.tebaqa.tebaqacontroller.model.AnswerToQuestion;
+import de.uni.leipzig.tebaqa.tebaqacontroller.model.BatchQuestion;
+import de.uni.leipzig.tebaqa.tebaqacontroller.model.ExtendedQALDAnswer;
+import de.uni.leipzig.tebaqa.tebaqacontroller.utils.ControllerPropertyUtils;
+import org.apache.log4j.Logger;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Answers the questions of a batch request with bounded concurrency and writes one NDJSON line per question as soon
+ * as its answer is ready.
+ */
+public class BatchAnswerService {
+
+    private static final Logger LOGGER = Logger.getLogger(BatchAnswerService.class);
+
+    private static final ThreadFactory BATCH_THREADS = new ThreadFactoryBuilder().setNameFormat("qa-batch-%d").setDaemon(true).build();
+    private static final ScheduledExecutorService TIMEOUT_SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("qa-batch-timeout").setDaemon(true).build());
+    public static final int DEFAULT_CONCURRENCY = ControllerPropertyUtils.getIntProperty("batch.concurrency", 8);
+    public static final int MAX_CONCURRENCY = ControllerPropertyUtils.getIntProperty("batch.max-concurrency", 32);
+    public static final long DEFAULT_ITEM_TIMEOUT = ControllerPropertyUtils.getLongProperty("batch.timeout.item", 120000);
+
+    // Marks a finished question in the event queue, which frees its slot
+    private static final int SLOT_FREED = -1;
+
+    private final OrchestrationService qaService;
+    private final AnswerCache answerCache;
+
+    public BatchAnswerService(OrchestrationService qaService, AnswerCache answerCache) {
+        this.qaService = qaService;
+        this.answerCache = answerCache;
+    }
+
+    public enum Order {
+        INPUT, COMPLETION;
+
+        public static Order forCode(String code) {
+            for (Order order : values()) {
+                if (order.name().equalsIgnoreCase(code))
+                    return order;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Answers all questions and writes one line per question to the output stream. Each batch has its own pool of
+     * concurrency threads, so exactly concurrency questions are answered at the same time, whatever other batches do. A question which isn't answered within the timeout is reported with status "timeout",
+     * its work stops at the next pipeline stage and its slot is freed then.
+     *
+     * @param questions     The questions to answer.
+     * @param order         Whether lines are written in input order or as soon as an answer is ready.
+     * @param concurrency   The number of questions answered at the same time.
+     * @param timeoutMillis The time after which a started question is reported as timed out.
+     * @param out           The stream the NDJSON lines are written to.
+     * @throws IOException If writing fails, e.g. because the client disconnected. No further questions are started then.
+     */
+    public void answerAll(List<BatchQuestion> questions, Order order, int concurrency, long timeoutMillis, OutputStream out) throws IOException {
+        int total = questions.size();
+        BlockingQueue<Integer> events = new LinkedBlockingQueue<>();
+        List<CompletableFuture<String>> lines = new ArrayList<>(total);
+        List<Future<?>> tasks = new ArrayList<>(total);
+        for (int i = 0; i < total; i++) {
+            lines.add(new CompletableFuture<>());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, BATCH_THREADS);
+        long start = System.currentTimeMillis();
+        int started = 0;
+        int running = 0;
+        int written = 0;
+        try {
+            while (written < total) {
+                while (started < total && running < concurrency) {
+                    tasks.add(submit(executor, started, questions.get(started), timeoutMillis, lines.get(started), events));
+                    started++;
+                    running++;
+                }
+
+                int event = events.take();
+                if (event == SLOT_FREED) {
+                    running--;
+                } else if (order == Order.COMPLETION) {
+                    write(out, lines.get(event).join());
+                    written++;
+                } else {
+                    while (written < total && lines.get(written).isDone()) {
+                        write(out, lines.get(written).join());
+                        written++;
+                    }
+                }
+            }
+            LOGGER.info(String.format("Answered batch of %s questions in %s ms", total, System.currentTimeMillis() - start));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.error(String.format("Interrupted after writing %s of %s answers", written, total));
+        } finally {
+            if (written < total)
+                tasks.forEach(task -> task.cancel(true));
+            // Questions which timed out may still be running, their threads end with them
+            executor.shutdown();
+        }
+    }
+
+    private Future<?> submit(ExecutorService executor, int index, BatchQuestion question, long timeoutMillis,
+                             CompletableFuture<String> line, BlockingQueue<Integer> events) {
+        line.thenRun(() -> events.add(index));
+        return executor.submit(() -> {
+            ScheduledFuture<?> timeout = TIMEOUT_SCHEDULER.schedule(
+                    () -> line.complete(createLine(question, "timeout", null, timeoutMillis / 1000.)),
+                    timeoutMillis, TimeUnit.MILLISECONDS);
+            try {
+                line.complete(answer(question, timeoutMillis));
+            } finally {
+                timeout.cancel(false);
+                events.add(SLOT_FREED);
+            }
+        });
+    }
+
+    private String answer(BatchQuestion question, long timeoutMillis) {
+        Lang lang = Lang.getForCode(question.getLang());
+        if (question.getQuestion().trim().isEmpty() || lang == null) {
+            return createLine(question, "invalid", null, 0);
+        }
+        long start = System.currentTimeMillis();
+        Deadline deadline = Deadline.after(timeoutMillis);
+        try {
+            AnswerToQuestion answer = answerCache.get(question.getQuestion(), lang, deadline,
+                    () -> qaService.answerQuestion(question.getQuestion(), lang, deadline));
+            double elaps = (System.currentTimeMillis() - start) / 1000.;
+            return createLine(question, "ok", new ExtendedQALDAnswer(answer, true, elaps), elaps);
+        } catch (Exception e) {
+            LOGGER.error(String.format("Got Exception while answering='%s' with lang='%s'", question.getQuestion(), lang), e);
+            return createLine(question, "error", null, (System.currentTimeMillis() - start) / 1000.);
+        }
+    }
+
+    private static String createLine(BatchQuestion question, String status, ExtendedQALDAnswer answer, double elaps) {
+        JsonObjectBuilder line = Json.createObjectBuilder()
+                .add("id", question.getId())
+                .add("question", question.getQuestion())
+                .add("lang", question.getLang())
+                .add("status", status)
+                .add("elaps", elaps);
+        if (answer != null) {
+            try (JsonReader reader = Json.createReader(new StringReader(answer.getResult()))) {
+                JsonArray questions = reader.readObject().getJsonArray("questions");
+                line.add("questions", questions);
+            }
+        }
+        return line.build().toString();
+    }
+
+    private static void write(OutputStream out, String line) throws IOException {
+        out.write(line.getBytes(StandardCharsets.UTF_8));
+        out.write('\n');
+        out.flush();
+    }
+}
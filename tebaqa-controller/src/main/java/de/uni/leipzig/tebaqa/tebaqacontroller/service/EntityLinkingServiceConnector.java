@@ -2,13 +2,17 @@ package de.uni.leipzig.tebaqa.tebaqacontroller.service;
 
 import de.uni.leipzig.tebaqa.tebaqacommons.model.EntityLinkingResponseBean;
 import de.uni.leipzig.tebaqa.tebaqacommons.nlp.Lang;
+import de.uni.leipzig.tebaqa.tebaqacommons.pipeline.EntityLinker;
 import de.uni.leipzig.tebaqa.tebaqacontroller.utils.ControllerPropertyUtils;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 
-public class EntityLinkingServiceConnector extends AbstractServiceConnector {
+public class EntityLinkingServiceConnector extends AbstractServiceConnector implements EntityLinker {
 
+    private static final boolean BINARY_PAYLOADS = ControllerPropertyUtils.getBooleanProperty("el.binary-payloads", true);
+
+    @Override
     public EntityLinkingResponseBean extractEntities(String question, Lang language) {
 //        if(ControllerPropertyUtils.ablationEL()) {
 //            return ablation(question);
@@ -20,7 +24,9 @@ public class EntityLinkingServiceConnector extends AbstractServiceConnector {
             params.add("question", question);
             params.add("lang", language.getLanguageCode());
 
-            ResponseEntity<EntityLinkingResponseBean> responseEntity = this.connect(serviceUrl, params, EntityLinkingResponseBean.class);
+            ResponseEntity<EntityLinkingResponseBean> responseEntity = BINARY_PAYLOADS
+                    ? this.connectBinary(serviceUrl, params, EntityLinkingResponseBean.class)
+                    : this.connect(serviceUrl, params, EntityLinkingResponseBean.class);
             return responseEntity.getBody();
 //        }
     }
@@ -0,0 +1,228 @@
+package de.uni.leipzig.tebaqa.tebaqacontroller.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Lists;
+import de.uni.leipzig.tebaqa.tebaqacommons.util.Deadline;
+import de.uni.leipzig.tebaqa.tebaqacommons.util.MappedRecordStore;
+import de.uni.leipzig.tebaqa.tebaqacontroller.utils.ControllerPropertyUtils;
+import de.uni.leipzig.tebaqa.tebaqacontroller.utils.SPARQLUtilities;
+import de.uni.leipzig.tebaqa.tebaqacontroller.utils.SparqlRouter;
+import org.apache.jena.query.*;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.log4j.Logger;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static de.uni.leipzig.tebaqa.tebaqacontroller.model.ExtendedQALDAnswer.extractAnswerString;
+import static de.uni.leipzig.tebaqa.tebaqacontroller.utils.WikiTextUtilities.stripWikipediaContent;
+
+/**
+ * Builds the infoboxes of answer resources: title, description, abstract, image and links. The values of many
+ * resources are fetched with one query per chunk of infobox.batch-size resources, the infoboxes are cached. With
+ * infobox.store-file the values are read from a store written by InfoboxStoreGenerator, only resources which aren't
+ * in it are fetched.
+ */
+public class InfoboxService {
+
+    private static final Logger LOGGER = Logger.getLogger(InfoboxService.class);
+    private static final InfoboxService INSTANCE = new InfoboxService();
+
+    // One row per resource, the same values as LABEL_SPARQL, DESCRIPTION_SPARQL, ABSTRACT_SPARQL, IMAGE_SPARQL and
+    // WIKI_LINK_SPARQL of SPARQLUtilities
+    private static final String INFOBOX_SPARQL = "SELECT ?resource (SAMPLE(?l) AS ?label) (SAMPLE(?d) AS ?description) (SAMPLE(?a) AS ?abstract) (SAMPLE(?t) AS ?thumbnail) (SAMPLE(?w) AS ?primaryTopic) WHERE { "
+            + "VALUES ?resource { %s } "
+            + "OPTIONAL { ?resource <http://www.w3.org/2000/01/rdf-schema#label> ?l . FILTER(lang(?l) = \"en\") } "
+            + "OPTIONAL { ?resource <http://purl.org/dc/terms/description> ?d . FILTER(lang(?d) = \"en\") } "
+            + "OPTIONAL { ?resource <http://dbpedia.org/ontology/abstract> ?a . FILTER(lang(?a) = \"en\") } "
+            + "OPTIONAL { ?resource <http://dbpedia.org/ontology/thumbnail> ?t } "
+            + "OPTIONAL { ?resource <http://xmlns.com/foaf/0.1/isPrimaryTopicOf> ?w } "
+            + "} GROUP BY ?resource";
+
+    private final int batchSize;
+    private final Cache<String, JsonObject> cache;
+    private final MappedRecordStore store;
+    private final AtomicLong storeHits = new AtomicLong();
+    private final AtomicLong storeMisses = new AtomicLong();
+
+    public InfoboxService() {
+        this(ControllerPropertyUtils.getIntProperty("infobox.batch-size", 50),
+                ControllerPropertyUtils.getLongProperty("infobox.cache.max-size", 10000),
+                ControllerPropertyUtils.getLongProperty("infobox.cache.ttl-minutes", 1440),
+                openStore(ControllerPropertyUtils.getProperty("infobox.store-file", "").trim()));
+    }
+
+    /**
+     * @param store The store to read the values from before querying or null.
+     */
+    public InfoboxService(int batchSize, long maxSize, long ttlMinutes, MappedRecordStore store) {
+        this.batchSize = Math.max(1, batchSize);
+        this.store = store;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlMinutes, TimeUnit.MINUTES)
+                .recordStats()
+                .build();
+    }
+
+    public static InfoboxService getInstance() {
+        return INSTANCE;
+    }
+
+    public JsonObject getInfobox(String resource) {
+        return getInfoboxes(Collections.singletonList(resource)).get(resource);
+    }
+
+    /**
+     * @return The infobox of every given resource, in the given order. Resources without values have an infobox with
+     * the DBpedia link only.
+     */
+    public Map<String, JsonObject> getInfoboxes(Collection<String> resources) {
+        Map<String, JsonObject> infoboxes = new LinkedHashMap<>();
+        List<String> unknown = new ArrayList<>();
+        for (String resource : new LinkedHashSet<>(resources)) {
+            Map<String, String> stored = store == null ? null : store.get(resource);
+            if (stored != null) {
+                storeHits.incrementAndGet();
+                infoboxes.put(resource, buildInfobox(resource, stored));
+                continue;
+            } else if (store != null) {
+                storeMisses.incrementAndGet();
+            }
+            JsonObject cached = cache.getIfPresent(resource);
+            infoboxes.put(resource, cached);
+            if (cached == null && SPARQLUtilities.isValidIRI(resource))
+                unknown.add(resource);
+        }
+
+        for (List<String> chunk : Lists.partition(unknown, batchSize)) {
+            Map<String, Map<String, String>> values = queryValues(chunk);
+            for (String resource : chunk) {
+                if (values == null) {
+                    // Not cached, the query may succeed next time
+                    infoboxes.put(resource, buildInfobox(resource, Collections.emptyMap()));
+                } else {
+                    JsonObject infobox = buildInfobox(resource, values.getOrDefault(resource, Collections.emptyMap()));
+                    cache.put(resource, infobox);
+                    infoboxes.put(resource, infobox);
+                }
+            }
+        }
+        infoboxes.replaceAll((resource, infobox) -> infobox != null ? infobox : buildInfobox(resource, Collections.emptyMap()));
+        return infoboxes;
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public long getStoreHits() {
+        return storeHits.get();
+    }
+
+    public long getStoreMisses() {
+        return storeMisses.get();
+    }
+
+    private static MappedRecordStore openStore(String file) {
+        if (file.isEmpty())
+            return null;
+        try {
+            MappedRecordStore store = MappedRecordStore.open(new File(file));
+            LOGGER.info(String.format("Mapped infoboxes of %s resources from %s", store.size(), file));
+            return store;
+        } catch (IOException e) {
+            LOGGER.error("Unable to open infobox.store-file, asking the endpoint instead: " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return The values by variable of each resource with at least one value or null if the query failed.
+     */
+    private static Map<String, Map<String, String>> queryValues(List<String> resources) {
+        StringBuilder values = new StringBuilder();
+        resources.forEach(resource -> values.append('<').append(resource).append("> "));
+        String sparql = String.format(INFOBOX_SPARQL, values);
+
+        Query query;
+        try {
+            query = QueryFactory.create(sparql);
+        } catch (QueryParseException e) {
+            LOGGER.error("Unable to parse infobox query: " + sparql, e);
+            return null;
+        }
+        try {
+            return SparqlRouter.forEndpoint(SPARQLUtilities.SPARQL_ENDPOINT).execute(query, SparqlRouter.timeoutFor(Deadline.current()), InfoboxService::readValues);
+        } catch (RuntimeException e) {
+            LOGGER.error(String.format("Unable to fetch infoboxes of %s resources", resources.size()), e);
+            return null;
+        }
+    }
+
+    private static Map<String, Map<String, String>> readValues(QueryExecution qe) {
+        Map<String, Map<String, String>> valuesByResource = new HashMap<>();
+        ResultSet rs = qe.execSelect();
+        while (rs.hasNext()) {
+            QuerySolution solution = rs.nextSolution();
+            RDFNode resource = solution.get("resource");
+            if (resource == null)
+                continue;
+            Map<String, String> values = new HashMap<>();
+            for (Iterator<String> it = solution.varNames(); it.hasNext(); ) {
+                String var = it.next();
+                RDFNode value = solution.get(var);
+                // Literals are English, as the single queries return them without language tag
+                if (!"resource".equals(var) && value != null)
+                    values.put(var, value.isLiteral() ? value.asLiteral().getLexicalForm() : value.toString());
+            }
+            valuesByResource.put(resource.toString(), values);
+        }
+        return valuesByResource;
+    }
+
+    private static JsonObject buildInfobox(String resource, Map<String, String> values) {
+        JsonObjectBuilder resultObject = Json.createObjectBuilder();
+        String title = values.get("label");
+        if (title != null && !title.isEmpty())
+            resultObject.add("title", title);
+        String description = values.get("description");
+        if (description != null && !description.isEmpty())
+            resultObject.add("description", description);
+        String abstractInfo = values.get("abstract");
+        if (abstractInfo != null && !abstractInfo.isEmpty())
+            resultObject.add("abstract", stripWikipediaContent(abstractInfo));
+        String image = values.get("thumbnail");
+        if (image != null && !image.isEmpty())
+            resultObject.add("image", image);
+
+        JsonArrayBuilder buttonBuilder = Json.createArrayBuilder();
+        String wikiLink = values.get("primaryTopic");
+        if (wikiLink != null) {
+            buttonBuilder.add(Json.createObjectBuilder()
+                    .add("title", "View in Wikipedia")
+                    .add("buttonType", "link")
+                    .add("uri", extractAnswerString(wikiLink))
+                    .add("slackStyle", "default"));
+        }
+        resultObject.add("buttons", buttonBuilder.add(Json.createObjectBuilder()
+                .add("title", "View in DBpedia")
+                .add("buttonType", "link")
+                .add("uri", extractAnswerString(resource))
+                .add("slackStyle", "default")));
+        return resultObject.build();
+    }
+}
@@ -1,16 +1,26 @@
 package de.uni.leipzig.tebaqa.tebaqacontroller.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import de.uni.leipzig.tebaqa.tebaqacommons.model.*;
 import de.uni.leipzig.tebaqa.tebaqacommons.nlp.Lang;
 import de.uni.leipzig.tebaqa.tebaqacommons.nlp.SemanticAnalysisHelper;
+import de.uni.leipzig.tebaqa.tebaqacommons.pipeline.EmbeddedStages;
+import de.uni.leipzig.tebaqa.tebaqacommons.pipeline.EntityLinker;
+import de.uni.leipzig.tebaqa.tebaqacommons.pipeline.QueryRanker;
+import de.uni.leipzig.tebaqa.tebaqacommons.pipeline.TemplateClassifier;
+import de.uni.leipzig.tebaqa.tebaqacommons.util.Deadline;
 import de.uni.leipzig.tebaqa.tebaqacontroller.model.AnswerToQuestion;
 import de.uni.leipzig.tebaqa.tebaqacontroller.model.ResultsetBinding;
-import de.uni.leipzig.tebaqa.tebaqacontroller.utils.SPARQLUtilities;
+import de.uni.leipzig.tebaqa.tebaqacontroller.utils.AnswerTypePredictor;
+import de.uni.leipzig.tebaqa.tebaqacontroller.utils.ControllerPropertyUtils;
+import de.uni.leipzig.tebaqa.tebaqacontroller.utils.QueryCostEstimator;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class OrchestrationService {
@@ -18,55 +28,166 @@ public class OrchestrationService {
     private static final Logger LOGGER = Logger.getLogger(OrchestrationService.class);
     private static final String SKOS_CONCEPT = "http://www.w3.org/2004/02/skos/core#Concept";
 
-    private final TemplateClassificationServiceConnector templateClassificationService;
-    private final EntityLinkingServiceConnector entityLinkingService;
-    private final QueryRankingServiceConnector queryRankingService;
+    // Shared by all requests, the pipeline stages are mostly blocked on remote calls
+    private static final ExecutorService STAGE_EXECUTOR = Executors.newFixedThreadPool(
+            ControllerPropertyUtils.getIntProperty("orchestration.stage.threads", 32),
+            new ThreadFactoryBuilder().setNameFormat("qa-stage-%d").setDaemon(true).build());
+    private static final long CLASSIFICATION_TIMEOUT = ControllerPropertyUtils.getLongProperty("orchestration.timeout.classification", 30000);
+    private static final long LINKING_TIMEOUT = ControllerPropertyUtils.getLongProperty("orchestration.timeout.linking", 60000);
+    private static final long ANSWER_TYPE_TIMEOUT = ControllerPropertyUtils.getLongProperty("orchestration.timeout.answer-type", 30000);
+    private static final boolean PROGRESSIVE_EVALUATION = "progressive".equalsIgnoreCase(ControllerPropertyUtils.getProperty("sparql.execution.mode", "all"));
+    private static final int EVALUATION_WAVE_SIZE = ControllerPropertyUtils.getIntProperty("sparql.execution.wave-size", 4);
+    private static final FallbackSpeculation FALLBACK_SPECULATION = FallbackSpeculation.forCode(ControllerPropertyUtils.getProperty("orchestration.fallback.speculation", "off"));
+    private static final boolean PRUNE_BY_ANSWER_TYPE = ControllerPropertyUtils.getBooleanProperty("sparql.execution.prune-by-answer-type", true);
+    private static final double COST_BUDGET = Double.parseDouble(ControllerPropertyUtils.getProperty("sparql.cost.budget", "5000000"));
+    private static final boolean DROP_EXPENSIVE = "drop".equalsIgnoreCase(ControllerPropertyUtils.getProperty("sparql.cost.mode", "defer").trim());
+
+    private final TemplateClassifier templateClassificationService;
+    private final EntityLinker entityLinkingService;
+    private final QueryRanker queryRankingService;
     private final SemanticAnalysisHelper semanticAnalysisHelper;
+    private final ParallelQueryExecutor queryExecutor;
+    private final SimilarQuestionIndex similarQuestions;
 
+    /**
+     * Creates the pipeline. Each stage either calls its service or runs in this JVM, see pipeline.mode in the
+     * application properties. Embedded stages need the service modules on the class path.
+     */
     public OrchestrationService() throws IOException {
-        this.templateClassificationService = new TemplateClassificationServiceConnector();
-        this.entityLinkingService = new EntityLinkingServiceConnector();
-        this.queryRankingService = new QueryRankingServiceConnector();
+        // The embedded stages create their own helpers, so the NLP mode is set for all of them
+        if (isEmbedded("nlp") && System.getProperty(SemanticAnalysisHelper.MODE_PROPERTY) == null)
+            System.setProperty(SemanticAnalysisHelper.MODE_PROPERTY, EmbeddedStages.EMBEDDED);
+        this.templateClassificationService = isEmbedded("classification")
+                ? EmbeddedStages.get(TemplateClassifier.class, EmbeddedStages.TEMPLATE_CLASSIFIER)
+                : new TemplateClassificationServiceConnector();
+        this.entityLinkingService = isEmbedded("linking")
+                ? EmbeddedStages.get(EntityLinker.class, EmbeddedStages.ENTITY_LINKER)
+                : new EntityLinkingServiceConnector();
+        this.queryRankingService = isEmbedded("ranking")
+                ? EmbeddedStages.get(QueryRanker.class, EmbeddedStages.QUERY_RANKER)
+                : new QueryRankingServiceConnector();
         this.semanticAnalysisHelper = new SemanticAnalysisHelper(Lang.EN);
+        this.queryExecutor = new ParallelQueryExecutor();
+        this.similarQuestions = new SimilarQuestionIndex();
 //        this.semanticAnalysisHelper = new SemanticAnalysisHelper(new RestServiceConfiguration("http", "tebaqa.cs.upb.de", "8085"), Lang.EN);
     }
 
+    private static boolean isEmbedded(String stage) {
+        String mode = ControllerPropertyUtils.getProperty("pipeline.mode." + stage, "");
+        if (mode.trim().isEmpty())
+            mode = ControllerPropertyUtils.getProperty("pipeline.mode", EmbeddedStages.REMOTE);
+        boolean embedded = EmbeddedStages.isEmbedded(mode);
+        LOGGER.info(String.format("Stage %s runs %s", stage, embedded ? EmbeddedStages.EMBEDDED : EmbeddedStages.REMOTE));
+        return embedded;
+    }
+
     public AnswerToQuestion answerQuestion(String question, Lang lang) throws JsonProcessingException {
-        // 1. Template classification
-        QueryTemplateResponseBean matchingQueryTemplates = templateClassificationService.getMatchingQueryTemplates(question, lang);
+        return answerQuestion(question, lang, Deadline.current());
+    }
+
+    /**
+     * Answers the question, giving up once the deadline has passed. The deadline is passed on to all service calls,
+     * running SPARQL queries are aborted when it passes.
+     *
+     * @throws de.uni.leipzig.tebaqa.tebaqacommons.util.DeadlineExceededException If the deadline passed before a
+     *                                                                            pipeline stage was started.
+     * @throws CancellationException If the thread was interrupted, e.g. because the client has gone away.
+     */
+    public AnswerToQuestion answerQuestion(String question, Lang lang, Deadline deadline) throws JsonProcessingException {
+        Deadline previous = Deadline.setCurrent(deadline);
+        try {
+            return answerQuestionWithinDeadline(question, lang, deadline);
+        } finally {
+            Deadline.setCurrent(previous);
+        }
+    }
+
+    private AnswerToQuestion answerQuestionWithinDeadline(String question, Lang lang, Deadline deadline) throws JsonProcessingException {
+        // 1. Template classification, entity linking and answer type detection don't depend on each other
+        long stageStart = System.currentTimeMillis();
+        // A near-duplicate of an answered question reuses its templates and linked entities
+        Optional<SimilarQuestionIndex.Match> similarQuestion = similarQuestions.find(question, lang);
+        CompletableFuture<QueryTemplateResponseBean> templatesFuture;
+        CompletableFuture<EntityLinkingResponseBean> linkingFuture;
+        if (similarQuestion.isPresent()) {
+            templatesFuture = CompletableFuture.completedFuture(similarQuestion.get().getTemplates());
+            linkingFuture = CompletableFuture.completedFuture(similarQuestion.get().getLinking());
+        } else {
+            templatesFuture = CompletableFuture.supplyAsync(Deadline.wrap(deadline,
+                    () -> templateClassificationService.getMatchingQueryTemplates(question, lang)), STAGE_EXECUTOR);
+            linkingFuture = CompletableFuture.supplyAsync(Deadline.wrap(deadline,
+                    () -> entityLinkingService.extractEntities(question, lang)), STAGE_EXECUTOR);
+        }
+        CompletableFuture<QuestionAnswerType> answerTypeFuture = CompletableFuture.supplyAsync(Deadline.wrap(deadline,
+                () -> semanticAnalysisHelper.detectQuestionAnswerType(question)), STAGE_EXECUTOR);
+
+        // The fallback templates are only needed if the first pass finds nothing, see FallbackSpeculation
+        Supplier<QueryTemplateResponseBean> allTemplates = Deadline.wrap(deadline, () -> templateClassificationService.getAllQueryTemplates(question, lang));
+        CompletableFuture<QueryTemplateResponseBean> allTemplatesFuture = null;
+        if (FALLBACK_SPECULATION != FallbackSpeculation.OFF) {
+            allTemplatesFuture = CompletableFuture.supplyAsync(allTemplates, STAGE_EXECUTOR);
+        }
+
+        QueryTemplateResponseBean matchingQueryTemplates = awaitStage("Template classification", templatesFuture,
+                stageDeadline(stageStart + CLASSIFICATION_TIMEOUT, deadline), () -> emptyTemplates(question, lang));
         printClassificationInfos(matchingQueryTemplates);
 
         boolean allTemplatesTried = false;
         if(matchingQueryTemplates.getTemplates().size() == 0) {
             LOGGER.warn("No query templates found!");
-            matchingQueryTemplates = templateClassificationService.getAllQueryTemplates(question, lang);
+            matchingQueryTemplates = awaitSpeculation("All templates", allTemplatesFuture, allTemplates);
             allTemplatesTried = true;
         }
+        final QueryTemplateResponseBean primaryTemplates = matchingQueryTemplates;
 
         // 2. Entity linking
-        EntityLinkingResponseBean entityLinkingResponse = entityLinkingService.extractEntities(question, lang);
+        EntityLinkingResponseBean entityLinkingResponse = awaitStage("Entity linking", linkingFuture,
+                stageDeadline(stageStart + LINKING_TIMEOUT, deadline), EntityLinkingResponseBean::new);
         printLinkingInfos(entityLinkingResponse);
 
+        QuestionAnswerType expectedAnswerType = awaitStage("Answer type detection", answerTypeFuture,
+                stageDeadline(stageStart + ANSWER_TYPE_TIMEOUT, deadline), () -> QuestionAnswerType.UNKNOWN_ANSWER_TYPE);
+        if (expectedAnswerType == null)
+            expectedAnswerType = QuestionAnswerType.UNKNOWN_ANSWER_TYPE;
+
+        CompletableFuture<QueryRankingResponseBean> fallbackQueriesFuture = null;
+        if (!allTemplatesTried && FALLBACK_SPECULATION == FallbackSpeculation.QUERIES) {
+            fallbackQueriesFuture = allTemplatesFuture.thenApplyAsync(all -> Deadline.wrap(deadline, () -> generateFallbackQueries(question, lang,
+                    remainingTemplates(all, primaryTemplates), entityLinkingResponse)).get(), STAGE_EXECUTOR);
+        }
+
         // 3. Query ranking
+        checkDeadline(deadline, "Query ranking");
         QueryRankingResponseBean queryRankingResponse = queryRankingService.generateQueries(question, lang, matchingQueryTemplates, entityLinkingResponse);
         printQueryRankingInfos(queryRankingResponse);
 
         Collection<RatedQuery> ratedQueries = queryRankingResponse.getGeneratedQueries();
-        ResultsetBinding resultsetBinding = this.evaluateAndSelectBestQuery(question, ratedQueries);
+        ResultsetBinding resultsetBinding = this.evaluateAndSelectBestQuery(question, ratedQueries, expectedAnswerType);
+        if (!resultsetBinding.getResult().isEmpty() && !similarQuestion.isPresent())
+            similarQuestions.add(question, lang, primaryTemplates, entityLinkingResponse);
 
         // Try all query templates if an answer is not yet found
         if(!allTemplatesTried && resultsetBinding.getResult().isEmpty()) {
             LOGGER.info("None of the queries worked, trying all other templates");
-            QueryTemplateResponseBean allQueryTemplates = templateClassificationService.getAllQueryTemplates(question, lang);
-            allQueryTemplates.getTemplates().removeAll(matchingQueryTemplates.getTemplates());
+            checkDeadline(deadline, "Fallback with all templates");
+            QueryTemplateResponseBean allQueryTemplates = remainingTemplates(awaitSpeculation("All templates", allTemplatesFuture, allTemplates), primaryTemplates);
             printClassificationInfos(allQueryTemplates);
 
             // 3. Query ranking
-            queryRankingResponse = queryRankingService.generateQueries(question, lang, allQueryTemplates, entityLinkingResponse);
+            queryRankingResponse = awaitSpeculation("Fallback query ranking", fallbackQueriesFuture,
+                    () -> generateFallbackQueries(question, lang, allQueryTemplates, entityLinkingResponse));
             printQueryRankingInfos(queryRankingResponse);
 
             ratedQueries = queryRankingResponse.getGeneratedQueries();
-            resultsetBinding = this.evaluateAndSelectBestQuery(question, ratedQueries);
+            resultsetBinding = this.evaluateAndSelectBestQuery(question, ratedQueries, expectedAnswerType);
+            if (!resultsetBinding.getResult().isEmpty() && !similarQuestion.isPresent())
+                similarQuestions.add(question, lang, allQueryTemplates, entityLinkingResponse);
+        } else {
+            // Speculative work isn't needed, the running requests can't be interrupted but their results are dropped
+            if (allTemplatesFuture != null)
+                allTemplatesFuture.cancel(true);
+            if (fallbackQueriesFuture != null)
+                fallbackQueriesFuture.cancel(true);
         }
 
         LOGGER.info("Selected query: " + resultsetBinding.getQuery());
@@ -74,22 +195,111 @@ public class OrchestrationService {
 
     }
 
-    public ResultsetBinding evaluateAndSelectBestQuery(String question, Collection<RatedQuery> ratedQueries) {
-        List<ResultsetBinding> queryResults = new ArrayList<>();
-        for (RatedQuery ratedQuery : ratedQueries) {
-            ResultsetBinding results = SPARQLUtilities.executeQuery(ratedQuery.getQuery());
-            if (!results.getResult().isEmpty()) {
-                results.setRating(ratedQuery.getRating());
-                results.setRatedQuery(ratedQuery);
-                queryResults.add(results);
+    public SimilarQuestionIndex getSimilarQuestionIndex() {
+        return similarQuestions;
+    }
+
+    private static long stageDeadline(long stageTimeout, Deadline deadline) {
+        return Math.min(stageTimeout, deadline.getExpiresAt());
+    }
+
+    /**
+     * Stops answering if the request deadline has passed or the request was cancelled.
+     */
+    private static void checkDeadline(Deadline deadline, String nextStage) {
+        if (Thread.currentThread().isInterrupted())
+            throw new CancellationException(nextStage + " not started, request was cancelled");
+        deadline.check(nextStage);
+    }
+
+    private QueryRankingResponseBean generateFallbackQueries(String question, Lang lang, QueryTemplateResponseBean templates, EntityLinkingResponseBean entityLinkingResponse) {
+        if (templates.getTemplates().isEmpty()) {
+            LOGGER.info("No other templates left to try");
+            return new QueryRankingResponseBean(new ArrayList<>());
+        }
+        return queryRankingService.generateQueries(question, lang, templates, entityLinkingResponse);
+    }
+
+    private static QueryTemplateResponseBean remainingTemplates(QueryTemplateResponseBean allTemplates, QueryTemplateResponseBean triedTemplates) {
+        QueryTemplateResponseBean remaining = new QueryTemplateResponseBean();
+        remaining.setQuestion(allTemplates.getQuestion());
+        remaining.setLang(allTemplates.getLang());
+        List<String> templates = new ArrayList<>(allTemplates.getTemplates());
+        templates.removeAll(triedTemplates.getTemplates());
+        remaining.setTemplates(templates);
+        return remaining;
+    }
+
+    /**
+     * Returns the result of speculatively started work. If nothing was started or it failed, the work is done now.
+     */
+    private static <T> T awaitSpeculation(String stage, CompletableFuture<T> future, Supplier<T> supplier) {
+        if (future != null) {
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                LOGGER.error(stage + " failed in background, retrying", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(stage + " interrupted", e);
             }
         }
+        return supplier.get();
+    }
+
+    /**
+     * Waits for a pipeline stage until the given deadline. A stage that fails or doesn't finish in time is logged
+     * and replaced by the fallback value, so one broken service doesn't fail the whole request.
+     */
+    private static <T> T awaitStage(String stage, CompletableFuture<T> future, long deadline, Supplier<T> fallback) {
+        try {
+            return future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            LOGGER.error(stage + " timed out, continuing without its result");
+        } catch (ExecutionException e) {
+            LOGGER.error(stage + " failed, continuing without its result", e.getCause());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            LOGGER.error(stage + " interrupted, continuing without its result");
+        }
+        return fallback.get();
+    }
+
+    private static QueryTemplateResponseBean emptyTemplates(String question, Lang lang) {
+        QueryTemplateResponseBean response = new QueryTemplateResponseBean();
+        response.setQuestion(question);
+        response.setLang(lang.getLanguageCode());
+        response.setTemplates(new ArrayList<>());
+        return response;
+    }
+
+    public ResultsetBinding evaluateAndSelectBestQuery(String question, Collection<RatedQuery> ratedQueries, QuestionAnswerType expectedAnswerType) {
+        List<RatedQuery> queriesToExecute = new ArrayList<>(ratedQueries);
+        if (PRUNE_BY_ANSWER_TYPE) {
+            queriesToExecute = pruneByAnswerType(queriesToExecute, expectedAnswerType);
+        }
+
+        List<RatedQuery> expensive = new ArrayList<>();
+        if (QueryCostEstimator.getInstance().isEnabled()) {
+            queriesToExecute = splitByCost(queriesToExecute, expensive, QueryCostEstimator.getInstance(), COST_BUDGET);
+            if (DROP_EXPENSIVE)
+                expensive.clear();
+        }
+
+        List<ResultsetBinding> queryResults = executeQueries(queriesToExecute, expectedAnswerType);
+        // Expensive queries only run if they can still change the selection and there's time left
+        if (!expensive.isEmpty() && !Deadline.current().isExpired() && !isSelectionFinal(queryResults, expensive, expectedAnswerType)) {
+            LOGGER.info(String.format("Executing %s deferred expensive queries", expensive.size()));
+            List<ResultsetBinding> expensiveResults = executeQueries(expensive, expectedAnswerType);
+            queryResults = inQueryOrder(ratedQueries, queryResults, expensiveResults);
+        }
 
 //        ResultsetBinding ablationResult = this.ablation(question, queryResults);
 //        if(ablationResult != null)
 //            return ablationResult;
 
-        final QuestionAnswerType expectedAnswerType = semanticAnalysisHelper.detectQuestionAnswerType(question);
         ResultsetBinding rsBinding = this.getBestAnswerNew(queryResults, expectedAnswerType, false);
         if (rsBinding.getResult().isEmpty())
             rsBinding = this.getBestAnswerNew(queryResults, expectedAnswerType, true);
@@ -98,6 +308,82 @@ public class OrchestrationService {
         return rsBinding;
     }
 
+    private List<ResultsetBinding> executeQueries(List<RatedQuery> ratedQueries, QuestionAnswerType expectedAnswerType) {
+        if (PROGRESSIVE_EVALUATION) {
+            return queryExecutor.executeProgressively(ratedQueries, EVALUATION_WAVE_SIZE,
+                    (found, pending) -> isSelectionFinal(found, pending, expectedAnswerType));
+        }
+        return queryExecutor.execute(ratedQueries, (found, pending) -> isSelectionFinal(found, pending, expectedAnswerType));
+    }
+
+    /**
+     * Moves queries whose estimated cost exceeds the budget (sparql.cost.budget), see {@link QueryCostEstimator}, to
+     * expensive.
+     *
+     * @return The other queries, in the given order.
+     */
+    static List<RatedQuery> splitByCost(List<RatedQuery> ratedQueries, List<RatedQuery> expensive,
+                                        QueryCostEstimator estimator, double budget) {
+        List<RatedQuery> affordable = new ArrayList<>(ratedQueries.size());
+        for (RatedQuery ratedQuery : ratedQueries) {
+            double cost = estimator.estimate(ratedQuery.getQuery());
+            if (cost > budget) {
+                LOGGER.debug(String.format("Estimated cost %.0f over budget: %s", cost, ratedQuery.getQuery()));
+                expensive.add(ratedQuery);
+            } else {
+                affordable.add(ratedQuery);
+            }
+        }
+        if (!expensive.isEmpty())
+            LOGGER.info(String.format("%s %s queries over the cost budget", DROP_EXPENSIVE ? "Dropping" : "Deferring", expensive.size()));
+        return affordable;
+    }
+
+    /**
+     * Merges the results of separately executed queries in the order of the queries, as if they had been executed
+     * together.
+     */
+    static List<ResultsetBinding> inQueryOrder(Collection<RatedQuery> ratedQueries, List<ResultsetBinding> results,
+                                               List<ResultsetBinding> moreResults) {
+        Map<RatedQuery, Integer> positions = new IdentityHashMap<>();
+        for (RatedQuery ratedQuery : ratedQueries) {
+            positions.putIfAbsent(ratedQuery, positions.size());
+        }
+        List<ResultsetBinding> merged = new ArrayList<>(results);
+        merged.addAll(moreResults);
+        merged.sort(Comparator.comparingInt(result -> positions.getOrDefault(result.getRatedQuery(), Integer.MAX_VALUE)));
+        return merged;
+    }
+
+    /**
+     * Removes queries whose answer type is known before execution (ASK and COUNT queries) and which can never be
+     * selected by {@link #getBestAnswerNew}, not even when a result is forced.
+     */
+    private static List<RatedQuery> pruneByAnswerType(List<RatedQuery> ratedQueries, QuestionAnswerType expectedAnswerType) {
+        Set<QuestionAnswerType> selectableTypes = getCompatibleAnswerTypes(expectedAnswerType, true);
+        List<RatedQuery> selectable = ratedQueries.stream().filter(ratedQuery -> {
+            QuestionAnswerType predictedType = AnswerTypePredictor.predict(ratedQuery.getQuery());
+            return predictedType == null || selectableTypes.contains(predictedType);
+        }).collect(Collectors.toList());
+
+        if (selectable.size() < ratedQueries.size())
+            LOGGER.info(String.format("Skipping %s queries which can't match answer type %s", ratedQueries.size() - selectable.size(), expectedAnswerType));
+        return selectable;
+    }
+
+    /**
+     * Checks whether the pending queries can still change the choice of {@link #getBestAnswerNew}. Once a result of
+     * the expected type exists, the forced selection isn't used and only queries rated at least as high as the
+     * best result can replace it (equal ratings are decided by co-occurrence length).
+     */
+    static boolean isSelectionFinal(List<ResultsetBinding> found, Collection<RatedQuery> pending, QuestionAnswerType expectedAnswerType) {
+        OptionalDouble bestRating = found.stream()
+                .filter(resultsetBinding -> resultsetBinding.getAnswerType() == expectedAnswerType)
+                .mapToDouble(ResultsetBinding::getRating)
+                .max();
+        return bestRating.isPresent() && pending.stream().allMatch(ratedQuery -> ratedQuery.getRating() < bestRating.getAsDouble());
+    }
+
 //    private ResultsetBinding ablation(String question, List<ResultsetBinding> queryResults) {
 //        // ablation
 //        if(ControllerPropertyUtils.ablationQueryRanking()) {
@@ -154,7 +440,7 @@ public class OrchestrationService {
 //        return null;
 //    }
 
-    public ResultsetBinding getBestAnswerNew(List<ResultsetBinding> results, QuestionAnswerType expectedAnswerType, boolean forceResult) {
+    static Set<QuestionAnswerType> getCompatibleAnswerTypes(QuestionAnswerType expectedAnswerType, boolean forceResult) {
         Set<QuestionAnswerType> compatibleAnswerTypes = new HashSet<>();
         compatibleAnswerTypes.add(expectedAnswerType);
         if(forceResult){
@@ -167,6 +453,11 @@ public class OrchestrationService {
                 compatibleAnswerTypes.add(QuestionAnswerType.DATE_ANSWER_TYPE);
             }
         }
+        return compatibleAnswerTypes;
+    }
+
+    public ResultsetBinding getBestAnswerNew(List<ResultsetBinding> results, QuestionAnswerType expectedAnswerType, boolean forceResult) {
+        Set<QuestionAnswerType> compatibleAnswerTypes = getCompatibleAnswerTypes(expectedAnswerType, forceResult);
 
         long answersWithExpectedTypeCount = results.stream().filter(resultsetBinding -> compatibleAnswerTypes.contains(resultsetBinding.getAnswerType())).count();
 
@@ -353,4 +644,25 @@ public class OrchestrationService {
 //        LOGGER.debug(JSONUtils.convertToJSONString(linkingResponseBean));
 
     }
+
+    /**
+     * Controls how much of the fallback pass ("all templates") is started before it is known to be needed.
+     */
+    enum FallbackSpeculation {
+        // Fetch the templates and generate the queries only if the first pass found nothing
+        OFF,
+        // Fetch all templates while the first pass runs
+        TEMPLATES,
+        // Fetch all templates and generate their queries while the first pass runs
+        QUERIES;
+
+        static FallbackSpeculation forCode(String code) {
+            for (FallbackSpeculation speculation : values()) {
+                if (speculation.name().equalsIgnoreCase(code.trim()))
+                    return speculation;
+            }
+            LOGGER.error("Unknown fallback speculation policy: " + code);
+            return OFF;
+        }
+    }
 }
@@ -0,0 +1,378 @@
+package de.uni.leipzig.tebaqa.tebaqacontroller.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.uni.leipzig.tebaqa.tebaqacommons.model.RatedQuery;
+import de.uni.leipzig.tebaqa.tebaqacommons.util.Deadline;
+import de.uni.leipzig.tebaqa.tebaqacontroller.model.ResultsetBinding;
+import de.uni.leipzig.tebaqa.tebaqacontroller.utils.BatchedQuery;
+import de.uni.leipzig.tebaqa.tebaqacontroller.utils.ControllerPropertyUtils;
+import de.uni.leipzig.tebaqa.tebaqacontroller.utils.SPARQLUtilities;
+import de.uni.leipzig.tebaqa.tebaqacontroller.utils.SparqlClient;
+import de.uni.leipzig.tebaqa.tebaqacontroller.utils.SparqlRouter;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryFactory;
+import org.apache.log4j.Logger;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * Executes generated queries in parallel against a SPARQL endpoint. The number of queries running at the same time
+ * against one endpoint is limited, results are returned in the order of the given queries. Queries still running when
+ * the deadline of the current request ({@link Deadline#current()}) passes are aborted. Queries which only differ in
+ * their IRIs are sent as one {@link BatchedQuery}, see sparql.execution.batch-size.
+ */
+public class ParallelQueryExecutor {
+
+    private static final Logger LOGGER = Logger.getLogger(ParallelQueryExecutor.class);
+
+    private static final ExecutorService QUERY_EXECUTOR = Executors.newFixedThreadPool(
+            ControllerPropertyUtils.getIntProperty("sparql.execution.threads", 64),
+            new ThreadFactoryBuilder().setNameFormat("sparql-query-%d").setDaemon(true).build());
+    private static final int MAX_CONCURRENT_PER_ENDPOINT = ControllerPropertyUtils.getIntProperty("sparql.execution.max-concurrent-per-endpoint", 8);
+    private static final Map<String, Semaphore> ENDPOINT_PERMITS = new ConcurrentHashMap<>();
+    private static final int BATCH_SIZE = ControllerPropertyUtils.getIntProperty("sparql.execution.batch-size", 16);
+
+    private final String endpoint;
+
+    public ParallelQueryExecutor() {
+        this(SPARQLUtilities.SPARQL_ENDPOINT);
+    }
+
+    public ParallelQueryExecutor(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * Executes all queries and returns the non-empty results in the order of the given queries.
+     *
+     * @param ratedQueries The queries to execute.
+     * @param isDecided    Called with the non-empty results found so far and the queries which are not finished yet.
+     *                     As soon as it returns true, all remaining queries are cancelled.
+     * @return The non-empty results with rating and rated query set.
+     */
+    public List<ResultsetBinding> execute(List<RatedQuery> ratedQueries, BiPredicate<List<ResultsetBinding>, Collection<RatedQuery>> isDecided) {
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < ratedQueries.size(); i++) {
+            positions.add(i);
+        }
+        ResultsetBinding[] resultsByPosition = new ResultsetBinding[ratedQueries.size()];
+        runWave(ratedQueries, shapesOf(ratedQueries), positions, Collections.emptyList(), resultsByPosition, new ArrayList<>(), isDecided);
+        return inPositionOrder(resultsByPosition);
+    }
+
+    /**
+     * Executes the queries in descending order of their rating, in waves of the given size. Queries which can be
+     * batched with a query of the wave are executed with it. No further wave is started once isDecided returns true
+     * for the results found so far and the queries not executed yet.
+     *
+     * @return The non-empty results with rating and rated query set, in the order of the given queries.
+     */
+    public List<ResultsetBinding> executeProgressively(List<RatedQuery> ratedQueries, int waveSize,
+                                                       BiPredicate<List<ResultsetBinding>, Collection<RatedQuery>> isDecided) {
+        List<Integer> byRating = new ArrayList<>();
+        for (int i = 0; i < ratedQueries.size(); i++) {
+            byRating.add(i);
+        }
+        byRating.sort(Comparator.comparingDouble((Integer i) -> ratedQueries.get(i).getRating()).reversed());
+
+        String[] shapes = shapesOf(ratedQueries);
+        ResultsetBinding[] resultsByPosition = new ResultsetBinding[ratedQueries.size()];
+        List<ResultsetBinding> found = new ArrayList<>();
+        int size = Math.max(1, waveSize);
+        int started = 0;
+        while (!byRating.isEmpty() && !Deadline.current().isExpired()) {
+            List<Integer> wave = nextWave(byRating, size, shapes);
+            started += wave.size();
+            List<RatedQuery> notStarted = new ArrayList<>();
+            byRating.forEach(i -> notStarted.add(ratedQueries.get(i)));
+
+            boolean decided = runWave(ratedQueries, shapes, wave, notStarted, resultsByPosition, found, isDecided);
+            if (decided || (!notStarted.isEmpty() && isDecided.test(found, notStarted))) {
+                LOGGER.info(String.format("Best query found after %s of %s queries", started, ratedQueries.size()));
+                break;
+            }
+        }
+        return inPositionOrder(resultsByPosition);
+    }
+
+    /**
+     * Removes the next wave from the positions which are not started yet. Queries of the same shape as a query of the
+     * wave are added to it, as long as their batch isn't full. This doesn't change the selected query: the results
+     * are the same as if all queries had been executed.
+     */
+    private static List<Integer> nextWave(List<Integer> notStarted, int size, String[] shapes) {
+        List<Integer> wave = new ArrayList<>(notStarted.subList(0, Math.min(size, notStarted.size())));
+        notStarted.subList(0, wave.size()).clear();
+        if (BATCH_SIZE < 2)
+            return wave;
+
+        Map<String, Integer> batchSizes = new HashMap<>();
+        wave.stream().filter(i -> shapes[i] != null).forEach(i -> batchSizes.merge(shapes[i], 1, Integer::sum));
+        for (Iterator<Integer> it = notStarted.iterator(); it.hasNext() && !batchSizes.isEmpty(); ) {
+            int position = it.next();
+            Integer batchSize = shapes[position] == null ? null : batchSizes.get(shapes[position]);
+            if (batchSize == null || batchSize % BATCH_SIZE == 0)
+                continue;
+            batchSizes.put(shapes[position], batchSize + 1);
+            wave.add(position);
+            it.remove();
+        }
+        return wave;
+    }
+
+    /**
+     * Runs the queries at the given positions in parallel and waits for them.
+     *
+     * @return true if the wave was stopped early because isDecided returned true.
+     */
+    private boolean runWave(List<RatedQuery> ratedQueries, String[] shapes, List<Integer> positions, Collection<RatedQuery> notStarted,
+                            ResultsetBinding[] resultsByPosition, List<ResultsetBinding> found,
+                            BiPredicate<List<ResultsetBinding>, Collection<RatedQuery>> isDecided) {
+        Semaphore permits = ENDPOINT_PERMITS.computeIfAbsent(endpoint, e -> new Semaphore(MAX_CONCURRENT_PER_ENDPOINT, true));
+        Deadline deadline = Deadline.current();
+        CompletionService<QueryTask> completionService = new ExecutorCompletionService<>(QUERY_EXECUTOR);
+
+        Map<QueryTask, Future<QueryTask>> pendingTasks = new LinkedHashMap<>();
+        for (List<Integer> batch : batches(positions, shapes)) {
+            List<RatedQuery> batchQueries = new ArrayList<>(batch.size());
+            batch.forEach(position -> batchQueries.add(ratedQueries.get(position)));
+            QueryTask task = new QueryTask(batch, batchQueries, permits, deadline);
+            pendingTasks.put(task, completionService.submit(task));
+        }
+
+        try {
+            while (!pendingTasks.isEmpty()) {
+                Future<QueryTask> done = completionService.poll(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+                if (done == null) {
+                    LOGGER.warn(String.format("Request deadline passed, aborting %s running queries", pendingTasks.size()));
+                    return true;
+                }
+                QueryTask task;
+                try {
+                    task = done.get();
+                } catch (ExecutionException e) {
+                    // QueryTask handles its own errors, this shouldn't happen
+                    LOGGER.error("Query execution failed", e.getCause());
+                    pendingTasks.values().remove(done);
+                    continue;
+                }
+                pendingTasks.remove(task);
+                for (int i = 0; i < task.positions.size(); i++) {
+                    ResultsetBinding result = task.getResults()[i];
+                    if (result != null && !result.getResult().isEmpty()) {
+                        resultsByPosition[task.positions.get(i)] = result;
+                        found.add(result);
+                    }
+                }
+
+                if (!pendingTasks.isEmpty()) {
+                    List<RatedQuery> pending = ratedQueriesOf(pendingTasks.keySet());
+                    pending.addAll(notStarted);
+                    if (isDecided.test(found, pending)) {
+                        LOGGER.info(String.format("Best query can't change anymore, cancelling %s pending queries", pending.size()));
+                        return true;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("Interrupted while waiting for query results");
+            return true;
+        } finally {
+            pendingTasks.keySet().forEach(QueryTask::abort);
+            pendingTasks.values().forEach(future -> future.cancel(true));
+        }
+        return false;
+    }
+
+    /**
+     * Groups positions of queries with the same shape into batches of at most sparql.execution.batch-size queries,
+     * all other queries are executed on their own.
+     */
+    private static List<List<Integer>> batches(List<Integer> positions, String[] shapes) {
+        List<List<Integer>> batches = new ArrayList<>();
+        Map<String, List<Integer>> openBatches = new HashMap<>();
+        for (int position : positions) {
+            String shape = BATCH_SIZE < 2 ? null : shapes[position];
+            if (shape == null) {
+                batches.add(Collections.singletonList(position));
+                continue;
+            }
+            List<Integer> batch = openBatches.get(shape);
+            if (batch == null || batch.size() >= BATCH_SIZE) {
+                batch = new ArrayList<>();
+                openBatches.put(shape, batch);
+                batches.add(batch);
+            }
+            batch.add(position);
+        }
+        return batches;
+    }
+
+    private static String[] shapesOf(List<RatedQuery> ratedQueries) {
+        String[] shapes = new String[ratedQueries.size()];
+        for (int i = 0; i < shapes.length; i++) {
+            try {
+                shapes[i] = BatchedQuery.shapeOf(QueryFactory.create(ratedQueries.get(i).getQuery()));
+            } catch (RuntimeException e) {
+                // Fails again when executed on its own, where it's logged
+            }
+        }
+        return shapes;
+    }
+
+    private static List<ResultsetBinding> inPositionOrder(ResultsetBinding[] resultsByPosition) {
+        List<ResultsetBinding> orderedResults = new ArrayList<>();
+        for (ResultsetBinding result : resultsByPosition) {
+            if (result != null)
+                orderedResults.add(result);
+        }
+        return orderedResults;
+    }
+
+    private static List<RatedQuery> ratedQueriesOf(Collection<QueryTask> tasks) {
+        List<RatedQuery> ratedQueries = new ArrayList<>(tasks.size());
+        tasks.forEach(task -> ratedQueries.addAll(task.ratedQueries));
+        return ratedQueries;
+    }
+
+    /**
+     * Executes one query or a batch of queries with the same shape. Queries of a batch which are cached or can't be
+     * answered by the batch are executed on their own.
+     */
+    private class QueryTask implements Callable<QueryTask> {
+        private final List<Integer> positions;
+        private final List<RatedQuery> ratedQueries;
+        private final Semaphore permits;
+        private final Deadline deadline;
+        private final ResultsetBinding[] results;
+        private volatile SparqlRouter.Execution<?> execution;
+        private volatile boolean aborted = false;
+
+        QueryTask(List<Integer> positions, List<RatedQuery> ratedQueries, Semaphore permits, Deadline deadline) {
+            this.positions = positions;
+            this.ratedQueries = ratedQueries;
+            this.permits = permits;
+            this.deadline = deadline;
+            this.results = new ResultsetBinding[ratedQueries.size()];
+        }
+
+        @Override
+        public QueryTask call() throws InterruptedException {
+            if (aborted || deadline.isExpired())
+                return this;
+            Query[] queries = new Query[ratedQueries.size()];
+            List<Integer> uncached = new ArrayList<>();
+            for (int i = 0; i < queries.length; i++) {
+                try {
+                    queries[i] = QueryFactory.create(ratedQueries.get(i).getQuery());
+                } catch (RuntimeException e) {
+                    LOGGER.error("Error while executing query: " + ratedQueries.get(i).getQuery(), e);
+                    continue;
+                }
+                // A single query is looked up when it's executed, which also waits for a running execution of it
+                if (queries.length > 1)
+                    setResult(i, QueryResultCache.getInstance().getIfPresent(endpoint, queries[i], ratedQueries.get(i).getQuery()));
+                if (results[i] == null)
+                    uncached.add(i);
+            }
+
+            if (uncached.size() > 1)
+                executeBatch(uncached, queries);
+            for (int i : uncached) {
+                if (results[i] == null && !aborted && !deadline.isExpired())
+                    executeSingle(i, queries[i]);
+            }
+            return this;
+        }
+
+        private void executeSingle(int i, Query query) throws InterruptedException {
+            RatedQuery ratedQuery = ratedQueries.get(i);
+            try {
+                setResult(i, QueryResultCache.getInstance().get(endpoint, query, ratedQuery.getQuery(), deadline,
+                        () -> execute(SparqlClient.limitResults(query, ResultsetBinding.MAX_RESULTS),
+                                qe -> SPARQLUtilities.executeQuery(ratedQuery.getQuery(), query, qe))));
+            } catch (RuntimeException e) {
+                if (!aborted && !(e instanceof CancellationException))
+                    LOGGER.error("Error while executing query: " + ratedQuery.getQuery(), e);
+            }
+        }
+
+        /**
+         * Results which the batch can't answer completely are left empty.
+         */
+        private void executeBatch(List<Integer> members, Query[] queries) {
+            List<Query> memberQueries = new ArrayList<>(members.size());
+            List<String> memberQueryStrings = new ArrayList<>(members.size());
+            for (int i : members) {
+                memberQueries.add(queries[i]);
+                memberQueryStrings.add(ratedQueries.get(i).getQuery());
+            }
+            BatchedQuery batch = BatchedQuery.create(memberQueries);
+            long start = System.currentTimeMillis();
+            List<ResultsetBinding> batchResults;
+            try {
+                batchResults = execute(batch.getQuery(), qe -> batch.execute(memberQueryStrings, qe));
+            } catch (RuntimeException e) {
+                if (!aborted && !(e instanceof CancellationException))
+                    LOGGER.error(String.format("Error while executing batch of %s queries, executing them one by one: %s", members.size(), batch.getQuery()), e);
+                return;
+            }
+
+            long millis = (System.currentTimeMillis() - start) / members.size();
+            for (int m = 0; m < members.size(); m++) {
+                ResultsetBinding result = batchResults.get(m);
+                if (result == null)
+                    continue;
+                int i = members.get(m);
+                QueryResultCache.getInstance().put(endpoint, queries[i], result, millis);
+                setResult(i, result);
+            }
+        }
+
+        // Only queries which are sent to the endpoint take one of its permits, cached results don't
+        private <T> T execute(Query query, Function<QueryExecution, T> read) {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted while waiting for the endpoint");
+            }
+            try {
+                if (aborted || deadline.isExpired())
+                    throw new CancellationException("Query not needed anymore");
+                SparqlRouter.Execution<T> routed = SparqlRouter.forEndpoint(endpoint).newExecution(query, read);
+                execution = routed;
+                // Aborted while the execution was created
+                if (aborted)
+                    throw new CancellationException("Query not needed anymore");
+                return routed.run(SparqlRouter.timeoutFor(deadline));
+            } finally {
+                permits.release();
+            }
+        }
+
+        private void setResult(int i, ResultsetBinding result) {
+            if (result == null)
+                return;
+            result.setRating(ratedQueries.get(i).getRating());
+            result.setRatedQuery(ratedQueries.get(i));
+            results[i] = result;
+        }
+
+        void abort() {
+            aborted = true;
+            SparqlRouter.Execution<?> running = execution;
+            if (running != null)
+                running.abort();
+        }
+
+        ResultsetBinding[] getResults() {
+            return results;
+        }
+    }
+}
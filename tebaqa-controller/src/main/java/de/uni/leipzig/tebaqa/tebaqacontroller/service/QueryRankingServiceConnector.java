@@ -5,18 +5,25 @@ import de.uni.leipzig.tebaqa.tebaqacommons.model.QueryRankingRequestBody;
 import de.uni.leipzig.tebaqa.tebaqacommons.model.QueryRankingResponseBean;
 import de.uni.leipzig.tebaqa.tebaqacommons.model.QueryTemplateResponseBean;
 import de.uni.leipzig.tebaqa.tebaqacommons.nlp.Lang;
+import de.uni.leipzig.tebaqa.tebaqacommons.pipeline.QueryRanker;
 import de.uni.leipzig.tebaqa.tebaqacontroller.utils.ControllerPropertyUtils;
 import org.springframework.http.ResponseEntity;
 
 import java.util.HashSet;
 
-public class QueryRankingServiceConnector extends AbstractServiceConnector {
+public class QueryRankingServiceConnector extends AbstractServiceConnector implements QueryRanker {
+
+    private static final boolean BINARY_PAYLOADS = ControllerPropertyUtils.getBooleanProperty("query.ranking.binary-payloads", true);
+
+    @Override
     public QueryRankingResponseBean generateQueries(String question, Lang language, QueryTemplateResponseBean queryTemplates, EntityLinkingResponseBean linkedResources) {
         String serviceUrl = ControllerPropertyUtils.getQueryRankingServiceUrl();
 
         QueryRankingRequestBody requestBody = new QueryRankingRequestBody(question, language.getLanguageCode(), new HashSet<>(queryTemplates.getTemplates()), linkedResources);
 
-        ResponseEntity<QueryRankingResponseBean> responseEntity = this.connectPostJson(serviceUrl, requestBody, QueryRankingResponseBean.class);
+        ResponseEntity<QueryRankingResponseBean> responseEntity = BINARY_PAYLOADS
+                ? this.connectPostBinary(serviceUrl, requestBody, QueryRankingResponseBean.class)
+                : this.connectPostJson(serviceUrl, requestBody, QueryRankingResponseBean.class);
         return responseEntity.getBody();
     }
 
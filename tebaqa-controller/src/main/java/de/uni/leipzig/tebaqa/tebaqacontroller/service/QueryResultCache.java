@@ -0,0 +1,232 @@
+package de.uni.leipzig.tebaqa.tebaqacontroller.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import de.uni.leipzig.tebaqa.tebaqacommons.model.QuestionAnswerType;
+import de.uni.leipzig.tebaqa.tebaqacommons.util.Deadline;
+import de.uni.leipzig.tebaqa.tebaqacommons.util.DeadlineExceededException;
+import de.uni.leipzig.tebaqa.tebaqacontroller.model.ResultsetBinding;
+import de.uni.leipzig.tebaqa.tebaqacontroller.utils.ControllerPropertyUtils;
+import org.apache.jena.query.Query;
+import org.apache.jena.shared.impl.PrefixMappingImpl;
+import org.apache.log4j.Logger;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of SPARQL query results, keyed by the endpoint and the query as serialized by Jena with full IRIs, so
+ * formatting and prefix differences don't matter. Empty results are cached as well. Identical queries which are
+ * executed at the same time are sent only once, the other callers wait for that execution.
+ */
+public class QueryResultCache {
+
+    private static final Logger LOGGER = Logger.getLogger(QueryResultCache.class);
+    private static final QueryResultCache INSTANCE = new QueryResultCache();
+
+    private final boolean enabled;
+    private final Cache<String, CachedResult> cache;
+    private final Map<String, CompletableFuture<CachedResult>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong savedMillis = new AtomicLong();
+
+    public QueryResultCache() {
+        this(ControllerPropertyUtils.getBooleanProperty("sparql.cache.enabled", true),
+                ControllerPropertyUtils.getLongProperty("sparql.cache.max-size", 50000),
+                ControllerPropertyUtils.getLongProperty("sparql.cache.ttl-minutes", 60));
+    }
+
+    public QueryResultCache(boolean enabled, long maxSize, long ttlMinutes) {
+        this.enabled = enabled;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlMinutes, TimeUnit.MINUTES)
+                .build();
+    }
+
+    /**
+     * @return The cache shared by all query executions of the controller.
+     */
+    public static QueryResultCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the cached result of the query or executes it. If the same query is already being executed, waits for
+     * that execution until the deadline passes. If that execution fails, e.g. because it was aborted by its own
+     * request, the query is executed again.
+     *
+     * @param endpoint    The SPARQL endpoint.
+     * @param query       The parsed query, used for the cache key.
+     * @param queryString The query as given by the caller, set as query of the returned result.
+     * @param deadline    The deadline of the calling request.
+     * @param executor    Executes the query, exceptions aren't cached.
+     * @return A result which belongs to the caller, it may be modified.
+     * @throws DeadlineExceededException If the deadline passes while waiting for the same query.
+     * @throws InterruptedException      If interrupted while waiting for the same query.
+     */
+    public ResultsetBinding get(String endpoint, Query query, String queryString, Deadline deadline,
+                                Supplier<ResultsetBinding> executor) throws InterruptedException {
+        if (!enabled)
+            return executor.get();
+
+        String key = key(endpoint, query);
+        CachedResult cached = cache.getIfPresent(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            savedMillis.addAndGet(cached.executionMillis);
+            return cached.toBinding(queryString);
+        }
+
+        CompletableFuture<CachedResult> flight = new CompletableFuture<>();
+        CompletableFuture<CachedResult> running = inFlight.putIfAbsent(key, flight);
+        if (running != null)
+            return await(running, queryString, deadline, executor);
+
+        try {
+            // Finished between the cache lookup and registering this execution
+            cached = cache.getIfPresent(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                savedMillis.addAndGet(cached.executionMillis);
+                flight.complete(cached);
+                return cached.toBinding(queryString);
+            }
+
+            misses.incrementAndGet();
+            long start = System.currentTimeMillis();
+            ResultsetBinding result = executor.get();
+            CachedResult computed = new CachedResult(result, System.currentTimeMillis() - start);
+            cache.put(key, computed);
+            flight.complete(computed);
+            return result;
+        } finally {
+            if (!flight.isDone())
+                flight.completeExceptionally(new CancellationException("Query execution failed"));
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * Returns the cached result of the query without executing it or waiting for an execution.
+     *
+     * @return A result which belongs to the caller or null.
+     */
+    public ResultsetBinding getIfPresent(String endpoint, Query query, String queryString) {
+        if (!enabled)
+            return null;
+        CachedResult cached = cache.getIfPresent(key(endpoint, query));
+        if (cached == null)
+            return null;
+        hits.incrementAndGet();
+        savedMillis.addAndGet(cached.executionMillis);
+        return cached.toBinding(queryString);
+    }
+
+    /**
+     * Caches the result of a query which was executed by the caller, e.g. as part of a batch.
+     *
+     * @param executionMillis The execution time attributed to this query.
+     */
+    public void put(String endpoint, Query query, ResultsetBinding result, long executionMillis) {
+        if (!enabled)
+            return;
+        misses.incrementAndGet();
+        cache.put(key(endpoint, query), new CachedResult(result, executionMillis));
+    }
+
+    /**
+     * Serializes a copy of the query without its prefixes, so all IRIs are written in full.
+     */
+    static String key(String endpoint, Query query) {
+        Query withoutPrefixes = query.cloneQuery();
+        withoutPrefixes.setPrefixMapping(new PrefixMappingImpl());
+        return endpoint + "\n" + withoutPrefixes.serialize();
+    }
+
+    private ResultsetBinding await(CompletableFuture<CachedResult> running, String queryString, Deadline deadline,
+                                   Supplier<ResultsetBinding> executor) throws InterruptedException {
+        CachedResult shared;
+        try {
+            shared = running.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            LOGGER.debug("Shared execution failed, executing query again: " + queryString);
+            misses.incrementAndGet();
+            return executor.get();
+        } catch (TimeoutException e) {
+            throw new DeadlineExceededException("Request deadline passed while waiting for query: " + queryString);
+        }
+        coalesced.incrementAndGet();
+        savedMillis.addAndGet(shared.executionMillis);
+        return shared.toBinding(queryString);
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return The number of executions saved because the same query was already running.
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return The execution time of the original executions summed over all hits and coalesced requests.
+     */
+    public long getSavedMillis() {
+        return savedMillis.get();
+    }
+
+    public double getHitRate() {
+        long served = hits.get() + coalesced.get();
+        long total = served + misses.get();
+        return total == 0 ? 0 : (double) served / total;
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private static class CachedResult {
+        private final Set<String> result;
+        private final QuestionAnswerType answerType;
+        private final long executionMillis;
+
+        CachedResult(ResultsetBinding binding, long executionMillis) {
+            this.result = Collections.unmodifiableSet(new HashSet<>(binding.getResult()));
+            this.answerType = binding.getAnswerType();
+            this.executionMillis = executionMillis;
+        }
+
+        ResultsetBinding toBinding(String queryString) {
+            ResultsetBinding binding = new ResultsetBinding();
+            // Already normalized by ResultsetBinding#addResult
+            binding.getResult().addAll(result);
+            binding.setQuery(queryString);
+            binding.setAnswerType(answerType);
+            return binding;
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package de.uni.leipzig.tebaqa.tebaqacontroller.service;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import de.uni.leipzig.tebaqa.tebaqacommons.model.EntityLinkingResponseBean;
+import de.uni.leipzig.tebaqa.tebaqacommons.model.QueryTemplateResponseBean;
+import de.uni.leipzig.tebaqa.tebaqacommons.model.ResourceCandidate;
+import de.uni.leipzig.tebaqa.tebaqacommons.nlp.Lang;
+import de.uni.leipzig.tebaqa.tebaqacontroller.utils.ControllerPropertyUtils;
+import org.apache.log4j.Logger;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory MinHash/LSH index over the token shingles of answered questions. For a near-duplicate of an answered
+ * question, the stored query templates and entity linking result can be reused instead of calling the services again.
+ */
+public class SimilarQuestionIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(SimilarQuestionIndex.class);
+    private static final HashFunction SHINGLE_HASH = Hashing.murmur3_128();
+    // Mersenne prime 2^61 - 1 for the universal hash functions
+    private static final long PRIME = (1L << 61) - 1;
+
+    private final boolean enabled;
+    private final int shingleSize;
+    private final int bands;
+    private final int rows;
+    private final double minSimilarity;
+    private final long[] hashA;
+    private final long[] hashB;
+
+    private final LinkedHashMap<Long, IndexedQuestion> questions;
+    private final List<Map<String, Set<Long>>> buckets;
+    private long nextId = 0;
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public SimilarQuestionIndex() {
+        this(ControllerPropertyUtils.getBooleanProperty("similar.questions.enabled", true),
+                ControllerPropertyUtils.getIntProperty("similar.questions.max-size", 10000),
+                ControllerPropertyUtils.getIntProperty("similar.questions.shingle-size", 2),
+                ControllerPropertyUtils.getIntProperty("similar.questions.bands", 16),
+                ControllerPropertyUtils.getIntProperty("similar.questions.rows", 4),
+                Double.parseDouble(ControllerPropertyUtils.getProperty("similar.questions.min-similarity", "0.85")));
+    }
+
+    public SimilarQuestionIndex(boolean enabled, int maxSize, int shingleSize, int bands, int rows, double minSimilarity) {
+        this.enabled = enabled;
+        this.shingleSize = Math.max(1, shingleSize);
+        this.bands = bands;
+        this.rows = rows;
+        this.minSimilarity = minSimilarity;
+
+        Random random = new Random(42);
+        this.hashA = new long[bands * rows];
+        this.hashB = new long[bands * rows];
+        for (int i = 0; i < hashA.length; i++) {
+            hashA[i] = 1 + random.nextInt(Integer.MAX_VALUE);
+            hashB[i] = Math.floorMod(random.nextLong(), PRIME);
+        }
+
+        this.buckets = new ArrayList<>(bands);
+        for (int i = 0; i < bands; i++) {
+            buckets.add(new HashMap<>());
+        }
+        this.questions = new LinkedHashMap<Long, IndexedQuestion>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, IndexedQuestion> eldest) {
+                if (size() > maxSize) {
+                    removeFromBuckets(eldest.getKey(), eldest.getValue());
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Finds the most similar answered question, if its Jaccard similarity reaches the configured minimum and the
+     * mentions linked for it, i.e. the co-occurrences of its entities, properties and classes, occur unchanged in
+     * the given question: no token which only one of the questions has may be inside or next to a mention.
+     */
+    public synchronized Optional<Match> find(String question, Lang lang) {
+        if (!enabled)
+            return Optional.empty();
+        lookups.incrementAndGet();
+
+        String normalized = AnswerCache.normalize(question);
+        Set<String> shingles = shingles(normalized);
+        if (shingles.isEmpty())
+            return Optional.empty();
+        long[] signature = signature(shingles);
+
+        Set<Long> candidates = new HashSet<>();
+        for (int band = 0; band < bands; band++) {
+            Set<Long> bucket = buckets.get(band).get(bandKey(lang, signature, band));
+            if (bucket != null)
+                candidates.addAll(bucket);
+        }
+
+        IndexedQuestion best = null;
+        double bestSimilarity = 0;
+        for (Long id : candidates) {
+            IndexedQuestion candidate = questions.get(id);
+            double similarity = jaccard(shingles, candidate.shingles);
+            if (similarity >= minSimilarity && similarity > bestSimilarity && mentionsMatch(candidate.linking, AnswerCache.normalize(candidate.question), normalized)) {
+                best = candidate;
+                bestSimilarity = similarity;
+            }
+        }
+        if (best == null)
+            return Optional.empty();
+
+        hits.incrementAndGet();
+        LOGGER.info(String.format("Question is similar (%.2f) to answered question '%s'", bestSimilarity, best.question));
+        return Optional.of(new Match(best.question, bestSimilarity, best.templates, best.linking));
+    }
+
+    public synchronized void add(String question, Lang lang, QueryTemplateResponseBean templates, EntityLinkingResponseBean linking) {
+        if (!enabled)
+            return;
+        String normalized = AnswerCache.normalize(question);
+        Set<String> shingles = shingles(normalized);
+        if (shingles.isEmpty())
+            return;
+
+        long id = nextId++;
+        IndexedQuestion indexed = new IndexedQuestion(lang, question, shingles, signature(shingles), templates, linking);
+        for (int band = 0; band < bands; band++) {
+            buckets.get(band).computeIfAbsent(bandKey(lang, indexed.signature, band), k -> new HashSet<>()).add(id);
+        }
+        questions.put(id, indexed);
+    }
+
+    public synchronized int size() {
+        return questions.size();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getLookupCount() {
+        return lookups.get();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    private void removeFromBuckets(long id, IndexedQuestion indexed) {
+        for (int band = 0; band < bands; band++) {
+            String key = bandKey(indexed.lang, indexed.signature, band);
+            Set<Long> bucket = buckets.get(band).get(key);
+            if (bucket != null) {
+                bucket.remove(id);
+                if (bucket.isEmpty())
+                    buckets.get(band).remove(key);
+            }
+        }
+    }
+
+    private Set<String> shingles(String normalizedQuestion) {
+        String[] tokens = tokens(normalizedQuestion);
+        Set<String> shingles = new HashSet<>();
+        if (tokens.length > 0 && tokens.length < shingleSize) {
+            shingles.add(normalizedQuestion);
+        }
+        for (int i = 0; i + shingleSize <= tokens.length; i++) {
+            shingles.add(String.join(" ", Arrays.copyOfRange(tokens, i, i + shingleSize)));
+        }
+        return shingles;
+    }
+
+    private long[] signature(Set<String> shingles) {
+        long[] signature = new long[hashA.length];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        for (String shingle : shingles) {
+            // 31 bit shingle hash, so a * x + b can't overflow
+            long x = SHINGLE_HASH.hashString(shingle, Charsets.UTF_8).asInt() & 0x7fffffffL;
+            for (int i = 0; i < signature.length; i++) {
+                long hash = (hashA[i] * x + hashB[i]) % PRIME;
+                if (hash < signature[i])
+                    signature[i] = hash;
+            }
+        }
+        return signature;
+    }
+
+    private String bandKey(Lang lang, long[] signature, int band) {
+        StringBuilder key = new StringBuilder(lang.getLanguageCode());
+        for (int row = 0; row < rows; row++) {
+            key.append(':').append(signature[band * rows + row]);
+        }
+        return key.toString();
+    }
+
+    private static double jaccard(Set<String> a, Set<String> b) {
+        int intersection = 0;
+        for (String shingle : a) {
+            if (b.contains(shingle))
+                intersection++;
+        }
+        int union = a.size() + b.size() - intersection;
+        return union == 0 ? 0 : (double) intersection / union;
+    }
+
+    // Near-duplicates like "... of Berlin" and "... of Paris" or "... of New York" and "... of New York City" must not
+    // share the entity linking result
+    private static boolean mentionsMatch(EntityLinkingResponseBean linking, String normalizedIndexed, String normalizedQuestion) {
+        String[] indexed = tokens(normalizedIndexed);
+        String[] question = tokens(normalizedQuestion);
+        boolean[][] changed = changedTokens(indexed, question);
+
+        List<ResourceCandidate> linked = new ArrayList<>();
+        linked.addAll(linking.getEntityCandidates());
+        linked.addAll(linking.getLiteralCandidates());
+        linked.addAll(linking.getPropertyCandidates());
+        linked.addAll(linking.getClassCandidates());
+        for (ResourceCandidate candidate : linked) {
+            String[] mention = candidate.getCoOccurrence() == null ? new String[0] : tokens(AnswerCache.normalize(candidate.getCoOccurrence()));
+            if (mention.length == 0)
+                continue;
+            if (!occursUnchanged(mention, indexed, changed[0]) || !occursUnchanged(mention, question, changed[1]))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Marks the tokens of both questions which are not part of their longest common subsequence.
+     */
+    private static boolean[][] changedTokens(String[] a, String[] b) {
+        int[][] common = new int[a.length + 1][b.length + 1];
+        for (int i = a.length - 1; i >= 0; i--) {
+            for (int j = b.length - 1; j >= 0; j--) {
+                common[i][j] = a[i].equals(b[j]) ? common[i + 1][j + 1] + 1 : Math.max(common[i + 1][j], common[i][j + 1]);
+            }
+        }
+        boolean[] changedA = new boolean[a.length];
+        boolean[] changedB = new boolean[b.length];
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i].equals(b[j])) {
+                i++;
+                j++;
+            } else if (common[i + 1][j] >= common[i][j + 1]) {
+                changedA[i++] = true;
+            } else {
+                changedB[j++] = true;
+            }
+        }
+        Arrays.fill(changedA, i, a.length, true);
+        Arrays.fill(changedB, j, b.length, true);
+        return new boolean[][]{changedA, changedB};
+    }
+
+    // Every occurrence of the mention counts, a changed token next to any of them may change what it refers to
+    private static boolean occursUnchanged(String[] mention, String[] tokens, boolean[] changed) {
+        boolean found = false;
+        for (int start = 0; start + mention.length <= tokens.length; start++) {
+            if (!Arrays.equals(mention, Arrays.copyOfRange(tokens, start, start + mention.length)))
+                continue;
+            found = true;
+            for (int k = Math.max(0, start - 1); k <= Math.min(tokens.length - 1, start + mention.length); k++) {
+                if (changed[k])
+                    return false;
+            }
+        }
+        return found;
+    }
+
+    private static String[] tokens(String normalized) {
+        return normalized.isEmpty() ? new String[0] : normalized.split(" ");
+    }
+
+    private static class IndexedQuestion {
+        private final Lang lang;
+        private final String question;
+        private final Set<String> shingles;
+        private final long[] signature;
+        private final QueryTemplateResponseBean templates;
+        private final EntityLinkingResponseBean linking;
+
+        IndexedQuestion(Lang lang, String question, Set<String> shingles, long[] signature,
+                        QueryTemplateResponseBean templates, EntityLinkingResponseBean linking) {
+            this.lang = lang;
+            this.question = question;
+            this.shingles = shingles;
+            this.signature = signature;
+            this.templates = templates;
+            this.linking = linking;
+        }
+    }
+
+    public static class Match {
+        private final String question;
+        private final double similarity;
+        private final QueryTemplateResponseBean templates;
+        private final EntityLinkingResponseBean linking;
+
+        Match(String question, double similarity, QueryTemplateResponseBean templates, EntityLinkingResponseBean linking) {
+            this.question = question;
+            this.similarity = similarity;
+            this.templates = templates;
+            this.linking = linking;
+        }
+
+        public String getQuestion() {
+            return question;
+        }
+
+        public double getSimilarity() {
+            return similarity;
+        }
+
+        public QueryTemplateResponseBean getTemplates() {
+            return templates;
+        }
+
+        public EntityLinkingResponseBean getLinking() {
+            return linking;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package de.uni.leipzig.tebaqa.tebaqacontroller.service;
 
 import de.uni.leipzig.tebaqa.tebaqacommons.model.QueryTemplateResponseBean;
 import de.uni.leipzig.tebaqa.tebaqacommons.nlp.Lang;
+import de.uni.leipzig.tebaqa.tebaqacommons.pipeline.TemplateClassifier;
 import de.uni.leipzig.tebaqa.tebaqacontroller.utils.ControllerPropertyUtils;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.LinkedMultiValueMap;
@@ -10,8 +11,9 @@ import org.springframework.util.MultiValueMap;
 
 import java.util.List;
 
-public class TemplateClassificationServiceConnector extends AbstractServiceConnector {
+public class TemplateClassificationServiceConnector extends AbstractServiceConnector implements TemplateClassifier {
 
+    @Override
     public QueryTemplateResponseBean getMatchingQueryTemplates(String question, Lang language) {
 //        if(ControllerPropertyUtils.ablationClassification()) {
 //            return ablation(question, language);
@@ -35,6 +37,7 @@ public class TemplateClassificationServiceConnector extends AbstractServiceConne
 //        return response;
 //    }
 
+    @Override
     public QueryTemplateResponseBean getAllQueryTemplates(String question, Lang lang) {
 //        if(ControllerPropertyUtils.ablationClassification()) {
 //            return ablation(question, lang);
@@ -0,0 +1,54 @@
+package de.uni.leipzig.tebaqa.tebaqacontroller.utils;
+
+import de.uni.leipzig.tebaqa.tebaqacommons.model.QuestionAnswerType;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryException;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.expr.Expr;
+import org.apache.jena.sparql.expr.ExprAggregator;
+import org.apache.jena.sparql.expr.aggregate.*;
+import org.apache.log4j.Logger;
+
+/**
+ * Predicts the answer type of a generated query from its structure, without executing it.
+ */
+public class AnswerTypePredictor {
+
+    private static final Logger LOGGER = Logger.getLogger(AnswerTypePredictor.class);
+
+    /**
+     * Predicts the {@link QuestionAnswerType} a query's result will have, see
+     * {@link SPARQLUtilities#executeQuery(String)}.
+     *
+     * @param queryString The SPARQL query.
+     * @return {@link QuestionAnswerType#BOOLEAN_ANSWER_TYPE} for ASK queries, {@link QuestionAnswerType#NUMBER_ANSWER_TYPE}
+     * for queries selecting a COUNT and null if the answer type depends on the result.
+     */
+    public static QuestionAnswerType predict(String queryString) {
+        Query query;
+        try {
+            query = QueryFactory.create(queryString);
+        } catch (QueryException e) {
+            LOGGER.debug("Unable to parse query for answer type prediction: " + queryString);
+            return null;
+        }
+
+        if (query.isAskType()) {
+            return QuestionAnswerType.BOOLEAN_ANSWER_TYPE;
+        }
+        if (query.isSelectType() && !query.getResultVars().isEmpty()) {
+            // Only the first result variable is used as answer
+            Expr expr = query.getProject().getExpr(Var.alloc(query.getResultVars().get(0)));
+            if (expr instanceof ExprAggregator && isCount(((ExprAggregator) expr).getAggregator())) {
+                return QuestionAnswerType.NUMBER_ANSWER_TYPE;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isCount(Aggregator aggregator) {
+        return aggregator instanceof AggCount || aggregator instanceof AggCountDistinct
+                || aggregator instanceof AggCountVar || aggregator instanceof AggCountVarDistinct;
+    }
+}
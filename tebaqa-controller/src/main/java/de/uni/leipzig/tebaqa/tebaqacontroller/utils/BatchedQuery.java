@@ -0,0 +1,198 @@
+package de.uni.leipzig.tebaqa.tebaqacontroller.utils;
+
+import de.uni.leipzig.tebaqa.tebaqacontroller.model.ResultsetBinding;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.*;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.sparql.core.PathBlock;
+import org.apache.jena.sparql.core.TriplePath;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.engine.binding.BindingFactory;
+import org.apache.jena.sparql.engine.binding.BindingMap;
+import org.apache.jena.sparql.syntax.Element;
+import org.apache.jena.sparql.syntax.ElementData;
+import org.apache.jena.sparql.syntax.ElementGroup;
+import org.apache.jena.sparql.syntax.ElementPathBlock;
+import org.apache.jena.sparql.util.FmtUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Several SELECT queries which only differ in the IRIs of their triple patterns, executed as one query. The IRIs which
+ * differ are bound by a VALUES block together with the index of their query, which splits the results again:
+ * <pre>
+ * SELECT DISTINCT ?batchIndex ?uri WHERE { VALUES (?batchIndex ?batchSlot0) { (0 &lt;a&gt;) (1 &lt;b&gt;) } ?uri &lt;p&gt; ?batchSlot0 }
+ * </pre>
+ */
+public class BatchedQuery {
+
+    private static final Var INDEX_VAR = Var.alloc("batchIndex");
+    private static final String SLOT_VAR_PREFIX = "batchSlot";
+
+    private final Query query;
+    private final String resultVar;
+    private final int size;
+
+    private BatchedQuery(Query query, String resultVar, int size) {
+        this.query = query;
+        this.resultVar = resultVar;
+        this.size = size;
+    }
+
+    /**
+     * Queries with the same shape can be batched. Only SELECT queries with one result variable and a group of plain
+     * triple patterns have a shape, without modifiers except DISTINCT.
+     *
+     * @return The triple patterns with IRIs left out or null if the query can't be batched.
+     */
+    public static String shapeOf(Query query) {
+        if (!query.isSelectType() || query.getResultVars().size() != 1 || !query.getProject().getExprs().isEmpty()
+                || query.hasAggregators() || query.hasGroupBy() || query.hasHaving() || query.hasOrderBy()
+                || query.hasLimit() || query.hasOffset() || query.hasValues())
+            return null;
+        List<Triple> triples = triplesOf(query);
+        if (triples == null)
+            return null;
+
+        StringBuilder shape = new StringBuilder(query.isDistinct() ? "DISTINCT " : "")
+                .append(query.getResultVars().get(0)).append(" {");
+        for (Triple triple : triples) {
+            for (Node node : nodesOf(triple)) {
+                if (node.isVariable() && (node.equals(INDEX_VAR) || node.getName().startsWith(SLOT_VAR_PREFIX)))
+                    return null;
+                shape.append(' ').append(node.isURI() ? "<>" : FmtUtils.stringForNode(node));
+            }
+            shape.append(" .");
+        }
+        return shape.append(" }").toString();
+    }
+
+    /**
+     * @param queries At least one query, all of the same {@link #shapeOf shape}.
+     */
+    public static BatchedQuery create(List<Query> queries) {
+        List<List<Triple>> triplesByQuery = new ArrayList<>(queries.size());
+        queries.forEach(query -> triplesByQuery.add(triplesOf(query)));
+        List<Triple> first = triplesByQuery.get(0);
+
+        ElementData values = new ElementData();
+        values.add(INDEX_VAR);
+        List<BindingMap> rows = new ArrayList<>(queries.size());
+        for (int i = 0; i < queries.size(); i++) {
+            BindingMap row = BindingFactory.create();
+            row.add(INDEX_VAR, NodeFactory.createLiteral(String.valueOf(i), XSDDatatype.XSDinteger));
+            rows.add(row);
+        }
+
+        ElementPathBlock patterns = new ElementPathBlock();
+        for (int t = 0; t < first.size(); t++) {
+            Node[] nodes = nodesOf(first.get(t));
+            for (int n = 0; n < nodes.length; n++) {
+                if (!nodes[n].isURI() || !varies(triplesByQuery, t, n))
+                    continue;
+                Var slot = Var.alloc(SLOT_VAR_PREFIX + (values.getVars().size() - 1));
+                values.add(slot);
+                for (int i = 0; i < queries.size(); i++) {
+                    rows.get(i).add(slot, nodesOf(triplesByQuery.get(i).get(t))[n]);
+                }
+                nodes[n] = slot;
+            }
+            patterns.addTriple(Triple.create(nodes[0], nodes[1], nodes[2]));
+        }
+        rows.forEach(values::add);
+
+        ElementGroup pattern = new ElementGroup();
+        pattern.addElement(values);
+        pattern.addElement(patterns);
+
+        String resultVar = queries.get(0).getResultVars().get(0);
+        Query batch = new Query();
+        batch.setQuerySelectType();
+        batch.setDistinct(true);
+        batch.addResultVar(INDEX_VAR);
+        batch.addResultVar(resultVar);
+        batch.setQueryPattern(pattern);
+        // Every query could have MAX_RESULTS results, if all rows are read no query is cut off
+        batch.setLimit((long) ResultsetBinding.MAX_RESULTS * queries.size());
+        return new BatchedQuery(batch, resultVar, queries.size());
+    }
+
+    public Query getQuery() {
+        return query;
+    }
+
+    /**
+     * Executes the batch and splits its results, like {@link SPARQLUtilities#executeQuery(String, Query, QueryExecution)}
+     * does for a single query. If the limit of the batch was reached, the results of queries with less than
+     * {@link ResultsetBinding#MAX_RESULTS} results may be incomplete, they are returned as null.
+     *
+     * @param queryStrings The queries of the batch in the order it was created with.
+     * @return The results in the order of the queries.
+     */
+    public List<ResultsetBinding> execute(List<String> queryStrings, QueryExecution qe) {
+        List<ResultsetBinding> results = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            results.add(new ResultsetBinding());
+        }
+
+        long rows = 0;
+        try {
+            ResultSet rs = qe.execSelect();
+            while (rs.hasNext()) {
+                QuerySolution solution = rs.nextSolution();
+                rows++;
+                RDFNode v = solution.get(resultVar);
+                if (v == null)
+                    continue;
+                ResultsetBinding b = results.get(solution.getLiteral(INDEX_VAR.getVarName()).getInt());
+                if (b.getResult().size() >= ResultsetBinding.MAX_RESULTS)
+                    continue;
+                b.addResult(v);
+            }
+        } finally {
+            qe.close();
+        }
+
+        boolean cutOff = rows >= query.getLimit();
+        for (int i = 0; i < size; i++) {
+            ResultsetBinding b = results.get(i);
+            if (cutOff && b.getResult().size() < ResultsetBinding.MAX_RESULTS) {
+                results.set(i, null);
+                continue;
+            }
+            b.setQuery(queryStrings.get(i));
+            b.setAnswerType(SPARQLUtilities.determineAnswerType(b));
+        }
+        return results;
+    }
+
+    private static boolean varies(List<List<Triple>> triplesByQuery, int triple, int node) {
+        Node first = nodesOf(triplesByQuery.get(0).get(triple))[node];
+        return triplesByQuery.stream().anyMatch(triples -> !nodesOf(triples.get(triple))[node].equals(first));
+    }
+
+    private static Node[] nodesOf(Triple triple) {
+        return new Node[]{triple.getSubject(), triple.getPredicate(), triple.getObject()};
+    }
+
+    private static List<Triple> triplesOf(Query query) {
+        if (!(query.getQueryPattern() instanceof ElementGroup))
+            return null;
+        List<Triple> triples = new ArrayList<>();
+        for (Element element : ((ElementGroup) query.getQueryPattern()).getElements()) {
+            if (!(element instanceof ElementPathBlock))
+                return null;
+            PathBlock block = ((ElementPathBlock) element).getPattern();
+            for (TriplePath path : block.getList()) {
+                if (!path.isTriple())
+                    return null;
+                triples.add(path.asTriple());
+            }
+        }
+        return triples.isEmpty() ? null : triples;
+    }
+}
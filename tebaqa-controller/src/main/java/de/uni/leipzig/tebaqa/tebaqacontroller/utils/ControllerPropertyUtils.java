@@ -29,6 +29,41 @@ public class ControllerPropertyUtils {
         return ALL_PROPERTIES.getProperty(key);
     }
 
+    public static String getProperty(@Nonnull String key, String defaultValue) {
+        return ALL_PROPERTIES.getProperty(key, defaultValue);
+    }
+
+    public static int getIntProperty(@Nonnull String key, int defaultValue) {
+        String value = ALL_PROPERTIES.getProperty(key);
+        if (value == null || value.trim().isEmpty())
+            return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            LOGGER.error(String.format("Invalid integer value '%s' for property %s, using default %s", value, key, defaultValue));
+            return defaultValue;
+        }
+    }
+
+    public static long getLongProperty(@Nonnull String key, long defaultValue) {
+        String value = ALL_PROPERTIES.getProperty(key);
+        if (value == null || value.trim().isEmpty())
+            return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            LOGGER.error(String.format("Invalid long value '%s' for property %s, using default %s", value, key, defaultValue));
+            return defaultValue;
+        }
+    }
+
+    public static boolean getBooleanProperty(@Nonnull String key, boolean defaultValue) {
+        String value = ALL_PROPERTIES.getProperty(key);
+        if (value == null || value.trim().isEmpty())
+            return defaultValue;
+        return "true".equalsIgnoreCase(value.trim());
+    }
+
     public static Properties getAllProperties() {
 
         Properties prop = new Properties();
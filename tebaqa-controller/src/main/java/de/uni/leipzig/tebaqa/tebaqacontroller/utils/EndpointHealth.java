@@ -0,0 +1,163 @@
+package de.uni.leipzig.tebaqa.tebaqacontroller.utils;
+
+import java.util.Arrays;
+
+/**
+ * Latencies and circuit breaker of one SPARQL endpoint. After failureThreshold failures in a row the circuit opens and
+ * the endpoint isn't used for openMillis. Then a single probe query is let through, which closes the circuit again if
+ * it succeeds. Only the probe decides, queries which were let through before the circuit opened and finish later
+ * don't change its state.
+ */
+public class EndpointHealth {
+
+    public enum State {CLOSED, OPEN, HALF_OPEN}
+
+    /**
+     * Lets one query through, the probe of a half open circuit or a regular query.
+     */
+    public enum Permit {REGULAR, PROBE}
+
+    private static final int LATENCY_SAMPLES = 256;
+
+    private final String endpoint;
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean probeRunning;
+    private long requests;
+    private long failures;
+    // Ring buffer of the latest latencies of successful and cancelled queries
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private int latencyCount;
+    private int latencyIndex;
+
+    public EndpointHealth(String endpoint, int failureThreshold, long openMillis) {
+        this.endpoint = endpoint;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMillis = openMillis;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Called before a query is sent to the endpoint. The permit has to be passed to exactly one of the record methods
+     * once the query is finished.
+     *
+     * @return null if the circuit is open, or half open and its probe is still running.
+     */
+    public synchronized Permit tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openMillis)
+                return null;
+            state = State.HALF_OPEN;
+        }
+        Permit permit = Permit.REGULAR;
+        if (state == State.HALF_OPEN) {
+            if (probeRunning)
+                return null;
+            probeRunning = true;
+            permit = Permit.PROBE;
+        }
+        requests++;
+        return permit;
+    }
+
+    public synchronized void recordSuccess(Permit permit, long latencyMillis) {
+        addLatency(latencyMillis);
+        if (permit == Permit.PROBE) {
+            probeRunning = false;
+            state = State.CLOSED;
+            consecutiveFailures = 0;
+        } else if (state == State.CLOSED) {
+            consecutiveFailures = 0;
+        }
+    }
+
+    public synchronized void recordFailure(Permit permit) {
+        failures++;
+        consecutiveFailures++;
+        if (permit == Permit.PROBE) {
+            probeRunning = false;
+            open();
+        } else if (state == State.CLOSED && consecutiveFailures >= failureThreshold) {
+            open();
+        }
+    }
+
+    /**
+     * Called if a query was aborted because its result wasn't needed anymore or it ran until the deadline of its
+     * caller, which says nothing about the failures of the endpoint. The time it ran is a lower bound of its latency
+     * and kept as sample, otherwise an endpoint which always loses against a hedged query would never look slow. A
+     * cancelled probe leaves the circuit half open, the next query is the probe then.
+     *
+     * @param elapsedMillis The time the query ran or -1 if it wasn't sent.
+     */
+    public synchronized void recordCancelled(Permit permit, long elapsedMillis) {
+        if (permit == Permit.PROBE)
+            probeRunning = false;
+        if (elapsedMillis >= 0)
+            addLatency(elapsedMillis);
+    }
+
+    /**
+     * Called if a query failed because of the query itself, e.g. a syntax error, the endpoint answered.
+     */
+    public synchronized void recordRejected(Permit permit) {
+        if (permit == Permit.PROBE) {
+            probeRunning = false;
+            state = State.CLOSED;
+            consecutiveFailures = 0;
+        } else if (state == State.CLOSED) {
+            consecutiveFailures = 0;
+        }
+    }
+
+    /**
+     * @param percentile Between 0 and 100.
+     * @return The latency percentile of the latest queries or -1 if there are less than minSamples.
+     */
+    public synchronized long getLatencyPercentile(double percentile, int minSamples) {
+        if (latencyCount == 0 || latencyCount < minSamples)
+            return -1;
+        long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * latencyCount) - 1;
+        return sorted[Math.max(0, Math.min(index, latencyCount - 1))];
+    }
+
+    // Only the probe leaves the half open state, queries let through before the circuit opened don't change it
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+    }
+
+    private void addLatency(long latencyMillis) {
+        latencies[latencyIndex] = latencyMillis;
+        latencyIndex = (latencyIndex + 1) % LATENCY_SAMPLES;
+        latencyCount = Math.min(latencyCount + 1, LATENCY_SAMPLES);
+    }
+
+    public synchronized State getState() {
+        // An open circuit whose time is up is reported as half open, it lets the next query through
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis)
+            return State.HALF_OPEN;
+        return state;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    public synchronized long getRequestCount() {
+        return requests;
+    }
+
+    public synchronized long getFailureCount() {
+        return failures;
+    }
+}
@@ -0,0 +1,176 @@
+package de.uni.leipzig.tebaqa.tebaqacontroller.utils;
+
+import de.uni.leipzig.tebaqa.tebaqacommons.statistics.CardinalityStatistics;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryException;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.sparql.core.TriplePath;
+import org.apache.jena.sparql.syntax.ElementPathBlock;
+import org.apache.jena.sparql.syntax.ElementTriplesBlock;
+import org.apache.jena.sparql.syntax.ElementVisitorBase;
+import org.apache.jena.sparql.syntax.ElementWalker;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Estimates how many rows an endpoint has to produce to answer a generated query, from the statistics in
+ * sparql.cost.statistics-file (see CardinalityStatisticsGenerator in tebaqa-commons). The triple patterns of the
+ * query are joined in greedy order, always taking the pattern with the fewest matches for the variables bound so
+ * far, and the cost is the sum of the intermediate results. OPTIONAL, UNION and FILTER are ignored, so the estimate
+ * is rather too high. Without statistics file the estimator is disabled.
+ */
+public class QueryCostEstimator {
+
+    private static final Logger LOGGER = Logger.getLogger(QueryCostEstimator.class);
+    private static final QueryCostEstimator INSTANCE = new QueryCostEstimator(load(ControllerPropertyUtils.getProperty("sparql.cost.statistics-file", "")));
+
+    private final CardinalityStatistics statistics;
+
+    public QueryCostEstimator(CardinalityStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    public static QueryCostEstimator getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return statistics != null;
+    }
+
+    public CardinalityStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @return The estimated number of rows or -1 if the estimator is disabled or the query can't be parsed.
+     */
+    public double estimate(String queryString) {
+        if (statistics == null)
+            return -1;
+        Query query;
+        try {
+            query = QueryFactory.create(queryString);
+        } catch (QueryException e) {
+            LOGGER.debug("Unable to parse query for cost estimation: " + queryString);
+            return -1;
+        }
+        return estimate(triplesOf(query));
+    }
+
+    double estimate(List<Triple> triples) {
+        List<Triple> remaining = new ArrayList<>(triples);
+        Set<Node> boundVars = new HashSet<>();
+        double rows = 1;
+        double cost = 0;
+        while (!remaining.isEmpty()) {
+            Triple next = null;
+            double nextMatches = Double.MAX_VALUE;
+            boolean nextJoins = false;
+            for (Triple triple : remaining) {
+                // Patterns which share a variable with the patterns before are preferred over cross products
+                boolean joins = boundVars.isEmpty() || sharesVariable(triple, boundVars);
+                double matches = matches(triple, boundVars);
+                if (next == null || (joins && !nextJoins) || (joins == nextJoins && matches < nextMatches)) {
+                    next = triple;
+                    nextMatches = matches;
+                    nextJoins = joins;
+                }
+            }
+            remaining.remove(next);
+            rows *= nextMatches;
+            cost += rows;
+            for (Node node : nodesOf(next)) {
+                if (node.isVariable())
+                    boundVars.add(node);
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * The estimated matches of a pattern for one row of the variables bound so far.
+     */
+    private double matches(Triple triple, Set<Node> boundVars) {
+        Node subject = triple.getSubject();
+        Node predicate = triple.getPredicate();
+        Node object = triple.getObject();
+        boolean subjectBound = isBound(subject, boundVars);
+        boolean objectBound = isBound(object, boundVars);
+        String p = predicate.isURI() ? predicate.getURI() : null;
+        // A predicate which doesn't occur has no matches, it's cheap either way
+        if (p != null && !statistics.hasPredicate(p))
+            return 1;
+
+        if (subjectBound && objectBound)
+            return 1;
+        if (subjectBound) {
+            double fanOut = p == null ? statistics.getAverageOutDegree()
+                    : (double) statistics.getPredicateTriples(p) / statistics.getPredicateSubjects(p);
+            return subject.isURI() ? Math.min(statistics.getOutDegree(subject.getURI()), p == null ? Double.MAX_VALUE : fanOut) : fanOut;
+        }
+        if (objectBound) {
+            double fanIn = p == null ? statistics.getAverageInDegree()
+                    : (double) statistics.getPredicateTriples(p) / statistics.getPredicateObjects(p);
+            return object.isURI() ? Math.min(statistics.getInDegree(object.getURI()), p == null ? Double.MAX_VALUE : fanIn) : fanIn;
+        }
+        return p == null ? statistics.getTripleCount() : statistics.getPredicateTriples(p);
+    }
+
+    private static boolean isBound(Node node, Set<Node> boundVars) {
+        return node.isConcrete() || boundVars.contains(node);
+    }
+
+    private static boolean sharesVariable(Triple triple, Set<Node> boundVars) {
+        for (Node node : nodesOf(triple)) {
+            if (node.isVariable() && boundVars.contains(node))
+                return true;
+        }
+        return false;
+    }
+
+    private static Node[] nodesOf(Triple triple) {
+        return new Node[]{triple.getSubject(), triple.getPredicate(), triple.getObject()};
+    }
+
+    // Property paths count like a pattern with a variable predicate
+    private static List<Triple> triplesOf(Query query) {
+        List<Triple> triples = new ArrayList<>();
+        if (query.getQueryPattern() == null)
+            return triples;
+        ElementWalker.walk(query.getQueryPattern(), new ElementVisitorBase() {
+            @Override
+            public void visit(ElementPathBlock el) {
+                for (TriplePath path : el.getPattern().getList()) {
+                    triples.add(path.isTriple() ? path.asTriple()
+                            : Triple.create(path.getSubject(), Node.ANY, path.getObject()));
+                }
+            }
+
+            @Override
+            public void visit(ElementTriplesBlock el) {
+                triples.addAll(el.getPattern().getList());
+            }
+        });
+        return triples;
+    }
+
+    private static CardinalityStatistics load(String file) {
+        if (file == null || file.trim().isEmpty())
+            return null;
+        try {
+            CardinalityStatistics statistics = CardinalityStatistics.read(new File(file.trim()));
+            LOGGER.info(String.format("Loaded cardinality statistics of %s predicates and %s entities from %s",
+                    statistics.predicateCount(), statistics.entityCount(), file.trim()));
+            return statistics;
+        } catch (IOException e) {
+            LOGGER.error("Unable to load cardinality statistics, query costs are not estimated: " + file, e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package de.uni.leipzig.tebaqa.tebaqacontroller.utils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Lists;
+import de.uni.leipzig.tebaqa.tebaqacommons.util.Deadline;
+import org.apache.jena.query.*;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.log4j.Logger;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves DBpedia redirects of many resources with one query per chunk of resources. Redirect targets rarely
+ * change, so they are cached for all requests, a resource without redirect maps to itself.
+ */
+public class RedirectResolver {
+
+    private static final Logger LOGGER = Logger.getLogger(RedirectResolver.class);
+    private static final String REDIRECTS_SPARQL = "SELECT ?resource ?redirectsTo WHERE { VALUES ?resource { %s } ?resource <http://dbpedia.org/ontology/wikiPageRedirects> ?redirectsTo }";
+
+    private static final int BATCH_SIZE = Math.max(1, ControllerPropertyUtils.getIntProperty("sparql.redirects.batch-size", 50));
+    private static final Cache<String, String> REDIRECTS = CacheBuilder.newBuilder()
+            .maximumSize(ControllerPropertyUtils.getLongProperty("sparql.redirects.cache.max-size", 100000))
+            .expireAfterWrite(ControllerPropertyUtils.getLongProperty("sparql.redirects.cache.ttl-hours", 24), TimeUnit.HOURS)
+            .recordStats()
+            .build();
+
+    /**
+     * @param resources The resources to resolve.
+     * @return The redirect target of every resource, or the resource itself if it isn't redirected or the query
+     * failed.
+     */
+    public static Map<String, String> getRedirects(Collection<String> resources) {
+        Map<String, String> redirects = new HashMap<>();
+        List<String> unknown = new ArrayList<>();
+        for (String resource : new LinkedHashSet<>(resources)) {
+            String cached = REDIRECTS.getIfPresent(resource);
+            if (cached != null) {
+                redirects.put(resource, cached);
+            } else if (!SPARQLUtilities.isValidIRI(resource)) {
+                redirects.put(resource, resource);
+            } else {
+                unknown.add(resource);
+            }
+        }
+
+        for (List<String> chunk : Lists.partition(unknown, BATCH_SIZE)) {
+            Map<String, String> resolved = queryRedirects(chunk);
+            for (String resource : chunk) {
+                if (resolved == null) {
+                    // Not cached, the query may succeed next time
+                    redirects.put(resource, resource);
+                } else {
+                    String target = resolved.getOrDefault(resource, resource);
+                    REDIRECTS.put(resource, target);
+                    redirects.put(resource, target);
+                }
+            }
+        }
+        return redirects;
+    }
+
+    public static String getRedirect(String resource) {
+        return getRedirects(Collections.singletonList(resource)).get(resource);
+    }
+
+    public static CacheStats getStats() {
+        return REDIRECTS.stats();
+    }
+
+    public static long size() {
+        return REDIRECTS.size();
+    }
+
+    /**
+     * @return The redirect targets of the redirected resources or null if the query failed.
+     */
+    private static Map<String, String> queryRedirects(List<String> resources) {
+        StringBuilder values = new StringBuilder();
+        resources.forEach(resource -> values.append('<').append(resource).append("> "));
+        String sparql = String.format(REDIRECTS_SPARQL, values);
+
+        Query query;
+        try {
+            query = QueryFactory.create(sparql);
+        } catch (QueryParseException e) {
+            LOGGER.error("Unable to parse redirect query: " + sparql, e);
+            return null;
+        }
+        try {
+            // Redirects are resolved while answering, so the query must not outlast the request
+            return SparqlRouter.forEndpoint(SPARQLUtilities.SPARQL_ENDPOINT).execute(query,
+                    SparqlRouter.timeoutFor(Deadline.current()), RedirectResolver::readRedirects);
+        } catch (RuntimeException e) {
+            LOGGER.error(String.format("Unable to resolve redirects of %s resources", resources.size()), e);
+            return null;
+        }
+    }
+
+    private static Map<String, String> readRedirects(QueryExecution qe) {
+        Map<String, String> redirects = new HashMap<>();
+        ResultSet rs = qe.execSelect();
+        while (rs.hasNext()) {
+            QuerySolution solution = rs.nextSolution();
+            RDFNode resource = solution.get("resource");
+            RDFNode target = solution.get("redirectsTo");
+            // There should be only one redirection
+            if (resource != null && target != null)
+                redirects.putIfAbsent(resource.toString(), target.toString());
+        }
+        return redirects;
+    }
+}
@@ -2,9 +2,12 @@ package de.uni.leipzig.tebaqa.tebaqacontroller.utils;
 
 import com.google.common.collect.Lists;
 import de.uni.leipzig.tebaqa.tebaqacommons.model.QuestionAnswerType;
+import de.uni.leipzig.tebaqa.tebaqacommons.util.Deadline;
+import de.uni.leipzig.tebaqa.tebaqacommons.util.MappedLookupTable;
 import de.uni.leipzig.tebaqa.tebaqacommons.util.TextUtilities;
 import de.uni.leipzig.tebaqa.tebaqacontroller.model.ResultsetBinding;
 import de.uni.leipzig.tebaqa.tebaqacontroller.model.SPARQLResultSet;
+import de.uni.leipzig.tebaqa.tebaqacontroller.service.QueryResultCache;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.jena.graph.Node;
@@ -23,8 +26,11 @@ import org.apache.jena.sparql.syntax.ElementVisitorBase;
 import org.apache.jena.sparql.syntax.ElementWalker;
 import org.apache.log4j.Logger;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.CancellationException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -38,10 +44,14 @@ public class SPARQLUtilities {
     public final static String WIKI_LINK_SPARQL = "SELECT ?primaryTopic WHERE { <%1$s> <http://xmlns.com/foaf/0.1/isPrimaryTopicOf> ?primaryTopic  . }";
     public final static String DESCRIPTION_SPARQL = "SELECT ?description WHERE { <%1$s> <http://purl.org/dc/terms/description> ?description . FILTER(lang(?description)=\"en\") }";
     public final static String ABSTRACT_SPARQL = "SELECT ?abstract WHERE { <%1$s> <http://dbpedia.org/ontology/abstract> ?abstract .  FILTER(lang(?abstract)=\"en\")  }";
-    private final static String GET_REDIRECTS_SPARQL = "SELECT ?redirectsTo WHERE { <%1$s> <http://dbpedia.org/ontology/wikiPageRedirects> ?redirectsTo }";
     static final String FULLTEXT_SEARCH_SPARQL = "SELECT DISTINCT ?s ?label WHERE { ?s <http://www.w3.org/2000/01/rdf-schema#label> ?label . FILTER (lang(?label) = 'en'). ?label <bif:contains> \"'%s'\" . ?s <http://purl.org/dc/terms/subject> ?sub }";
+    // Characters which aren't allowed in an IRI reference
+    private static final Pattern INVALID_IRI = Pattern.compile("[\\s<>\"{}|^`\\\\]");
     private static Pattern SPLIT_TRIPLE_PATTERN = Pattern.compile("[^\\s\"']+|\"([^\"]*)\"|'([^']*)'");
     private static Logger log = Logger.getLogger(SPARQLUtilities.class);
+    // Created offline by RankTableGenerator (tebaqa-commons), the endpoint is only asked for resources not in them
+    private static final MappedLookupTable PAGE_RANKS = openLookupTable("sparql.lookup.pagerank-file");
+    private static final MappedLookupTable ONTOLOGY_USAGE = openLookupTable("sparql.lookup.ontology-usage-file");
     public static int QUERY_TYPE_UNKNOWN = -1;
     public static int ASK_QUERY = 1;
     public static int SELECT_QUERY = 2;
@@ -83,37 +93,21 @@ public class SPARQLUtilities {
                 log.error("QueryParseException: Unable to parse query: " + qs, e);
                 return results;
             }
-//            QueryExecution qe = QueryExecutionFactory.sparqlService("http://limbo-triple.cs.upb.de:3030/limbo/query", query);
-            QueryExecution qe = QueryExecutionFactory.sparqlService(SPARQL_ENDPOINT, query);
-            qe.setTimeout(10000, 10000);
+            SparqlRouter router = SparqlRouter.forEndpoint(SPARQL_ENDPOINT);
             boolean isAskType = query.isAskType();
             boolean isSelectType = query.isSelectType();
 
             if (isSelectType) {
-                ResultSet rs;
+                // The rows are parsed while they are read from the response
                 try {
-                    rs = ResultSetFactory.copyResults(qe.execSelect());
+                    result = router.execute(query, SparqlRouter.QUERY_TIMEOUT, SPARQLUtilities::readValues);
+                } catch (ClassCastException e) {
+                    log.error("Unable to parse response! SPARQL: " + sparlQuery, e);
+                    return results;
                 } catch (QueryExceptionHTTP e) {
                     log.error("HTTP Exception while executing SPARQL query: " + sparlQuery, e);
                     return results;
                 }
-                while (rs.hasNext()) {
-                    QuerySolution s = rs.nextSolution();
-                    //String message;
-                    try {
-                        Iterator<String> varNames = s.varNames();
-                        for (Iterator<String> it = varNames; it.hasNext(); ) {
-                            String varName = it.next();
-                            result.add(s.get(varName).toString());
-                        }
-                        //message = String.valueOf(s.getResource(resultVariableName));
-                    } catch (ClassCastException e) {
-                        log.error("Unable to parse response! SPARQL: " + sparlQuery, e);
-                        return results;
-                    }
-                    //log.info(String.join("; ", message));
-                    //result.add(message);
-                }
                 if (result.size() > 1) {
                     boolean listIsMixed = result.parallelStream().anyMatch(s -> !isResource(s));
                     if (listIsMixed) {
@@ -170,7 +164,7 @@ public class SPARQLUtilities {
                 }
             } else if (isAskType) {
                 try {
-                    boolean rs = qe.execAsk();
+                    boolean rs = router.execute(query, SparqlRouter.QUERY_TIMEOUT, QueryExecution::execAsk);
                     result.add(String.valueOf(rs));
                     resultType = SPARQLResultSet.BOOLEAN_ANSWER_TYPE;
                     results.add(new SPARQLResultSet(result, resultType));
@@ -188,6 +182,24 @@ public class SPARQLUtilities {
         //}
         return results;
     }
+
+    // The values of all variables of all rows
+    private static List<String> readValues(QueryExecution qe) {
+        List<String> values = new ArrayList<>();
+        ResultSet rs = qe.execSelect();
+        while (rs.hasNext()) {
+            QuerySolution s = rs.nextSolution();
+            try {
+                for (Iterator<String> it = s.varNames(); it.hasNext(); ) {
+                    values.add(s.get(it.next()).toString());
+                }
+            } catch (ClassCastException e) {
+                qe.abort();
+                throw e;
+            }
+        }
+        return values;
+    }
     private static String restoreQuery(ResultsetBinding binding, String originalQuery){
         Query query=QueryFactory.create(originalQuery);
         ElementTriplesBlock block = new ElementTriplesBlock();
@@ -230,23 +242,46 @@ public class SPARQLUtilities {
     public static ResultsetBinding executeQuery(String queryString) {
         Query query = QueryFactory.create(queryString);
 //        QueryExecution qe = QueryExecutionFactory.sparqlService("http://limbo-triple.cs.upb.de:3030/limbo/query", query);
-        QueryExecution qe = QueryExecutionFactory.sparqlService(SPARQL_ENDPOINT, query);
+        try {
+            Deadline deadline = Deadline.current();
+            return QueryResultCache.getInstance().get(SPARQL_ENDPOINT, query, queryString, deadline,
+                    () -> SparqlRouter.forEndpoint(SPARQL_ENDPOINT).execute(SparqlClient.limitResults(query, ResultsetBinding.MAX_RESULTS),
+                            SparqlRouter.timeoutFor(deadline), qe -> executeQuery(queryString, query, qe)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for query: " + queryString);
+        }
+    }
+
+    /**
+     * Executes an already created {@link QueryExecution}. Callers which keep a reference to the execution can
+     * abort it from another thread, e.g. when its result isn't needed anymore. Reading stops once
+     * {@link ResultsetBinding#MAX_RESULTS} results are found.
+     */
+    public static ResultsetBinding executeQuery(String queryString, Query query, QueryExecution qe) {
         ResultsetBinding b = new ResultsetBinding();
-        if (query.isSelectType()) {
-
-            ResultSet rs = qe.execSelect();
-            while (rs.hasNext()) {
-                RDFNode v = rs.nextSolution().get(query.getResultVars().get(0));
-                if (v.isLiteral())
-                    b.addResult(v.asLiteral().getLexicalForm());
-                else b.addResult(v.toString());
+        try {
+            if (query.isSelectType()) {
+
+                ResultSet rs = qe.execSelect();
+                String resultVar = query.getResultVars().get(0);
+                while (b.getResult().size() < ResultsetBinding.MAX_RESULTS && rs.hasNext()) {
+                    RDFNode v = rs.nextSolution().get(resultVar);
+                    if (v != null)
+                        b.addResult(v);
+                }
+                // Drops the connection instead of reading the rest of the response
+                if (rs.hasNext())
+                    qe.abort();
             }
-        }
 
-        else{
-            boolean res=qe.execAsk();
-            if(res)b.addResult("true");
-            else b.addResult("false");
+            else{
+                boolean res=qe.execAsk();
+                if(res)b.addResult("true");
+                else b.addResult("false");
+            }
+        } finally {
+            qe.close();
         }
         b.setQuery(queryString);
         b.setAnswerType(determineAnswerType(b));
@@ -273,72 +308,75 @@ public class SPARQLUtilities {
             isAskType = QueryFactory.create(queryWithValues).isAskType();
             boolean isCountQuery = isCountQuery(queryWithValues);
             boolean isLiteralResult = false;
-            QueryExecution qe = QueryExecutionFactory.sparqlService(SPARQL_ENDPOINT, query);
+            QueryExecution qe = SparqlClient.createExecution(SPARQL_ENDPOINT, query);
 //            QueryExecution qe = QueryExecutionFactory.sparqlService("http://limbo-triple.cs.upb.de:3030/limbo/query", query);
             qe.setTimeout(10000, 10000);
             if (query.isSelectType()) {
-                ResultSet rs = null;
                 try {
-                    rs = ResultSetFactory.copyResults(qe.execSelect());
-                    qe.close();
-                } catch (QueryExceptionHTTP e) {
-                    log.error("HTTP Exception while executing SPARQL query: " + sparlQuery, e);
-                }
+                    ResultSet rs = null;
+                    try {
+                        rs = qe.execSelect();
+                    } catch (QueryExceptionHTTP e) {
+                        log.error("HTTP Exception while executing SPARQL query: " + sparlQuery, e);
+                    }
 
 
 
-                while (rs!=null&&rs.hasNext()) {
-                    boolean isValidOrderedByNumericValue=true;
-                    isAskType = QueryFactory.create(queryWithValues).isAskType();
-                    Set<String>results=new HashSet<>();
-                    Map<String, String>placeHolderBinding=new HashMap<>();
-                    ResultBinding s = (ResultBinding) rs.nextSolution();
-                    Map<String, Node> binding = getBinding(s);
-                    for (String variable : binding.keySet()) {
-                        if(variable.startsWith("var_")) {
-                            placeHolderBinding.put(variable, binding.get(variable).toString());
-                        }
-                        if(orderVar.isPresent()&&variable.equals(orderVar.get())){
-                            Node v=binding.get(variable);
-                            if(v.isLiteral()&&!v.getLiteral().toString().contains("[a-zA-Z]+")) {
-                                isValidOrderedByNumericValue = false;
-                                System.out.println("---------ValidOrderedByNumericValue was set------");
+                    while (rs!=null&&rs.hasNext()) {
+                        boolean isValidOrderedByNumericValue=true;
+                        isAskType = QueryFactory.create(queryWithValues).isAskType();
+                        Set<String>results=new HashSet<>();
+                        Map<String, String>placeHolderBinding=new HashMap<>();
+                        ResultBinding s = (ResultBinding) rs.nextSolution();
+                        Map<String, Node> binding = getBinding(s);
+                        for (String variable : binding.keySet()) {
+                            if(variable.startsWith("var_")) {
+                                placeHolderBinding.put(variable, binding.get(variable).toString());
                             }
+                            if(orderVar.isPresent()&&variable.equals(orderVar.get())){
+                                Node v=binding.get(variable);
+                                if(v.isLiteral()&&!v.getLiteral().toString().contains("[a-zA-Z]+")) {
+                                    isValidOrderedByNumericValue = false;
+                                    System.out.println("---------ValidOrderedByNumericValue was set------");
+                                }
 
-                        }
-                        else if ("uri".equals(variable)) {
-                            Node v=binding.get(variable);
-                            if(v.isLiteral()){
-                                isLiteralResult=true;
-                                results.add(binding.get(variable).getLiteralLexicalForm());
                             }
-                            else results.add(binding.get(variable).toString());
+                            else if ("uri".equals(variable)) {
+                                Node v=binding.get(variable);
+                                if(v.isLiteral()){
+                                    isLiteralResult=true;
+                                    results.add(binding.get(variable).getLiteralLexicalForm());
+                                }
+                                else results.add(binding.get(variable).toString());
+                            }
                         }
-                    }
-                    boolean alreadyKnown=false;
-                    for(ResultsetBinding bind:mergedBindings){
-                        if(bind.isSameBinding(placeHolderBinding)) {
-                            if(!isAskType) bind.getResult().addAll(results);
+                        boolean alreadyKnown=false;
+                        for(ResultsetBinding bind:mergedBindings){
+                            if(bind.isSameBinding(placeHolderBinding)) {
+                                if(!isAskType) bind.getResult().addAll(results);
 
-                            alreadyKnown=true;
-                        }
+                                alreadyKnown=true;
+                            }
 
-                    }
-                    if(isValidOrderedByNumericValue&&
-                            !alreadyKnown&&!hasDoubleBoundResource(placeHolderBinding)&&
-                            !(isLiteralResult&&isCountQuery)){
-                        ResultsetBinding b=new ResultsetBinding();
-                        b.getBindings().putAll(placeHolderBinding);
-                        if(isAskType){
-                            if(results.size()>0) b.addResult("true");
-                            else b.addResult("false");
+                        }
+                        if(isValidOrderedByNumericValue&&
+                                !alreadyKnown&&!hasDoubleBoundResource(placeHolderBinding)&&
+                                !(isLiteralResult&&isCountQuery)){
+                            ResultsetBinding b=new ResultsetBinding();
+                            b.getBindings().putAll(placeHolderBinding);
+                            if(isAskType){
+                                if(results.size()>0) b.addResult("true");
+                                else b.addResult("false");
 
+                            }
+                            else b.getResult().addAll(results);
+                            b.setQuery(restoreQuery(b,pattern));
+                            mergedBindings.add(b);
                         }
-                        else b.getResult().addAll(results);
-                        b.setQuery(restoreQuery(b,pattern));
-                        mergedBindings.add(b);
-                    }
 
+                    }
+                } finally {
+                    qe.close();
                 }
                 /*if(isCountQuery&&isLiteralResult){
                     mergedBindings.clear();
@@ -485,28 +523,31 @@ public class SPARQLUtilities {
 
     public static boolean isDate(String s) {
         if (s.length() == 4 && StringUtils.isNumeric(s)) {
-            try {
-                if (Integer.parseInt(s) < 3000) {
-                    return true;
-                }
-            } catch (NumberFormatException ignored) {
-            }
-        } else if (s.length() >= 6 && s.length() <= 10) {
-            if (s.contains("-")) {
-                String possibleDateWithoutHyphen = s.replace("-", "");
-                try {
-                    Integer.parseInt(possibleDateWithoutHyphen);
-                    return true;
-                } catch (NumberFormatException ignored) {
-                    return false;
-                }
-            }
-        } else {
-            return false;
+            return parseDigits(s) < 3000;
+        } else if (s.length() >= 6 && s.length() <= 10 && s.indexOf('-') >= 0) {
+            // At most 9 digits remain, which always fit into an int
+            String possibleDateWithoutHyphen = s.replace("-", "");
+            return !possibleDateWithoutHyphen.isEmpty() && parseDigits(possibleDateWithoutHyphen) >= 0;
         }
         return false;
     }
 
+    /**
+     * @return The value of a string of at most 9 digits (optionally preceded by '+') or -1, without throwing like
+     * {@link Integer#parseInt(String)}.
+     */
+    private static int parseDigits(String s) {
+        int start = s.charAt(0) == '+' && s.length() > 1 ? 1 : 0;
+        int value = 0;
+        for (int i = start; i < s.length(); i++) {
+            int digit = Character.digit(s.charAt(i), 10);
+            if (digit < 0)
+                return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
     public static boolean isStringFromXMLScheme(String s) {
         return s.endsWith("^^http://www.w3.org/1999/02/22-rdf-syntax-ns#langString");
     }
@@ -669,6 +710,9 @@ public class SPARQLUtilities {
      */
     public static Double getPageRank(String uri) {
         if (isResource(uri)) {
+            Double pageRank = PAGE_RANKS == null ? null : PAGE_RANKS.get(uri);
+            if (pageRank != null)
+                return pageRank;
             List<SPARQLResultSet> sparqlResultSets = executeSPARQLQuery(String.format("PREFIX vrank:<http://purl.org/voc/vrank#> SELECT ?v FROM <http://people.aifb.kit.edu/ath/#DBpedia_PageRank> WHERE { <%s> vrank:hasRank/vrank:rankValue ?v. }", uri));
             List<String> resultSet = new ArrayList<>();
             sparqlResultSets.forEach(sparqlResultSet -> resultSet.addAll(sparqlResultSet.getResultSet()));
@@ -686,6 +730,9 @@ public class SPARQLUtilities {
         String[] split = uri.split("/");
         String entity = split[split.length - 1];
         if (uri.startsWith("http://dbpedia.org/ontology/") && Character.isUpperCase(entity.charAt(0))) {
+            Double usage = ONTOLOGY_USAGE == null ? null : ONTOLOGY_USAGE.get(uri);
+            if (usage != null)
+                return usage;
             List<SPARQLResultSet> sparqlResultSets = executeSPARQLQuery(String.format("SELECT DISTINCT (COUNT(DISTINCT ?uri) as ?c) WHERE {  ?uri a <%s> . } ", uri));
             List<String> resultSet = new ArrayList<>();
             sparqlResultSets.forEach(sparqlResultSet -> resultSet.addAll(sparqlResultSet.getResultSet()));
@@ -699,16 +746,29 @@ public class SPARQLUtilities {
         }
     }
 
-    public static String getRedirect(String resource) {
-        List<SPARQLResultSet> sparqlResultSets = executeSPARQLQuery(String.format(GET_REDIRECTS_SPARQL, resource));
-        if (sparqlResultSets.size() >= 1) {
-            List<String> resultSet = sparqlResultSets.get(0).getResultSet();
-            if (resultSet.size() > 0) {
-                //There should be only one redirection
-                return resultSet.get(0);
-            }
+    private static MappedLookupTable openLookupTable(String property) {
+        String file = ControllerPropertyUtils.getProperty(property, "").trim();
+        if (file.isEmpty())
+            return null;
+        try {
+            MappedLookupTable table = MappedLookupTable.open(new File(file));
+            log.info(String.format("Mapped %s entries of %s", table.size(), file));
+            return table;
+        } catch (IOException e) {
+            log.error(String.format("Unable to open %s, asking the endpoint instead: %s", property, file), e);
+            return null;
         }
-        return resource;
+    }
+
+    /**
+     * @return false if the resource can't be written as IRI into a query, it would break the whole query.
+     */
+    public static boolean isValidIRI(String resource) {
+        return !resource.isEmpty() && !INVALID_IRI.matcher(resource).find();
+    }
+
+    public static String getRedirect(String resource) {
+        return RedirectResolver.getRedirect(resource);
     }
 
     public static String getBaseNameFromDBpediaEntitiy(String uri) {
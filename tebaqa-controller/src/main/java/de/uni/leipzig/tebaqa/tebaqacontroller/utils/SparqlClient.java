@@ -0,0 +1,142 @@
+package de.uni.leipzig.tebaqa.tebaqacontroller.utils;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.riot.WebContent;
+import org.apache.jena.sparql.engine.http.QueryEngineHTTP;
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates query executions against SPARQL endpoints. All executions share one pool of keep-alive connections and
+ * request SELECT results in the configured format, see sparql.result.format. If sparql.backend is tdb2, queries are
+ * executed against the local dataset in sparql.tdb.location instead, whichever endpoint is given.
+ */
+public class SparqlClient {
+
+    private static final Logger LOGGER = Logger.getLogger(SparqlClient.class);
+
+    private static final ResultFormat RESULT_FORMAT = ResultFormat.forCode(ControllerPropertyUtils.getProperty("sparql.result.format", "tsv"));
+    private static final boolean LIMIT_PUSHDOWN = ControllerPropertyUtils.getBooleanProperty("sparql.result.limit-pushdown", true);
+
+    public static final String REMOTE_BACKEND = "remote";
+    public static final String TDB2_BACKEND = "tdb2";
+    private static final TDBQueryBackend TDB_BACKEND = createTDBBackend();
+
+    private static final PoolingHttpClientConnectionManager CONNECTION_MANAGER = createConnectionManager();
+    private static final CloseableHttpClient HTTP_CLIENT = HttpClients.custom()
+            .setConnectionManager(CONNECTION_MANAGER)
+            .setDefaultRequestConfig(RequestConfig.custom()
+                    .setConnectTimeout(ControllerPropertyUtils.getIntProperty("sparql.http.connect-timeout", 5000))
+                    .setConnectionRequestTimeout(ControllerPropertyUtils.getIntProperty("sparql.http.connection-request-timeout", 10000))
+                    .build())
+            .evictExpiredConnections()
+            .evictIdleConnections(ControllerPropertyUtils.getLongProperty("sparql.http.idle-timeout", 30000), TimeUnit.MILLISECONDS)
+            .build();
+
+    /**
+     * The formats Jena reads row by row, JSON results are read completely before the first row is returned.
+     */
+    public enum ResultFormat {
+        TSV(WebContent.contentTypeTextTSV),
+        XML(WebContent.contentTypeResultsXML),
+        JSON(WebContent.contentTypeResultsJSON);
+
+        private final String contentType;
+
+        ResultFormat(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public static ResultFormat forCode(String code) {
+            for (ResultFormat format : values()) {
+                if (format.name().equalsIgnoreCase(code.trim()))
+                    return format;
+            }
+            LOGGER.error(String.format("Unknown SPARQL result format '%s', using %s", code, TSV));
+            return TSV;
+        }
+    }
+
+    /**
+     * The execution isn't started yet, timeouts can still be set. It has to be closed, if its result isn't read to
+     * the end it should be aborted before, so the rest of the response isn't read just to reuse the connection.
+     */
+    public static QueryExecution createExecution(String endpoint, Query query) {
+        if (TDB_BACKEND != null)
+            return TDB_BACKEND.createExecution(query);
+        QueryEngineHTTP execution = new QueryEngineHTTP(endpoint, query, HTTP_CLIENT);
+        execution.setSelectContentType(RESULT_FORMAT.getContentType());
+        return execution;
+    }
+
+    /**
+     * Limits a SELECT query to the given number of rows if that doesn't change which values of its only result
+     * variable are read first. A query without LIMIT is made DISTINCT for this, which doesn't change the set of
+     * values. Queries with aggregates, several result variables, an OFFSET, a LIMIT but no DISTINCT, or ORDER BY but
+     * no DISTINCT are returned unchanged, as is any query if sparql.result.limit-pushdown is off.
+     *
+     * @return A limited copy or the given query.
+     */
+    public static Query limitResults(Query query, int maxResults) {
+        if (!LIMIT_PUSHDOWN || !query.isSelectType() || query.getResultVars().size() != 1
+                || query.hasAggregators() || query.hasGroupBy() || query.hasHaving())
+            return query;
+        // An OFFSET would skip distinct values instead of rows
+        if (query.hasOffset())
+            return query;
+        if (query.hasLimit() && query.getLimit() <= maxResults)
+            return query;
+        // The rows of the original LIMIT may hold fewer distinct values than the limited query would return
+        if (query.hasLimit() && !query.isDistinct())
+            return query;
+        // Distinct rows may be ordered differently than the first occurrences of their values
+        if (query.hasOrderBy() && !query.isDistinct())
+            return query;
+
+        Query limited = query.cloneQuery();
+        limited.setReduced(false);
+        limited.setDistinct(true);
+        limited.setLimit(maxResults);
+        return limited;
+    }
+
+    public static PoolStats getStats() {
+        return CONNECTION_MANAGER.getTotalStats();
+    }
+
+    public static String getBackend() {
+        return TDB_BACKEND != null ? TDB2_BACKEND : REMOTE_BACKEND;
+    }
+
+    private static TDBQueryBackend createTDBBackend() {
+        String backend = ControllerPropertyUtils.getProperty("sparql.backend", REMOTE_BACKEND).trim();
+        if (REMOTE_BACKEND.equalsIgnoreCase(backend))
+            return null;
+        if (!TDB2_BACKEND.equalsIgnoreCase(backend)) {
+            LOGGER.error(String.format("Unknown SPARQL backend '%s', using %s", backend, REMOTE_BACKEND));
+            return null;
+        }
+        String location = ControllerPropertyUtils.getProperty("sparql.tdb.location");
+        LOGGER.info("Executing SPARQL queries against the TDB2 dataset at " + location);
+        return TDBQueryBackend.open(location);
+    }
+
+    private static PoolingHttpClientConnectionManager createConnectionManager() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(ControllerPropertyUtils.getIntProperty("sparql.http.max-total", 64));
+        connectionManager.setDefaultMaxPerRoute(ControllerPropertyUtils.getIntProperty("sparql.http.max-per-route", 16));
+        connectionManager.setValidateAfterInactivity(ControllerPropertyUtils.getIntProperty("sparql.http.validate-after-inactivity", 2000));
+        return connectionManager;
+    }
+}
@@ -0,0 +1,386 @@
+package de.uni.leipzig.tebaqa.tebaqacontroller.utils;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.uni.leipzig.tebaqa.tebaqacommons.util.Deadline;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.jena.atlas.web.HttpException;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryCancelledException;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.sparql.engine.http.QueryExceptionHTTP;
+import org.apache.log4j.Logger;
+
+import java.net.SocketTimeoutException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Sends queries to one of several mirrors of a SPARQL endpoint. The mirrors of sparql.endpoint are configured in
+ * sparql.endpoint.mirrors, every mirror has its own {@link EndpointHealth circuit breaker}. A query goes to the
+ * mirror with the lowest median latency whose circuit is closed. If it hasn't answered after the
+ * sparql.hedge.percentile of its latencies, the query is sent to the next mirror as well and the first answer wins,
+ * the other execution is aborted. A mirror which fails is replaced by the next one right away.
+ */
+public class SparqlRouter {
+
+    private static final Logger LOGGER = Logger.getLogger(SparqlRouter.class);
+
+    private static final ExecutorService ATTEMPT_EXECUTOR = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("sparql-hedge-%d").setDaemon(true).build());
+    private static final Map<String, SparqlRouter> ROUTERS = new ConcurrentHashMap<>();
+
+    /**
+     * The timeout of a single query, including all its hedged and failed over executions.
+     */
+    public static final long QUERY_TIMEOUT = ControllerPropertyUtils.getLongProperty("sparql.query.timeout", 10000);
+
+    private static final boolean HEDGING = ControllerPropertyUtils.getBooleanProperty("sparql.hedge.enabled", true);
+    private static final double HEDGE_PERCENTILE = Double.parseDouble(ControllerPropertyUtils.getProperty("sparql.hedge.percentile", "95"));
+    private static final long DEFAULT_HEDGE_DELAY = ControllerPropertyUtils.getLongProperty("sparql.hedge.default-delay", 2000);
+    private static final long MIN_HEDGE_DELAY = ControllerPropertyUtils.getLongProperty("sparql.hedge.min-delay", 50);
+    // Until an endpoint answered this many queries its percentiles aren't used
+    private static final int MIN_LATENCY_SAMPLES = ControllerPropertyUtils.getIntProperty("sparql.hedge.min-samples", 20);
+    private static final int FAILURE_THRESHOLD = ControllerPropertyUtils.getIntProperty("sparql.circuit.failure-threshold", 5);
+    private static final long OPEN_MILLIS = ControllerPropertyUtils.getLongProperty("sparql.circuit.open-millis", 30000);
+
+    private final List<EndpointHealth> endpoints;
+    private final BiFunction<String, Query, QueryExecution> executions;
+    private final boolean hedging;
+    private final AtomicLong hedgedQueries = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong failovers = new AtomicLong();
+
+    /**
+     * @param endpoints  The mirrors in order of preference.
+     * @param executions Creates an execution of a query against an endpoint, see
+     *                   {@link SparqlClient#createExecution(String, Query)}.
+     */
+    public SparqlRouter(List<String> endpoints, BiFunction<String, Query, QueryExecution> executions) {
+        this(endpoints, executions, HEDGING, FAILURE_THRESHOLD, OPEN_MILLIS);
+    }
+
+    public SparqlRouter(List<String> endpoints, BiFunction<String, Query, QueryExecution> executions, boolean hedging,
+                        int failureThreshold, long openMillis) {
+        if (endpoints.isEmpty())
+            throw new IllegalArgumentException("No SPARQL endpoint");
+        List<EndpointHealth> health = new ArrayList<>(endpoints.size());
+        endpoints.forEach(endpoint -> health.add(new EndpointHealth(endpoint, failureThreshold, openMillis)));
+        this.endpoints = Collections.unmodifiableList(health);
+        this.executions = executions;
+        this.hedging = hedging;
+    }
+
+    /**
+     * @return The router of the given endpoint, which includes the configured mirrors for sparql.endpoint.
+     */
+    public static SparqlRouter forEndpoint(String endpoint) {
+        return ROUTERS.computeIfAbsent(endpoint, e -> new SparqlRouter(endpointsFor(e), SparqlClient::createExecution));
+    }
+
+    public static Collection<SparqlRouter> getRouters() {
+        return ROUTERS.values();
+    }
+
+    /**
+     * @return The query timeout, shortened to the remaining time of the deadline if it's set.
+     */
+    public static long timeoutFor(Deadline deadline) {
+        return deadline.isSet() ? Math.max(1, Math.min(QUERY_TIMEOUT, deadline.remainingMillis())) : QUERY_TIMEOUT;
+    }
+
+    /**
+     * Executes the query and reads its result, see {@link #newExecution(Query, Function)}.
+     */
+    public <T> T execute(Query query, long timeoutMillis, Function<QueryExecution, T> read) {
+        return newExecution(query, read).run(timeoutMillis);
+    }
+
+    /**
+     * @param read Reads the result of an execution, which is closed afterwards. With hedging it may be called for
+     *             several endpoints at once, so it must not change shared state.
+     * @return An execution which can be aborted by another thread while it runs.
+     */
+    public <T> Execution<T> newExecution(Query query, Function<QueryExecution, T> read) {
+        return new Execution<>(query, read);
+    }
+
+    public List<EndpointHealth> getEndpoints() {
+        return endpoints;
+    }
+
+    public long getHedgedQueries() {
+        return hedgedQueries.get();
+    }
+
+    public long getHedgeWins() {
+        return hedgeWins.get();
+    }
+
+    public long getFailovers() {
+        return failovers.get();
+    }
+
+    /**
+     * @return The delay after which a query is sent to a second endpoint if the given one hasn't answered.
+     */
+    public long getHedgeDelay(EndpointHealth endpoint) {
+        long percentile = endpoint.getLatencyPercentile(HEDGE_PERCENTILE, MIN_LATENCY_SAMPLES);
+        return percentile < 0 ? DEFAULT_HEDGE_DELAY : Math.max(MIN_HEDGE_DELAY, percentile);
+    }
+
+    /**
+     * A failure of the endpoint itself: it's unreachable or overloaded. Client errors like a malformed query would
+     * fail on every mirror and don't count. Neither do timeouts, the timeout of a query is the deadline of its caller,
+     * which expensive queries and requests with little time left reach on any endpoint.
+     */
+    static boolean isEndpointFailure(RuntimeException e) {
+        if (isTimeout(e))
+            return false;
+        int status;
+        if (e instanceof QueryExceptionHTTP)
+            status = ((QueryExceptionHTTP) e).getStatusCode();
+        else if (e instanceof HttpException)
+            status = ((HttpException) e).getStatusCode();
+        else
+            return false;
+        return status <= 0 || status >= 500 || status == 429;
+    }
+
+    /**
+     * @return true if the query ran until its timeout, locally or while waiting for the response. A connection which
+     * couldn't be established in time is a failure of the endpoint instead.
+     */
+    static boolean isTimeout(RuntimeException e) {
+        if (e instanceof QueryCancelledException)
+            return true;
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectTimeoutException)
+                return false;
+            if (cause instanceof SocketTimeoutException)
+                return true;
+        }
+        return false;
+    }
+
+    private static List<String> endpointsFor(String endpoint) {
+        Set<String> endpoints = new LinkedHashSet<>();
+        endpoints.add(endpoint);
+        if (endpoint.equals(SPARQLUtilities.SPARQL_ENDPOINT)) {
+            for (String mirror : ControllerPropertyUtils.getProperty("sparql.endpoint.mirrors", "").split(",")) {
+                if (!mirror.trim().isEmpty())
+                    endpoints.add(mirror.trim());
+            }
+        }
+        if (endpoints.size() > 1)
+            LOGGER.info(String.format("Routing queries for %s to %s", endpoint, endpoints));
+        return new ArrayList<>(endpoints);
+    }
+
+    /**
+     * The endpoints ordered by their median latency, endpoints without samples are tried first. Ties keep the
+     * configured order. Circuits are checked when a query is actually sent.
+     */
+    private List<EndpointHealth> byLatency() {
+        List<EndpointHealth> ordered = new ArrayList<>(endpoints);
+        if (ordered.size() > 1)
+            ordered.sort(Comparator.comparingLong(endpoint -> Math.max(0, endpoint.getLatencyPercentile(50, 1))));
+        return ordered;
+    }
+
+    /**
+     * One query, sent to one or more endpoints.
+     */
+    public class Execution<T> {
+        private final Query query;
+        private final Function<QueryExecution, T> read;
+        private final List<Attempt> attempts = new CopyOnWriteArrayList<>();
+        private volatile boolean aborted = false;
+
+        private Execution(Query query, Function<QueryExecution, T> read) {
+            this.query = query;
+            this.read = read;
+        }
+
+        /**
+         * @throws QueryExceptionHTTP       If no endpoint can be used because all circuits are open.
+         * @throws QueryCancelledException  If no endpoint answered in time.
+         * @throws CancellationException    If the execution was aborted.
+         * @throws RuntimeException         The error of the last endpoint if all endpoints tried failed.
+         */
+        public T run(long timeoutMillis) {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            Iterator<EndpointHealth> candidates = byLatency().iterator();
+            // Only one endpoint can't be hedged, the local dataset ignores the endpoint anyway
+            if (!hedging || endpoints.size() == 1 || SparqlClient.TDB2_BACKEND.equals(SparqlClient.getBackend()))
+                return runSequentially(candidates, deadline);
+            return runHedged(candidates, deadline);
+        }
+
+        public void abort() {
+            aborted = true;
+            attempts.forEach(Attempt::cancel);
+        }
+
+        private T runSequentially(Iterator<EndpointHealth> candidates, long deadline) {
+            RuntimeException lastError = null;
+            for (Attempt attempt = nextAttempt(candidates, deadline); attempt != null; attempt = nextAttempt(candidates, deadline)) {
+                try {
+                    return attempt.call();
+                } catch (RuntimeException e) {
+                    if (aborted || !isEndpointFailure(e))
+                        throw e;
+                    lastError = e;
+                    failovers.incrementAndGet();
+                    LOGGER.warn(String.format("SPARQL endpoint %s failed: %s", attempt.endpoint.getEndpoint(), e));
+                }
+            }
+            throw lastError != null ? lastError : unavailable();
+        }
+
+        private T runHedged(Iterator<EndpointHealth> candidates, long deadline) {
+            BlockingQueue<Attempt> finished = new LinkedBlockingQueue<>();
+            Attempt first = nextAttempt(candidates, deadline);
+            if (first == null)
+                throw unavailable();
+            start(first, finished);
+            int running = 1;
+            long hedgeAt = System.currentTimeMillis() + getHedgeDelay(first.endpoint);
+            RuntimeException lastError = null;
+            try {
+                while (true) {
+                    long now = System.currentTimeMillis();
+                    long wait = (hedgeAt < deadline && candidates.hasNext() ? hedgeAt : deadline) - now;
+                    Attempt done = finished.poll(Math.max(0, wait), TimeUnit.MILLISECONDS);
+                    if (aborted)
+                        throw new CancellationException("Query not needed anymore");
+                    if (done == null) {
+                        if (System.currentTimeMillis() >= deadline)
+                            throw new QueryCancelledException();
+                        // Only one hedge per query, so a slow query doesn't take every mirror
+                        hedgeAt = Long.MAX_VALUE;
+                        Attempt hedge = nextAttempt(candidates, deadline);
+                        if (hedge != null) {
+                            hedgedQueries.incrementAndGet();
+                            start(hedge, finished);
+                            running++;
+                        }
+                        continue;
+                    }
+
+                    running--;
+                    if (done.error == null) {
+                        if (done != first)
+                            hedgeWins.incrementAndGet();
+                        return done.value;
+                    }
+                    lastError = done.error;
+                    if (isEndpointFailure(done.error)) {
+                        Attempt next = nextAttempt(candidates, deadline);
+                        if (next != null) {
+                            failovers.incrementAndGet();
+                            start(next, finished);
+                            running++;
+                            continue;
+                        }
+                    }
+                    if (running == 0)
+                        throw lastError;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted while waiting for the endpoint");
+            } finally {
+                // The winner is finished already, the others are not needed anymore
+                attempts.forEach(Attempt::cancel);
+            }
+        }
+
+        private void start(Attempt attempt, BlockingQueue<Attempt> finished) {
+            ATTEMPT_EXECUTOR.execute(() -> {
+                try {
+                    attempt.value = attempt.call();
+                } catch (RuntimeException e) {
+                    attempt.error = e;
+                }
+                finished.add(attempt);
+            });
+        }
+
+        /**
+         * @return An attempt at the next endpoint whose circuit lets the query through or null if there is none.
+         */
+        private Attempt nextAttempt(Iterator<EndpointHealth> candidates, long deadline) {
+            while (candidates.hasNext() && !aborted) {
+                EndpointHealth endpoint = candidates.next();
+                EndpointHealth.Permit permit = endpoint.tryAcquire();
+                if (permit != null) {
+                    Attempt attempt = new Attempt(endpoint, permit, deadline);
+                    attempts.add(attempt);
+                    return attempt;
+                }
+            }
+            return null;
+        }
+
+        private QueryExceptionHTTP unavailable() {
+            if (aborted)
+                throw new CancellationException("Query not needed anymore");
+            return new QueryExceptionHTTP(QueryExceptionHTTP.noStatusCode,
+                    "No SPARQL endpoint available, all circuits are open: " + endpoints.get(0).getEndpoint());
+        }
+
+        private class Attempt {
+            private final EndpointHealth endpoint;
+            private final EndpointHealth.Permit permit;
+            private final long deadline;
+            private volatile QueryExecution queryExecution;
+            private volatile boolean cancelled = false;
+            private T value;
+            private RuntimeException error;
+
+            Attempt(EndpointHealth endpoint, EndpointHealth.Permit permit, long deadline) {
+                this.endpoint = endpoint;
+                this.permit = permit;
+                this.deadline = deadline;
+            }
+
+            T call() {
+                long start = System.currentTimeMillis();
+                try {
+                    if (cancelled)
+                        throw new CancellationException("Query not needed anymore");
+                    queryExecution = executions.apply(endpoint.getEndpoint(), query);
+                    queryExecution.setTimeout(Math.max(1, deadline - start));
+                    // Cancelled while the execution was created
+                    if (cancelled)
+                        queryExecution.abort();
+                    T result = read.apply(queryExecution);
+                    endpoint.recordSuccess(permit, System.currentTimeMillis() - start);
+                    return result;
+                } catch (RuntimeException e) {
+                    // A timeout ran until the deadline of the caller, that's no failure of the endpoint
+                    if (cancelled || isTimeout(e))
+                        endpoint.recordCancelled(permit, queryExecution == null ? -1 : System.currentTimeMillis() - start);
+                    else if (isEndpointFailure(e))
+                        endpoint.recordFailure(permit);
+                    else
+                        endpoint.recordRejected(permit);
+                    throw e;
+                } finally {
+                    if (queryExecution != null)
+                        queryExecution.close();
+                }
+            }
+
+            void cancel() {
+                cancelled = true;
+                QueryExecution qe = queryExecution;
+                if (qe != null)
+                    qe.abort();
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package de.uni.leipzig.tebaqa.tebaqacontroller.utils;
+
+import org.apache.jena.query.ARQ;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.ReadWrite;
+import org.apache.jena.sparql.core.DatasetGraph;
+import org.apache.jena.sparql.engine.QueryEngineFactory;
+import org.apache.jena.sparql.engine.QueryEngineRegistry;
+import org.apache.jena.sparql.engine.QueryExecutionBase;
+import org.apache.jena.sparql.util.Context;
+import org.apache.jena.tdb2.DatabaseMgr;
+
+import java.io.File;
+
+/**
+ * Executes queries in-process against a local TDB2 dataset, which is created with TDBLoader from the dumps indexed by
+ * TeBaQAIndexer. Used instead of the remote endpoints if sparql.backend is tdb2.
+ */
+public class TDBQueryBackend {
+
+    private final DatasetGraph dataset;
+
+    private TDBQueryBackend(DatasetGraph dataset) {
+        this.dataset = dataset;
+    }
+
+    /**
+     * @param location The directory of the dataset.
+     * @throws IllegalArgumentException If there is no dataset in the directory. TDB2 would create an empty one, which
+     *                                  would answer every query without results.
+     */
+    public static TDBQueryBackend open(String location) {
+        File directory = location == null ? null : new File(location.trim());
+        if (directory == null || !directory.isDirectory())
+            throw new IllegalArgumentException("No TDB2 dataset at " + location);
+        return new TDBQueryBackend(DatabaseMgr.connectDatasetGraph(directory.getPath()));
+    }
+
+    /**
+     * Like a remote execution the returned one has to be closed, its read transaction ends then. It has to be closed
+     * by the thread which executed it.
+     */
+    public QueryExecution createExecution(Query query) {
+        Context context = Context.setupContextForDataset(ARQ.getContext(), dataset);
+        QueryEngineFactory factory = QueryEngineRegistry.findFactory(query, dataset, context);
+        return new ReadExecution(query, dataset, context, factory);
+    }
+
+    /**
+     * TDB2 can only be read in a transaction, it is started with the execution and spans reading the results.
+     */
+    private static class ReadExecution extends QueryExecutionBase {
+        private final DatasetGraph dataset;
+        private boolean inTransaction;
+
+        ReadExecution(Query query, DatasetGraph dataset, Context context, QueryEngineFactory factory) {
+            super(query, dataset, context, factory);
+            this.dataset = dataset;
+        }
+
+        @Override
+        protected void execInit() {
+            // An enclosing transaction of the same thread is used as is
+            if (!inTransaction && !dataset.isInTransaction()) {
+                dataset.begin(ReadWrite.READ);
+                inTransaction = true;
+            }
+            super.execInit();
+        }
+
+        @Override
+        public void close() {
+            try {
+                super.close();
+            } finally {
+                if (inTransaction) {
+                    inTransaction = false;
+                    dataset.end();
+                }
+            }
+        }
+    }
+}
@@ -60,17 +60,22 @@ function createInfobox(msg) {
     return divTemplate;
 }
 
-function getInfoboxValues(resource) {
+function getInfoboxValues(resources) {
     return $.ajax({
         url: 'infobox',
         timeout: 60000,
-        type: 'get',
+        type: 'post',
+        traditional: true,
         data: {
-            'resource': resource
+            'resource': resources
         },
         success(msg) {
-            const messageData = JSON.parse(msg)['messageData'];
-            $("#infoboxes").append($(createInfobox(messageData)).hide());
+            const infoboxes = JSON.parse(msg)['infoboxes'];
+            for (let i in infoboxes) {
+                if (infoboxes.hasOwnProperty(i)) {
+                    $("#infoboxes").append($(createInfobox(infoboxes[i]['messageData'])).hide());
+                }
+            }
         }
     });
 }
@@ -105,15 +110,19 @@ function submitForm(s) {
                 createEmptyInfobox('No answers were found.');
             } else {
                 $('#sparql-query-content').text(sparql);
+                let resources = [];
                 for (let i in answer) {
                     if (answer.hasOwnProperty(i)) {
                         if (answer[i].startsWith('http://dbpedia.org/resource')) {
-                            ajaxRequests.push(getInfoboxValues(answer[i]));
+                            resources.push(answer[i]);
                         } else {
                             createEmptyInfobox(answer[i]);
                         }
                     }
                 }
+                if (resources.length) {
+                    ajaxRequests.push(getInfoboxValues(resources));
+                }
             }
 
             $.when.apply(undefined, ajaxRequests).then(
@@ -0,0 +1,74 @@
+package de.uni.leipzig.tebaqa.tebaqacontroller.controller;
+
+import de.uni.leipzig.tebaqa.tebaqacommons.util.MappedRecordStore;
+import de.uni.leipzig.tebaqa.tebaqacontroller.service.InfoboxService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class InfoboxControllerTest {
+
+    private static final String WASHINGTON = "http://dbpedia.org/resource/Washington,_D.C.";
+    private static final String BERLIN = "http://dbpedia.org/resource/Berlin";
+
+    @TempDir
+    Path directory;
+
+    private MockMvc mvc;
+
+    // The infoboxes come from a store, so no endpoint is asked
+    @BeforeEach
+    void setUp() throws IOException {
+        File file = directory.resolve("infoboxes").toFile();
+        try (MappedRecordStore.Builder builder = new MappedRecordStore.Builder(file)) {
+            builder.add(WASHINGTON, "label", "Washington, D.C.");
+            builder.add(BERLIN, "label", "Berlin");
+            builder.write();
+        }
+        InfoboxService service = new InfoboxService(50, 100, 60, MappedRecordStore.open(file));
+        mvc = MockMvcBuilders.standaloneSetup(new InfoboxController(service)).build();
+    }
+
+    @Test
+    void resourcesWithCommasArentSplit() throws Exception {
+        JsonArray infoboxes = infoboxes(mvc.perform(post("/infobox").param("resource", WASHINGTON))
+                .andExpect(status().isOk()).andReturn().getResponse().getContentAsString());
+        assertEquals(1, infoboxes.size());
+        assertEquals(WASHINGTON, infoboxes.getJsonObject(0).getString("resource"));
+        assertEquals("Washington, D.C.", infoboxes.getJsonObject(0).getJsonObject("messageData").getString("title"));
+    }
+
+    @Test
+    void repeatedResourcesComeBackInOrder() throws Exception {
+        JsonArray infoboxes = infoboxes(mvc.perform(post("/infobox").param("resource", BERLIN, WASHINGTON, BERLIN))
+                .andExpect(status().isOk()).andReturn().getResponse().getContentAsString());
+        assertEquals(2, infoboxes.size());
+        assertEquals(BERLIN, infoboxes.getJsonObject(0).getString("resource"));
+        assertEquals(WASHINGTON, infoboxes.getJsonObject(1).getString("resource"));
+    }
+
+    @Test
+    void noResourcesGiveNoInfoboxes() throws Exception {
+        assertTrue(infoboxes(mvc.perform(post("/infobox")).andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString()).isEmpty());
+    }
+
+    private static JsonArray infoboxes(String response) {
+        JsonObject object = Json.createReader(new StringReader(response)).readObject();
+        return object.getJsonArray("infoboxes");
+    }
+}
@@ -0,0 +1,134 @@
+package de.uni.leipzig.tebaqa.tebaqacontroller.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.uni.leipzig.tebaqa.tebaqacommons.nlp.Lang;
+import de.uni.leipzig.tebaqa.tebaqacommons.util.Deadline;
+import de.uni.leipzig.tebaqa.tebaqacommons.util.DeadlineExceededException;
+import de.uni.leipzig.tebaqa.tebaqacontroller.model.AnswerToQuestion;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnswerCacheTest {
+
+    private static final String QUESTION = "Who is the mayor of Berlin?";
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AnswerCache cache = new AnswerCache(true, 100, 60, "");
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void shutdown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void waitsForTheSameQuestion() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        Future<AnswerToQuestion> first = executor.submit(() -> cache.get(QUESTION, Lang.EN, Deadline.NONE, () -> {
+            calls.incrementAndGet();
+            return slowAnswer("Kai Wegner");
+        }));
+        started.await();
+        Future<AnswerToQuestion> second = executor.submit(() -> cache.get("who is the mayor of berlin", Lang.EN, Deadline.NONE,
+                () -> answer("not coalesced")));
+        release.countDown();
+
+        assertEquals(Collections.singleton("Kai Wegner"), first.get(5, TimeUnit.SECONDS).getAnswer());
+        assertEquals(Collections.singleton("Kai Wegner"), second.get(5, TimeUnit.SECONDS).getAnswer());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void waitsOnlyUntilItsOwnDeadline() throws Exception {
+        Future<AnswerToQuestion> first = executor.submit(() -> cache.get(QUESTION, Lang.EN, Deadline.NONE, () -> slowAnswer("Kai Wegner")));
+        started.await();
+        assertThrows(DeadlineExceededException.class,
+                () -> cache.get(QUESTION, Lang.EN, Deadline.after(50), () -> answer("not coalesced")));
+
+        release.countDown();
+        assertEquals(Collections.singleton("Kai Wegner"), first.get(5, TimeUnit.SECONDS).getAnswer());
+    }
+
+    @Test
+    void answersAgainIfTheSharedAnsweringFails() throws Exception {
+        Future<AnswerToQuestion> first = executor.submit(() -> cache.get(QUESTION, Lang.EN, Deadline.after(100), () -> {
+            started.countDown();
+            release.await();
+            throw new DeadlineExceededException("Deadline of the first request passed");
+        }));
+        started.await();
+        Future<AnswerToQuestion> second = executor.submit(() -> cache.get(QUESTION, Lang.EN, Deadline.NONE, () -> answer("Kai Wegner")));
+        Thread.sleep(50);
+        release.countDown();
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        assertTrue(failure.getCause() instanceof DeadlineExceededException);
+        assertEquals(Collections.singleton("Kai Wegner"), second.get(5, TimeUnit.SECONDS).getAnswer());
+    }
+
+    @Test
+    void waitingCanBeInterrupted() throws Exception {
+        executor.submit(() -> cache.get(QUESTION, Lang.EN, Deadline.NONE, () -> slowAnswer("Kai Wegner")));
+        started.await();
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Future<?> second = executor.submit(() -> {
+            try {
+                cache.get(QUESTION, Lang.EN, Deadline.NONE, () -> answer("not coalesced"));
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return null;
+        });
+        Thread.sleep(50);
+        second.cancel(true);
+        // The waiting thread is free again while the first request is still answering
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void emptyAnswersAreNotCached() throws Exception {
+        assertTrue(cache.get(QUESTION, Lang.EN, Deadline.NONE, () -> new AnswerToQuestion(Collections.emptySet(), "", "")).getAnswer().isEmpty());
+        assertEquals(0, cache.size());
+        assertEquals(Collections.singleton("Kai Wegner"), cache.get(QUESTION, Lang.EN, Deadline.NONE, () -> answer("Kai Wegner")).getAnswer());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void restoredAnswersExpireWhenTheyWouldHaveWithoutRestart() throws Exception {
+        File snapshot = File.createTempFile("answer-cache", ".json");
+        snapshot.deleteOnExit();
+        long ttlMillis = TimeUnit.MINUTES.toMillis(1);
+        AnswerCache.CachedAnswer almostExpired = new AnswerCache.CachedAnswer(QUESTION, Lang.EN, answer("Kai Wegner"));
+        almostExpired.setCreated(System.currentTimeMillis() - ttlMillis + 2000);
+        AnswerCache.CachedAnswer expired = new AnswerCache.CachedAnswer("Who is the mayor of Leipzig?", Lang.EN, answer("Burkhard Jung"));
+        expired.setCreated(System.currentTimeMillis() - ttlMillis);
+        new ObjectMapper().writeValue(snapshot, Arrays.asList(almostExpired, expired));
+
+        AnswerCache restored = new AnswerCache(true, 100, 1, snapshot.getPath());
+        assertEquals(1, restored.size());
+        assertEquals(Collections.singleton("Kai Wegner"), restored.get(QUESTION, Lang.EN, Deadline.NONE, () -> answer("answered again")).getAnswer());
+
+        Thread.sleep(Math.max(0, almostExpired.getCreated() + ttlMillis - System.currentTimeMillis()));
+        assertEquals(Collections.singleton("answered again"), restored.get(QUESTION, Lang.EN, Deadline.NONE, () -> answer("answered again")).getAnswer());
+    }
+
+    private AnswerToQuestion slowAnswer(String value) throws InterruptedException {
+        started.countDown();
+        release.await();
+        return answer(value);
+    }
+
+    private static AnswerToQuestion answer(String value) {
+        return new AnswerToQuestion(Collections.singleton(value), "resource", "SELECT ?x WHERE { ?x ?p ?o }");
+    }
+}
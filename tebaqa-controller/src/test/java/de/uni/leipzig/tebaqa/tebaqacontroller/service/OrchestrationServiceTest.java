@@ -0,0 +1,79 @@
+package de.uni.leipzig.tebaqa.tebaqacontroller.service;
+
+import de.uni.leipzig.tebaqa.tebaqacommons.model.RatedQuery;
+import de.uni.leipzig.tebaqa.tebaqacommons.statistics.CardinalityStatistics;
+import de.uni.leipzig.tebaqa.tebaqacontroller.model.ResultsetBinding;
+import de.uni.leipzig.tebaqa.tebaqacontroller.utils.QueryCostEstimator;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrchestrationServiceTest {
+
+    private static final String DBR = "http://dbpedia.org/resource/";
+    private static final String DBO = "http://dbpedia.org/ontology/";
+
+    private static QueryCostEstimator estimator() {
+        CardinalityStatistics statistics = new CardinalityStatistics();
+        statistics.setTripleCount(10000);
+        statistics.setEntityDefaults(100, 5, 5);
+        statistics.setPredicate(DBO + "birthPlace", 100, 100, 10);
+        statistics.setPredicate(DBO + "spouse", 3000, 100, 100);
+        statistics.setEntity(DBR + "Berlin", 50, 30);
+        return new QueryCostEstimator(statistics);
+    }
+
+    private static RatedQuery query(String query) {
+        return new RatedQuery(query, Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+    }
+
+    private static ResultsetBinding resultOf(RatedQuery ratedQuery) {
+        ResultsetBinding result = new ResultsetBinding();
+        result.setRatedQuery(ratedQuery);
+        return result;
+    }
+
+    @Test
+    void queriesOverTheBudgetAreSplitOff() {
+        // 10 rows
+        RatedQuery cheap = query("SELECT ?x WHERE { ?x <" + DBO + "birthPlace> <" + DBR + "Berlin> }");
+        // 10 + 10 * 30 rows
+        RatedQuery expensive = query("SELECT ?y WHERE { ?x <" + DBO + "birthPlace> <" + DBR + "Berlin> . ?x <" + DBO + "spouse> ?y }");
+        // 3000 rows
+        RatedQuery veryExpensive = query("SELECT ?x WHERE { ?x <" + DBO + "spouse> ?y }");
+        RatedQuery unparseable = query("SELECT ?x WHERE {");
+
+        List<RatedQuery> overBudget = new ArrayList<>();
+        List<RatedQuery> affordable = OrchestrationService.splitByCost(Arrays.asList(veryExpensive, cheap, unparseable, expensive),
+                overBudget, estimator(), 310);
+        assertEquals(Arrays.asList(cheap, unparseable, expensive), affordable);
+        assertEquals(Collections.singletonList(veryExpensive), overBudget);
+
+        overBudget.clear();
+        affordable = OrchestrationService.splitByCost(Arrays.asList(veryExpensive, cheap, unparseable, expensive),
+                overBudget, estimator(), 309);
+        assertEquals(Arrays.asList(cheap, unparseable), affordable);
+        assertEquals(Arrays.asList(veryExpensive, expensive), overBudget);
+    }
+
+    @Test
+    void separatelyExecutedResultsComeBackInQueryOrder() {
+        RatedQuery first = query("SELECT ?x WHERE { ?x <" + DBO + "birthPlace> <" + DBR + "Berlin> }");
+        RatedQuery second = query("SELECT ?x WHERE { ?x <" + DBO + "birthPlace> <" + DBR + "Leipzig> }");
+        RatedQuery third = query("SELECT ?x WHERE { ?x <" + DBO + "birthPlace> <" + DBR + "Dresden> }");
+        ResultsetBinding firstResult = resultOf(first);
+        ResultsetBinding secondResult = resultOf(second);
+        ResultsetBinding thirdResult = resultOf(third);
+        ResultsetBinding otherThirdResult = resultOf(third);
+
+        List<ResultsetBinding> merged = OrchestrationService.inQueryOrder(Arrays.asList(first, second, third),
+                Arrays.asList(thirdResult, firstResult, otherThirdResult), Collections.singletonList(secondResult));
+        assertEquals(4, merged.size());
+        assertSame(firstResult, merged.get(0));
+        assertSame(secondResult, merged.get(1));
+        assertSame(thirdResult, merged.get(2));
+        assertSame(otherThirdResult, merged.get(3));
+    }
+}
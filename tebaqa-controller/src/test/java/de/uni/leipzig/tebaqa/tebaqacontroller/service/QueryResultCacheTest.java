@@ -0,0 +1,35 @@
+package de.uni.leipzig.tebaqa.tebaqacontroller.service;
+
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryResultCacheTest {
+
+    private static final String ENDPOINT = "http://localhost/sparql";
+
+    @Test
+    void prefixesDontChangeTheKey() {
+        Query prefixed = QueryFactory.create("PREFIX dbo: <http://dbpedia.org/ontology/> "
+                + "PREFIX res: <http://dbpedia.org/resource/> SELECT ?m WHERE { res:Berlin dbo:leader ?m }");
+        Query full = QueryFactory.create("SELECT ?m WHERE {\n  <http://dbpedia.org/resource/Berlin> <http://dbpedia.org/ontology/leader> ?m\n}");
+        Query otherPrefix = QueryFactory.create("PREFIX o: <http://dbpedia.org/ontology/> "
+                + "SELECT ?m WHERE { <http://dbpedia.org/resource/Berlin> o:leader ?m }");
+
+        assertEquals(QueryResultCache.key(ENDPOINT, full), QueryResultCache.key(ENDPOINT, prefixed));
+        assertEquals(QueryResultCache.key(ENDPOINT, full), QueryResultCache.key(ENDPOINT, otherPrefix));
+        // The key is built from a copy
+        assertEquals("http://dbpedia.org/ontology/", prefixed.getPrefix("dbo"));
+    }
+
+    @Test
+    void differentQueriesAndEndpointsDontShareAKey() {
+        Query berlin = QueryFactory.create("SELECT ?m WHERE { <http://dbpedia.org/resource/Berlin> <http://dbpedia.org/ontology/leader> ?m }");
+        Query leipzig = QueryFactory.create("SELECT ?m WHERE { <http://dbpedia.org/resource/Leipzig> <http://dbpedia.org/ontology/leader> ?m }");
+
+        assertNotEquals(QueryResultCache.key(ENDPOINT, berlin), QueryResultCache.key(ENDPOINT, leipzig));
+        assertNotEquals(QueryResultCache.key(ENDPOINT, berlin), QueryResultCache.key("http://mirror/sparql", berlin));
+    }
+}
@@ -0,0 +1,70 @@
+package de.uni.leipzig.tebaqa.tebaqacontroller.service;
+
+import de.uni.leipzig.tebaqa.tebaqacommons.model.EntityCandidate;
+import de.uni.leipzig.tebaqa.tebaqacommons.model.EntityLinkingResponseBean;
+import de.uni.leipzig.tebaqa.tebaqacommons.model.PropertyCandidate;
+import de.uni.leipzig.tebaqa.tebaqacommons.model.QueryTemplateResponseBean;
+import de.uni.leipzig.tebaqa.tebaqacommons.nlp.Lang;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimilarQuestionIndexTest {
+
+    private static final String DBR = "http://dbpedia.org/resource/";
+
+    @Test
+    void nearDuplicatesReuseTheLinking() {
+        SimilarQuestionIndex index = new SimilarQuestionIndex(true, 100, 2, 16, 4, 0.4);
+        EntityLinkingResponseBean linking = linking("Berlin", "mayor");
+        index.add("Who is the mayor of Berlin?", Lang.EN, new QueryTemplateResponseBean(), linking);
+
+        Optional<SimilarQuestionIndex.Match> match = index.find("Who was the mayor of Berlin?", Lang.EN);
+        assertTrue(match.isPresent());
+        assertSame(linking, match.get().getLinking());
+        assertEquals("Who is the mayor of Berlin?", match.get().getQuestion());
+        assertFalse(index.find("Who was the mayor of Berlin?", Lang.DE).isPresent());
+    }
+
+    @Test
+    void otherEntitiesDontMatch() {
+        SimilarQuestionIndex index = new SimilarQuestionIndex(true, 100, 2, 16, 4, 0.4);
+        index.add("Who is the mayor of Berlin?", Lang.EN, new QueryTemplateResponseBean(), linking("Berlin", "mayor"));
+
+        assertFalse(index.find("Who is the mayor of Paris?", Lang.EN).isPresent());
+    }
+
+    @Test
+    void extendedMentionsDontMatch() {
+        SimilarQuestionIndex index = new SimilarQuestionIndex(true, 100, 2, 16, 4, 0.85);
+        index.add("Who is the mayor of New York?", Lang.EN, new QueryTemplateResponseBean(), linking("New York", "mayor"));
+
+        assertTrue(index.find("who is the mayor of new york", Lang.EN).isPresent());
+        // Similar enough (6/7 shingles), but New York City is a different entity
+        assertFalse(index.find("Who is the mayor of New York City?", Lang.EN).isPresent());
+    }
+
+    @Test
+    void changedPropertyMentionsDontMatch() {
+        SimilarQuestionIndex index = new SimilarQuestionIndex(true, 100, 2, 16, 4, 0.4);
+        index.add("Who is the mayor of Berlin?", Lang.EN, new QueryTemplateResponseBean(), linking("Berlin", "mayor"));
+
+        assertFalse(index.find("Who is the deputy mayor of Berlin?", Lang.EN).isPresent());
+    }
+
+    private static EntityLinkingResponseBean linking(String entityMention, String propertyMention) {
+        EntityCandidate entity = new EntityCandidate(DBR + entityMention.replace(' ', '_'), Collections.singleton(entityMention),
+                Collections.emptySet(), Collections.emptySet(), Collections.emptySet(), Collections.emptySet(), Collections.emptySet());
+        entity.setCoOccurrence(entityMention);
+        PropertyCandidate property = new PropertyCandidate("http://dbpedia.org/ontology/" + propertyMention, Collections.singleton(propertyMention));
+        property.setCoOccurrence(propertyMention);
+
+        EntityLinkingResponseBean linking = new EntityLinkingResponseBean();
+        linking.getEntityCandidates().add(entity);
+        linking.getPropertyCandidates().add(property);
+        return linking;
+    }
+}
@@ -0,0 +1,124 @@
+package de.uni.leipzig.tebaqa.tebaqacontroller.utils;
+
+import de.uni.leipzig.tebaqa.tebaqacontroller.model.ResultsetBinding;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.sparql.core.Var;
+import org.apache.jena.sparql.syntax.ElementData;
+import org.apache.jena.sparql.syntax.ElementGroup;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchedQueryTest {
+
+    private static final String DBR = "http://dbpedia.org/resource/";
+    private static final String DBO = "http://dbpedia.org/ontology/";
+
+    @Test
+    void queriesWhichOnlyDifferInIrisHaveTheSameShape() {
+        String shape = BatchedQuery.shapeOf(QueryFactory.create("SELECT DISTINCT ?uri WHERE { <" + DBR + "Berlin> <" + DBO + "leader> ?uri }"));
+        assertNotNull(shape);
+        assertEquals(shape, BatchedQuery.shapeOf(QueryFactory.create("SELECT DISTINCT ?uri WHERE { <" + DBR + "Leipzig> <" + DBO + "mayor> ?uri }")));
+
+        assertNotEquals(shape, BatchedQuery.shapeOf(QueryFactory.create("SELECT ?uri WHERE { <" + DBR + "Berlin> <" + DBO + "leader> ?uri }")));
+        assertNotEquals(shape, BatchedQuery.shapeOf(QueryFactory.create("SELECT DISTINCT ?x WHERE { <" + DBR + "Berlin> <" + DBO + "leader> ?x }")));
+        assertNotEquals(shape, BatchedQuery.shapeOf(QueryFactory.create("SELECT DISTINCT ?uri WHERE { ?uri <" + DBO + "leader> <" + DBR + "Berlin> }")));
+        assertNotEquals(shape, BatchedQuery.shapeOf(QueryFactory.create("SELECT DISTINCT ?uri WHERE { <" + DBR + "Berlin> <" + DBO + "leader> \"Berlin\" }")));
+    }
+
+    @Test
+    void queriesWithModifiersOrFiltersHaveNoShape() {
+        String[] unbatchable = {
+                "SELECT ?uri WHERE { ?uri ?p ?o } LIMIT 10",
+                "SELECT ?uri WHERE { ?uri ?p ?o } ORDER BY ?o",
+                "SELECT ?uri ?o WHERE { ?uri ?p ?o }",
+                "SELECT (COUNT(?uri) AS ?c) WHERE { ?uri ?p ?o }",
+                "SELECT ?uri WHERE { ?uri ?p ?o FILTER(?o > 1) }",
+                "SELECT ?uri WHERE { ?uri <" + DBO + "leader>/<" + DBO + "party> ?o }",
+                "SELECT ?uri WHERE { ?uri ?p ?batchSlot0 }",
+                "ASK WHERE { ?uri ?p ?o }"
+        };
+        for (String sparql : unbatchable) {
+            assertNull(BatchedQuery.shapeOf(QueryFactory.create(sparql)), sparql);
+        }
+    }
+
+    @Test
+    void onlyIrisWhichDifferGetAValuesSlot() {
+        BatchedQuery batch = BatchedQuery.create(Arrays.asList(
+                leaderQuery("Berlin", "leader"),
+                leaderQuery("Leipzig", "leader"),
+                leaderQuery("Leipzig", "mayor")));
+        Query query = batch.getQuery();
+        ElementData values = (ElementData) ((ElementGroup) query.getQueryPattern()).getElements().get(0);
+
+        assertEquals(Arrays.asList("batchIndex", "batchSlot0", "batchSlot1"),
+                values.getVars().stream().map(Var::getVarName).collect(Collectors.toList()));
+        assertEquals(3, values.getRows().size());
+        assertEquals(DBR + "Leipzig", values.getRows().get(2).get(values.getVars().get(1)).getURI());
+        assertEquals(DBO + "mayor", values.getRows().get(2).get(values.getVars().get(2)).getURI());
+        // The party IRI is the same in all queries
+        assertTrue(query.toString().contains("<" + DBO + "party>"));
+        assertEquals(3L * ResultsetBinding.MAX_RESULTS, query.getLimit());
+    }
+
+    @Test
+    void splitsTheResultsByQuery() {
+        Model model = ModelFactory.createDefaultModel();
+        Property leader = model.createProperty(DBO + "leader");
+        Property party = model.createProperty(DBO + "party");
+        model.add(model.createResource(DBR + "Berlin"), leader, model.createResource(DBR + "Kai_Wegner"));
+        model.add(model.createResource(DBR + "Leipzig"), leader, model.createResource(DBR + "Burkhard_Jung"));
+        model.add(model.createResource(DBR + "Kai_Wegner"), party, model.createResource(DBR + "CDU"));
+        model.add(model.createResource(DBR + "Burkhard_Jung"), party, model.createResource(DBR + "SPD"));
+
+        List<String> queries = Arrays.asList(
+                leaderQuery("Leipzig", "leader").toString(),
+                leaderQuery("Dresden", "leader").toString(),
+                leaderQuery("Berlin", "leader").toString());
+        BatchedQuery batch = BatchedQuery.create(queries.stream().map(QueryFactory::create).collect(Collectors.toList()));
+        List<ResultsetBinding> results = batch.execute(queries, QueryExecutionFactory.create(batch.getQuery(), model));
+
+        assertEquals(3, results.size());
+        assertEquals(Collections.singleton(DBR + "Burkhard_Jung"), results.get(0).getResult());
+        assertTrue(results.get(1).getResult().isEmpty());
+        assertEquals(Collections.singleton(DBR + "Kai_Wegner"), results.get(2).getResult());
+        for (int i = 0; i < queries.size(); i++) {
+            assertEquals(queries.get(i), results.get(i).getQuery());
+        }
+    }
+
+    @Test
+    void queriesWhichMayBeCutOffAreReturnedAsNull() {
+        Model model = ModelFactory.createDefaultModel();
+        Property member = model.createProperty(DBO + "member");
+        // Twice as many members as both queries may return together
+        for (int i = 0; i < 2 * 2 * ResultsetBinding.MAX_RESULTS; i++) {
+            model.add(model.createResource(DBR + "Bundestag"), member, model.createResource(DBR + "Member_" + i));
+        }
+        model.add(model.createResource(DBR + "Landtag"), member, model.createResource(DBR + "Member_0"));
+
+        List<String> queries = Arrays.asList(
+                "SELECT DISTINCT ?uri WHERE { <" + DBR + "Bundestag> <" + DBO + "member> ?uri }",
+                "SELECT DISTINCT ?uri WHERE { <" + DBR + "Landtag> <" + DBO + "member> ?uri }");
+        BatchedQuery batch = BatchedQuery.create(queries.stream().map(QueryFactory::create).collect(Collectors.toList()));
+        List<ResultsetBinding> results = batch.execute(queries, QueryExecutionFactory.create(batch.getQuery(), model));
+
+        // Has all the results it may have, no matter which rows were read
+        assertEquals(ResultsetBinding.MAX_RESULTS, results.get(0).getResult().size());
+        assertNull(results.get(1));
+    }
+
+    private static Query leaderQuery(String city, String property) {
+        return QueryFactory.create("SELECT DISTINCT ?uri WHERE { <" + DBR + city + "> <" + DBO + property + "> ?uri . "
+                + "?uri <" + DBO + "party> ?party }");
+    }
+}
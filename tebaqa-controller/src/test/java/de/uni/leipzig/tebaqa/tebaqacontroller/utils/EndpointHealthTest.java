@@ -0,0 +1,120 @@
+package de.uni.leipzig.tebaqa.tebaqacontroller.utils;
+
+import de.uni.leipzig.tebaqa.tebaqacontroller.utils.EndpointHealth.Permit;
+import de.uni.leipzig.tebaqa.tebaqacontroller.utils.EndpointHealth.State;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EndpointHealthTest {
+
+    private static final String ENDPOINT = "http://localhost/sparql";
+
+    @Test
+    void opensAfterThresholdFailuresInARow() {
+        EndpointHealth health = new EndpointHealth(ENDPOINT, 3, 60000);
+        for (int i = 0; i < 2; i++) {
+            health.recordFailure(health.tryAcquire());
+        }
+        health.recordSuccess(health.tryAcquire(), 10);
+        assertEquals(0, health.getConsecutiveFailures());
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(State.CLOSED, health.getState());
+            health.recordFailure(health.tryAcquire());
+        }
+        assertEquals(State.OPEN, health.getState());
+        assertNull(health.tryAcquire());
+        assertEquals(5, health.getFailureCount());
+    }
+
+    @Test
+    void rejectedQueriesDontCount() {
+        EndpointHealth health = new EndpointHealth(ENDPOINT, 2, 60000);
+        health.recordFailure(health.tryAcquire());
+        health.recordRejected(health.tryAcquire());
+        health.recordFailure(health.tryAcquire());
+        assertEquals(State.CLOSED, health.getState());
+    }
+
+    @Test
+    void letsOneProbeThroughWhenHalfOpen() {
+        EndpointHealth health = openCircuit();
+        assertEquals(State.HALF_OPEN, health.getState());
+        assertEquals(Permit.PROBE, health.tryAcquire());
+        assertNull(health.tryAcquire());
+    }
+
+    @Test
+    void successfulProbeClosesTheCircuit() {
+        EndpointHealth health = openCircuit();
+        health.recordSuccess(health.tryAcquire(), 10);
+        assertEquals(State.CLOSED, health.getState());
+        assertEquals(Permit.REGULAR, health.tryAcquire());
+        assertEquals(Permit.REGULAR, health.tryAcquire());
+    }
+
+    @Test
+    void failedProbeOpensTheCircuitAgain() throws InterruptedException {
+        EndpointHealth health = new EndpointHealth(ENDPOINT, 5, 50);
+        for (int i = 0; i < 5; i++) {
+            health.recordFailure(health.tryAcquire());
+        }
+        assertNull(health.tryAcquire());
+        Thread.sleep(100);
+
+        health.recordFailure(health.tryAcquire());
+        assertEquals(State.OPEN, health.getState());
+        assertNull(health.tryAcquire());
+    }
+
+    @Test
+    void cancelledProbeLetsTheNextProbeThrough() {
+        EndpointHealth health = openCircuit();
+        health.recordCancelled(health.tryAcquire(), 10);
+        assertEquals(State.HALF_OPEN, health.getState());
+        assertEquals(Permit.PROBE, health.tryAcquire());
+    }
+
+    @Test
+    void lateRegularQueriesDontDecideForTheProbe() {
+        EndpointHealth health = new EndpointHealth(ENDPOINT, 1, 0);
+        Permit late = health.tryAcquire();
+        Permit lateToo = health.tryAcquire();
+        assertEquals(Permit.REGULAR, late);
+        health.recordFailure(health.tryAcquire());
+
+        Permit probe = health.tryAcquire();
+        assertEquals(Permit.PROBE, probe);
+        // Queries sent before the circuit opened finish while the probe runs
+        health.recordSuccess(late, 10);
+        assertEquals(State.HALF_OPEN, health.getState());
+        assertNull(health.tryAcquire());
+        health.recordFailure(lateToo);
+        assertEquals(State.HALF_OPEN, health.getState());
+        assertNull(health.tryAcquire());
+
+        health.recordSuccess(probe, 10);
+        assertEquals(State.CLOSED, health.getState());
+    }
+
+    @Test
+    void latencyPercentiles() {
+        EndpointHealth health = new EndpointHealth(ENDPOINT, 5, 60000);
+        assertEquals(-1, health.getLatencyPercentile(50, 1));
+        for (int latency = 1; latency <= 100; latency++) {
+            health.recordSuccess(health.tryAcquire(), latency);
+        }
+        health.recordCancelled(health.tryAcquire(), 1000);
+        assertEquals(-1, health.getLatencyPercentile(50, 200));
+        assertEquals(51, health.getLatencyPercentile(50, 1));
+        assertEquals(1000, health.getLatencyPercentile(100, 1));
+    }
+
+    // Opened by a failure and half open right away
+    private static EndpointHealth openCircuit() {
+        EndpointHealth health = new EndpointHealth(ENDPOINT, 1, 0);
+        health.recordFailure(health.tryAcquire());
+        return health;
+    }
+}
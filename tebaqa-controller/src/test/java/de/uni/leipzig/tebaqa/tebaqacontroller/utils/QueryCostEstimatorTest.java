@@ -0,0 +1,64 @@
+package de.uni.leipzig.tebaqa.tebaqacontroller.utils;
+
+import de.uni.leipzig.tebaqa.tebaqacommons.statistics.CardinalityStatistics;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryCostEstimatorTest {
+
+    static final String DBR = "http://dbpedia.org/resource/";
+    static final String DBO = "http://dbpedia.org/ontology/";
+    static final String RDF_TYPE = "http://www.w3.org/1999/02/22-rdf-syntax-ns#type";
+
+    static CardinalityStatistics statistics() {
+        CardinalityStatistics statistics = new CardinalityStatistics();
+        statistics.setTripleCount(10000);
+        statistics.setEntityDefaults(100, 5, 5);
+        statistics.setPredicate(DBO + "birthPlace", 100, 100, 10);
+        statistics.setPredicate(DBO + "spouse", 3000, 100, 100);
+        statistics.setPredicate(RDF_TYPE, 500, 400, 20);
+        statistics.setEntity(DBR + "Berlin", 50, 30);
+        statistics.setEntity(DBO + "Person", 0, 400);
+        return statistics;
+    }
+
+    @Test
+    void patternsAreJoinedStartingWithTheFewestMatches() {
+        QueryCostEstimator estimator = new QueryCostEstimator(statistics());
+        // birthPlace Berlin: 100 / 10 = 10 rows, then the type of each ?x is bound: 10 more rows.
+        // The other way round it would be 25 + 25.
+        assertEquals(20, estimator.estimate("SELECT ?x WHERE { ?x <" + RDF_TYPE + "> <" + DBO + "Person> . "
+                + "?x <" + DBO + "birthPlace> <" + DBR + "Berlin> }"), 1e-9);
+    }
+
+    @Test
+    void joiningPatternsComeBeforeCrossProducts() {
+        QueryCostEstimator estimator = new QueryCostEstimator(statistics());
+        // birthPlace: 10 rows, spouse joins on ?x with 3000 / 100 = 30 each: 300 rows, type is bound then: 300 rows.
+        // Taking the type pattern with 25 matches as cross product second would give 10 + 250 + 250.
+        assertEquals(610, estimator.estimate("SELECT ?x ?y WHERE { ?x <" + DBO + "birthPlace> <" + DBR + "Berlin> . "
+                + "?y <" + RDF_TYPE + "> <" + DBO + "Person> . ?x <" + DBO + "spouse> ?y }"), 1e-9);
+    }
+
+    @Test
+    void entityDegreesLimitThePredicateAverage() {
+        QueryCostEstimator estimator = new QueryCostEstimator(statistics());
+        // spouse averages 30 per subject, but Berlin only has 50 triples at all and an unknown entity 5
+        assertEquals(30, estimator.estimate("SELECT ?y WHERE { <" + DBR + "Berlin> <" + DBO + "spouse> ?y }"), 1e-9);
+        assertEquals(5, estimator.estimate("SELECT ?y WHERE { <" + DBR + "Leipzig> <" + DBO + "spouse> ?y }"), 1e-9);
+    }
+
+    @Test
+    void unknownPredicatesHaveOneMatch() {
+        QueryCostEstimator estimator = new QueryCostEstimator(statistics());
+        assertEquals(1, estimator.estimate("SELECT ?x WHERE { ?x <" + DBO + "unknown> ?y }"), 1e-9);
+    }
+
+    @Test
+    void withoutStatisticsOrParseableQueryThereIsNoEstimate() {
+        assertFalse(new QueryCostEstimator(null).isEnabled());
+        assertEquals(-1, new QueryCostEstimator(null).estimate("SELECT ?x WHERE { ?x ?p ?o }"));
+        assertEquals(-1, new QueryCostEstimator(statistics()).estimate("SELECT ?x WHERE {"));
+    }
+}
@@ -0,0 +1,44 @@
+package de.uni.leipzig.tebaqa.tebaqacontroller.utils;
+
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SparqlClientTest {
+
+    private static final int MAX_RESULTS = 50;
+
+    @Test
+    void limitsQueriesWithoutLimit() {
+        Query limited = SparqlClient.limitResults(QueryFactory.create("SELECT ?o WHERE { ?s ?p ?o }"), MAX_RESULTS);
+        assertTrue(limited.isDistinct());
+        assertEquals(MAX_RESULTS, limited.getLimit());
+    }
+
+    @Test
+    void lowersTheLimitOfDistinctQueries() {
+        Query limited = SparqlClient.limitResults(QueryFactory.create("SELECT DISTINCT ?o WHERE { ?s ?p ?o } LIMIT 1000"), MAX_RESULTS);
+        assertTrue(limited.isDistinct());
+        assertEquals(MAX_RESULTS, limited.getLimit());
+    }
+
+    @Test
+    void keepsQueriesWhoseResultsWouldChange() {
+        String[] unchanged = {
+                "SELECT ?o WHERE { ?s ?p ?o } LIMIT 1000",
+                "SELECT ?o WHERE { ?s ?p ?o } OFFSET 10",
+                "SELECT DISTINCT ?o WHERE { ?s ?p ?o } LIMIT 1000 OFFSET 10",
+                "SELECT ?o WHERE { ?s ?p ?o } ORDER BY ?o",
+                "SELECT ?s ?o WHERE { ?s ?p ?o }",
+                "SELECT (COUNT(?o) AS ?c) WHERE { ?s ?p ?o }",
+                "SELECT ?o WHERE { ?s ?p ?o } LIMIT 10",
+                "ASK WHERE { ?s ?p ?o }"
+        };
+        for (String sparql : unchanged) {
+            Query query = QueryFactory.create(sparql);
+            assertSame(query, SparqlClient.limitResults(query, MAX_RESULTS), sparql);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package de.uni.leipzig.tebaqa.tebaqacontroller.utils;
+
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.jena.query.*;
+import org.apache.jena.sparql.engine.http.QueryExceptionHTTP;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SparqlRouterTest {
+
+    private static final Query QUERY = QueryFactory.create("SELECT ?s WHERE { ?s ?p ?o }");
+    private static final String PRIMARY = "http://primary/sparql";
+    private static final String MIRROR = "http://mirror/sparql";
+
+    private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    void timeoutsDontOpenTheCircuit() {
+        SparqlRouter router = router(Collections.singletonList(PRIMARY));
+        for (int i = 0; i < 5; i++) {
+            assertThrows(QueryCancelledException.class, () -> router.execute(QUERY, 1000, fail(new QueryCancelledException())));
+            // A remote execution reports a read timeout like this
+            assertThrows(QueryExceptionHTTP.class, () -> router.execute(QUERY, 1000,
+                    fail(new QueryExceptionHTTP(new SocketTimeoutException("Read timed out")))));
+        }
+        EndpointHealth health = router.getEndpoints().get(0);
+        assertEquals(EndpointHealth.State.CLOSED, health.getState());
+        assertEquals(0, health.getFailureCount());
+        assertEquals("answer", router.execute(QUERY, 1000, qe -> "answer"));
+    }
+
+    @Test
+    void timeoutsDontFailOver() {
+        SparqlRouter router = router(Arrays.asList(PRIMARY, MIRROR));
+        assertThrows(QueryCancelledException.class, () -> router.execute(QUERY, 1000, fail(new QueryCancelledException())));
+        assertEquals(Collections.singletonList(PRIMARY), sent);
+        assertEquals(0, router.getFailovers());
+    }
+
+    @Test
+    void endpointFailuresOpenTheCircuit() {
+        SparqlRouter router = router(Collections.singletonList(PRIMARY));
+        assertThrows(QueryExceptionHTTP.class, () -> router.execute(QUERY, 1000, fail(new QueryExceptionHTTP(503, "Service Unavailable"))));
+        assertThrows(QueryExceptionHTTP.class, () -> router.execute(QUERY, 1000,
+                fail(new QueryExceptionHTTP(new ConnectTimeoutException("Connect timed out")))));
+        assertEquals(EndpointHealth.State.OPEN, router.getEndpoints().get(0).getState());
+
+        sent.clear();
+        assertThrows(QueryExceptionHTTP.class, () -> router.execute(QUERY, 1000, qe -> "answer"));
+        assertTrue(sent.isEmpty());
+    }
+
+    @Test
+    void endpointFailuresFailOver() {
+        SparqlRouter router = router(Arrays.asList(PRIMARY, MIRROR));
+        Function<QueryExecution, String> primaryDown = qe -> {
+            if (sent.size() == 1)
+                throw new QueryExceptionHTTP(503, "Service Unavailable");
+            return "answer";
+        };
+        assertEquals("answer", router.execute(QUERY, 1000, primaryDown));
+        assertEquals(Arrays.asList(PRIMARY, MIRROR), sent);
+        assertEquals(1, router.getFailovers());
+    }
+
+    @Test
+    void clientErrorsDontCount() {
+        SparqlRouter router = router(Arrays.asList(PRIMARY, MIRROR));
+        assertThrows(QueryExceptionHTTP.class, () -> router.execute(QUERY, 1000, fail(new QueryExceptionHTTP(400, "Bad Request"))));
+        assertEquals(Collections.singletonList(PRIMARY), sent);
+        assertEquals(EndpointHealth.State.CLOSED, router.getEndpoints().get(0).getState());
+    }
+
+    @Test
+    void serverErrorsOfARealEndpointFailOver() throws IOException {
+        HttpServer server = stubServer();
+        try {
+            SparqlRouter router = new SparqlRouter(Arrays.asList(url(server, "/unavailable"), url(server, "/sparql")),
+                    SparqlClient::createExecution, false, 2, 60000);
+            for (int i = 0; i < 2; i++) {
+                assertEquals("http://dbpedia.org/resource/Berlin", router.execute(QUERY, 1000, SparqlRouterTest::firstValue));
+            }
+            assertEquals(EndpointHealth.State.OPEN, router.getEndpoints().get(0).getState());
+            assertEquals(2, router.getFailovers());
+            assertEquals(Arrays.asList("/unavailable", "/sparql", "/unavailable", "/sparql"), sent);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void clientErrorsOfARealEndpointDontCount() throws IOException {
+        HttpServer server = stubServer();
+        try {
+            SparqlRouter router = new SparqlRouter(Arrays.asList(url(server, "/bad-request"), url(server, "/sparql")),
+                    SparqlClient::createExecution, false, 1, 60000);
+            QueryExceptionHTTP e = assertThrows(QueryExceptionHTTP.class, () -> router.execute(QUERY, 1000, SparqlRouterTest::firstValue));
+            assertEquals(400, e.getStatusCode());
+            assertEquals(Collections.singletonList("/bad-request"), sent);
+            assertEquals(EndpointHealth.State.CLOSED, router.getEndpoints().get(0).getState());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Answers on /sparql with one row, on /unavailable with 503 and on /bad-request with 400.
+     */
+    private HttpServer stubServer() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            sent.add(path);
+            byte[] body;
+            int status;
+            if (path.equals("/sparql")) {
+                status = 200;
+                body = "?s\n<http://dbpedia.org/resource/Berlin>\n".getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/tab-separated-values");
+            } else {
+                status = path.equals("/unavailable") ? 503 : 400;
+                body = "error".getBytes(StandardCharsets.UTF_8);
+            }
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private static String url(HttpServer server, String path) {
+        return "http://localhost:" + server.getAddress().getPort() + path;
+    }
+
+    private static String firstValue(QueryExecution qe) {
+        return qe.execSelect().next().get("s").toString();
+    }
+
+    // Without hedging, two failures in a row open the circuit for a minute
+    private SparqlRouter router(List<String> endpoints) {
+        return new SparqlRouter(endpoints, (endpoint, query) -> {
+            sent.add(endpoint);
+            return QueryExecutionFactory.create(query, DatasetFactory.create());
+        }, false, 2, 60000);
+    }
+
+    private static Function<QueryExecution, String> fail(RuntimeException e) {
+        return qe -> {
+            throw e;
+        };
+    }
+}
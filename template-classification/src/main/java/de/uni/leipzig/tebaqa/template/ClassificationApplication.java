@@ -2,11 +2,14 @@ package de.uni.leipzig.tebaqa.template;
 
 import de.uni.leipzig.tebaqa.tebaqacommons.nlp.Lang;
 import de.uni.leipzig.tebaqa.tebaqacommons.nlp.StanfordPipelineProvider;
+import de.uni.leipzig.tebaqa.tebaqacommons.util.DeadlineFilter;
+import de.uni.leipzig.tebaqa.tebaqacommons.util.GzipRequestFilter;
 import de.uni.leipzig.tebaqa.template.service.WekaClassifier;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
 import org.springframework.core.io.ClassPathResource;
 
 import java.io.IOException;
@@ -35,4 +38,16 @@ public class ClassificationApplication {
 
         SpringApplication.run(ClassificationApplication.class, args);
     }
+
+    // Honours the request deadline passed by the controller
+    @Bean
+    public DeadlineFilter deadlineFilter() {
+        return new DeadlineFilter();
+    }
+
+    // Accepts gzipped JSON request bodies, see http.client.gzip-requests
+    @Bean
+    public GzipRequestFilter gzipRequestFilter() {
+        return new GzipRequestFilter();
+    }
 }
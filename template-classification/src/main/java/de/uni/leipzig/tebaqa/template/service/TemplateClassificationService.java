@@ -0,0 +1,101 @@
+package de.uni.leipzig.tebaqa.template.service;
+
+import de.uni.leipzig.tebaqa.tebaqacommons.model.QueryTemplateResponseBean;
+import de.uni.leipzig.tebaqa.tebaqacommons.model.QueryType;
+import de.uni.leipzig.tebaqa.tebaqacommons.nlp.Lang;
+import de.uni.leipzig.tebaqa.tebaqacommons.nlp.SemanticAnalysisHelper;
+import de.uni.leipzig.tebaqa.tebaqacommons.pipeline.TemplateClassifier;
+import de.uni.leipzig.tebaqa.template.model.QueryTemplateMapping;
+import de.uni.leipzig.tebaqa.template.util.Constants;
+import de.uni.leipzig.tebaqa.template.util.PropertyUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class TemplateClassificationService implements TemplateClassifier {
+
+    private static final Logger LOGGER = LogManager.getLogger(TemplateClassificationService.class.getName());
+
+    private final WekaClassifier classifier;
+    private final SemanticAnalysisHelper semanticAnalysisHelper;
+
+    public TemplateClassificationService() throws IOException {
+        // The application sets the classifier configuration on start up, an embedding service doesn't
+        if (System.getProperty(Constants.FILE_BASED_TRAINING_FLAG) == null) {
+            Properties properties = new Properties();
+            properties.load(new ClassPathResource(Constants.TEMPLATE_CLASSIFICATION_PROP_FILE).getInputStream());
+            properties.forEach(System.getProperties()::putIfAbsent);
+        }
+        this.semanticAnalysisHelper = Lang.EN.getSemanticAnalysisHelper();
+        this.classifier = WekaClassifier.getDefaultClassifier();
+    }
+
+    public Set<String> getAllTemplates(String question) {
+        QueryType queryType = semanticAnalysisHelper.mapQuestionToQueryType(question);
+        LOGGER.info(String.format("Query Type: %s", queryType.name()));
+        return classifier.getAllQueryTemplates().stream().flatMap(queryTemplateMapping -> queryTemplateMapping.getTemplatesFor(queryType).stream()).collect(Collectors.toSet());
+    }
+
+    public QueryTemplateResponseBean classifyTemplate(String question, String lang) {
+        QueryTemplateResponseBean templateResponseBean = new QueryTemplateResponseBean();
+        templateResponseBean.setQuestion(question);
+        templateResponseBean.setLang(lang);
+
+        String graph = classifier.classifyInstance(question);
+        LOGGER.info(String.format("%s -> %s", question, graph));
+
+        QueryType queryType = semanticAnalysisHelper.mapQuestionToQueryType(question);
+        QueryTemplateMapping templateMapping = classifier.getQueryTemplatesFor(graph);
+        LOGGER.info(String.format("Query Type: %s", queryType.name()));
+
+        Set<String> templates;
+        boolean forceResult = "true".equalsIgnoreCase(PropertyUtils.getProperty(Constants.FORCE_CLASSIFICATION_RESPONSE));
+        if (templateMapping == null) {
+            // In case QueryTemplateMapping cannot be found for the classified graph then,
+            // from all QueryTemplateMapping, get the templates of the given queryType.
+            LOGGER.info("Template mapping not found");
+            if (forceResult) {
+                templates = classifier.getAllQueryTemplates().stream().flatMap(queryTemplateMapping -> queryTemplateMapping.getTemplatesFor(queryType).stream()).collect(Collectors.toSet());
+            } else {
+                templates = Collections.emptySet();
+            }
+        }
+        else {
+            // If the QueryTemplateMapping is found for the classified graph,
+            // then get the templates from that single QueryTemplateMapping
+            if(forceResult)
+                templates = templateMapping.getTemplatesFor(queryType); // Gets all available template in case query type is unknown
+            else {
+                if(queryType == QueryType.QUERY_TYPE_UNKNOWN)
+                    templates = Collections.emptySet();
+                else
+                    templates = templateMapping.getTemplatesFor(queryType);
+            }
+        }
+        LOGGER.info("Force response: " + forceResult);
+        LOGGER.info("Total templates: " + templates.size());
+        templateResponseBean.setTemplates(new ArrayList<>(templates));
+        return templateResponseBean;
+    }
+
+    @Override
+    public QueryTemplateResponseBean getMatchingQueryTemplates(String question, Lang lang) {
+        return classifyTemplate(question, lang.getLanguageCode());
+    }
+
+    @Override
+    public QueryTemplateResponseBean getAllQueryTemplates(String question, Lang lang) {
+        QueryTemplateResponseBean response = new QueryTemplateResponseBean();
+        response.setQuestion(question);
+        response.setLang(lang.getLanguageCode());
+        response.setTemplates(new ArrayList<>(getAllTemplates(question)));
+        return response;
+    }
+}
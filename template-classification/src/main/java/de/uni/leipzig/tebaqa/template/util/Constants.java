@@ -8,6 +8,7 @@ public class Constants {
     public static final String DEFAULT_SERIALIZED_MAPPINGS_FILENAME = "mappings_%s.json";
     public static final String DEFAULT_SERIALIZED_ARFF_TRAIN_FILENAME = "Train_%s.arff";
     public static final String DEFAULT_SERIALIZED_ARFF_TEST_FILENAME = "Test_%s.arff";
+    public static final String DEFAULT_SPARQL_ENDPOINT = "http://limbo-triple.cs.upb.de:3030/limbo/query";
 
     // Keys in properties file
     public static final String DEFAULT_TRAINING_DATASET = "classifier.training.dataset";
@@ -19,4 +20,5 @@ public class Constants {
     public static final String SERIALIZED_ARFF_TRAIN_FILE = "classifier.arff.train.file";
     public static final String SERIALIZED_ARFF_TEST_FILE = "classifier.arff.test.file";
     public static final String FORCE_CLASSIFICATION_RESPONSE = "classifier.forceResponse";
+    public static final String SPARQL_ENDPOINT = "classifier.sparql.endpoint";
 }
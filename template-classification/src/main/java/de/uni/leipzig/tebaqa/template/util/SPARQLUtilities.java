@@ -38,6 +38,7 @@ public class SPARQLUtilities {
     private final static String GET_REDIRECTS_SPARQL = "SELECT ?redirectsTo WHERE { <%1$s> <http://dbpedia.org/ontology/wikiPageRedirects> ?redirectsTo }";
     private static final Pattern SPLIT_TRIPLE_PATTERN = Pattern.compile("[^\\s\"']+|\"([^\"]*)\"|'([^']*)'");
     private static final Logger log = LogManager.getLogger(SPARQLUtilities.class);
+    private static final String SPARQL_ENDPOINT = getSparqlEndpoint();
     public static int QUERY_TYPE_UNKNOWN = -1;
     public static int ASK_QUERY = 1;
     public static int SELECT_QUERY = 2;
@@ -63,6 +64,11 @@ public class SPARQLUtilities {
         }
     }
 
+    private static String getSparqlEndpoint() {
+        String endpoint = PropertyUtils.getProperty(Constants.SPARQL_ENDPOINT);
+        return endpoint == null || endpoint.trim().isEmpty() ? Constants.DEFAULT_SPARQL_ENDPOINT : endpoint.trim();
+    }
+
     public static List<SPARQLResultSet> executeSPARQLQuery(String sparlQuery) {
         List<SPARQLResultSet> results = new ArrayList<>();
         int resultType;
@@ -79,7 +85,7 @@ public class SPARQLUtilities {
                 log.error("QueryParseException: Unable to parse query: " + qs, e);
                 return results;
             }
-            QueryExecution qe = QueryExecutionFactory.sparqlService("http://limbo-triple.cs.upb.de:3030/limbo/query", query);
+            QueryExecution qe = QueryExecutionFactory.sparqlService(SPARQL_ENDPOINT, query);
 //            QueryExecution qe = QueryExecutionFactory.sparqlService("http://dbpedia.org/sparql", query);
             qe.setTimeout(10000, 10000);
             boolean isAskType = query.isAskType();
@@ -226,7 +232,7 @@ public class SPARQLUtilities {
 
     public static ResultsetBinding executeQuery(String queryString) {
         Query query = QueryFactory.create(queryString);
-        QueryExecution qe = QueryExecutionFactory.sparqlService("http://limbo-triple.cs.upb.de:3030/limbo/query", query);
+        QueryExecution qe = QueryExecutionFactory.sparqlService(SPARQL_ENDPOINT, query);
 //        QueryExecution qe = QueryExecutionFactory.sparqlService("http://dbpedia.org/sparql", query);
         ResultsetBinding b = new ResultsetBinding();
         if (query.isSelectType()) {
@@ -270,7 +276,7 @@ public class SPARQLUtilities {
             boolean isCountQuery = isCountQuery(queryWithValues);
             boolean isLiteralResult = false;
 //            QueryExecution qe = QueryExecutionFactory.sparqlService("http://dbpedia.org/sparql", query);
-            QueryExecution qe = QueryExecutionFactory.sparqlService("http://limbo-triple.cs.upb.de:3030/limbo/query", query);
+            QueryExecution qe = QueryExecutionFactory.sparqlService(SPARQL_ENDPOINT, query);
             qe.setTimeout(10000, 10000);
             if (query.isSelectType()) {
                 ResultSet rs = null;